@@ -0,0 +1,184 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Collects timing samples for a benchmark, writes them as JSON and compares them against a
+ * previously recorded baseline.
+ *
+ * <p>The output has the form:
+ *
+ * <pre>{@code
+ * {
+ *   "benchmark": "cold_start",
+ *   "config": {"iterations": 20, ...},
+ *   "results": {
+ *     "eager/network": {
+ *       "registrar": {"first_ms": 12.1, "median_ms": 1.3, "p90_ms": 1.9, "max_ms": 2.4, "n": 19},
+ *       ...
+ *     }
+ *   }
+ * }
+ * }</pre>
+ *
+ * The first sample of every series is reported on its own as {@code first_ms}, and excluded from
+ * the other statistics, since it includes class loading and JIT warm-up.
+ */
+final class BenchmarkReport {
+  /** A median may grow by this fraction over the baseline before it is reported as a regression. */
+  static final double DEFAULT_REGRESSION_TOLERANCE = 0.25;
+
+  /** Medians below this are too noisy on shared CI machines to be compared. */
+  private static final double MIN_COMPARABLE_MILLIS = 1.0;
+
+  private final String name;
+  private final Map<String, Object> config = new LinkedHashMap<>();
+  private final Map<String, Map<String, List<Long>>> samples = new LinkedHashMap<>();
+
+  BenchmarkReport(String name) {
+    this.name = name;
+  }
+
+  synchronized void putConfig(String key, Object value) {
+    config.put(key, value);
+  }
+
+  /** Records one sample, in nanoseconds, for {@code phase} of the benchmark case {@code key}. */
+  synchronized void record(String key, String phase, long nanos) {
+    Map<String, List<Long>> phases = samples.get(key);
+    if (phases == null) {
+      phases = new LinkedHashMap<>();
+      samples.put(key, phases);
+    }
+    List<Long> series = phases.get(phase);
+    if (series == null) {
+      series = new ArrayList<>();
+      phases.put(phase, series);
+    }
+    series.add(nanos);
+  }
+
+  synchronized JSONObject toJson() throws JSONException {
+    JSONObject results = new JSONObject();
+    for (Map.Entry<String, Map<String, List<Long>>> benchmarkCase : samples.entrySet()) {
+      JSONObject phases = new JSONObject();
+      for (Map.Entry<String, List<Long>> phase : benchmarkCase.getValue().entrySet()) {
+        phases.put(phase.getKey(), summarize(phase.getValue()));
+      }
+      results.put(benchmarkCase.getKey(), phases);
+    }
+    return new JSONObject()
+        .put("benchmark", name)
+        .put("config", new JSONObject(config))
+        .put("results", results);
+  }
+
+  /** Writes the report to {@code <outputDir>/<name>.json} and returns the written file. */
+  File write(File outputDir) throws IOException, JSONException {
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create " + outputDir);
+    }
+    File file = new File(outputDir, name + ".json");
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      writer.write(toJson().toString(2));
+    }
+    return file;
+  }
+
+  /**
+   * Compares the medians of this report against {@code baseline}, a file previously written by
+   * {@link #write(File)}.
+   *
+   * @return a human readable description of every regression, empty if there are none
+   */
+  List<String> findRegressions(File baseline, double tolerance) throws IOException, JSONException {
+    JSONObject baselineResults =
+        new JSONObject(new String(Files.readAllBytes(baseline.toPath()), StandardCharsets.UTF_8))
+            .getJSONObject("results");
+    JSONObject currentResults = toJson().getJSONObject("results");
+
+    List<String> regressions = new ArrayList<>();
+    for (Iterator<String> cases = currentResults.keys(); cases.hasNext(); ) {
+      String benchmarkCase = cases.next();
+      JSONObject baselinePhases = baselineResults.optJSONObject(benchmarkCase);
+      if (baselinePhases == null) {
+        continue;
+      }
+      JSONObject currentPhases = currentResults.getJSONObject(benchmarkCase);
+      for (Iterator<String> phases = currentPhases.keys(); phases.hasNext(); ) {
+        String phase = phases.next();
+        JSONObject baselinePhase = baselinePhases.optJSONObject(phase);
+        if (baselinePhase == null || !baselinePhase.has("median_ms")) {
+          continue;
+        }
+        double before = baselinePhase.getDouble("median_ms");
+        double after = currentPhases.getJSONObject(phase).optDouble("median_ms", 0);
+        if (Math.max(before, after) >= MIN_COMPARABLE_MILLIS && after > before * (1 + tolerance)) {
+          regressions.add(
+              String.format(
+                  Locale.US,
+                  "%s %s: median %.2fms, baseline %.2fms (+%.0f%%)",
+                  benchmarkCase,
+                  phase,
+                  after,
+                  before,
+                  (after / before - 1) * 100));
+        }
+      }
+    }
+    return regressions;
+  }
+
+  private static JSONObject summarize(List<Long> series) throws JSONException {
+    JSONObject summary = new JSONObject().put("first_ms", toMillis(series.get(0)));
+    List<Long> sorted = new ArrayList<>(series.subList(1, series.size()));
+    if (sorted.isEmpty()) {
+      return summary.put("n", 0);
+    }
+    Collections.sort(sorted);
+    return summary
+        .put("median_ms", toMillis(percentile(sorted, 50)))
+        .put("p90_ms", toMillis(percentile(sorted, 90)))
+        .put("max_ms", toMillis(sorted.get(sorted.size() - 1)))
+        .put("n", sorted.size());
+  }
+
+  private static long percentile(List<Long> sorted, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+    return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+  }
+
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1_000.0) / 1_000.0;
+  }
+}
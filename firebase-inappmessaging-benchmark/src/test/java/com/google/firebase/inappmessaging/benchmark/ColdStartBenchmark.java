@@ -0,0 +1,366 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.benchmark;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule.CAMPAIGN_CACHE_FILE;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.datatransport.TransportFactory;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.google.firebase.abt.FirebaseABTesting;
+import com.google.firebase.abt.component.AbtComponent;
+import com.google.firebase.analytics.connector.AnalyticsConnector;
+import com.google.firebase.annotations.concurrent.Background;
+import com.google.firebase.annotations.concurrent.Blocking;
+import com.google.firebase.annotations.concurrent.Lightweight;
+import com.google.firebase.components.ComponentContainer;
+import com.google.firebase.components.Qualified;
+import com.google.firebase.concurrent.TestOnlyExecutors;
+import com.google.firebase.datatransport.LegacyTransportBackend;
+import com.google.firebase.events.Subscriber;
+import com.google.firebase.inappmessaging.CommonTypesProto.Priority;
+import com.google.firebase.inappmessaging.CommonTypesProto.Trigger;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.firebase.inappmessaging.FirebaseInAppMessaging;
+import com.google.firebase.inappmessaging.FirebaseInAppMessagingRegistrar;
+import com.google.firebase.inappmessaging.internal.IndexedCampaignCache;
+import com.google.firebase.inappmessaging.internal.ProtoStorageClient;
+import com.google.firebase.inappmessaging.testutil.FakeSdkServingServer;
+import com.google.firebase.inappmessaging.testutil.InProcessGrpcChannelModule;
+import com.google.firebase.inappmessaging.testutil.TestProtos;
+import com.google.firebase.inject.Deferred;
+import com.google.firebase.installations.FirebaseInstallationsApi;
+import com.google.firebase.installations.InstallationTokenResult;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+
+/**
+ * Measures the cost of starting the SDK, from {@link FirebaseInAppMessagingRegistrar} to the first
+ * message handed to {@link com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplay}, with
+ * the backend replaced by an in-process {@link FakeSdkServingServer}.
+ *
+ * <p>Every iteration runs in a fresh Robolectric application, so it starts without any stored
+ * campaigns, impressions or rate limits. The following phases are recorded:
+ *
+ * <ul>
+ *   <li>{@code registrar}: {@code getComponents()} and the component factory, i.e. {@code
+ *       providesFirebaseInAppMessaging}
+ *   <li>{@code first_foreground}: dispatching the first {@code ON_FOREGROUND}, including any work
+ *       the SDK does synchronously on the main thread in response to it
+ *   <li>{@code time_to_display}: from the first activity resuming until {@code displayMessage} is
+ *       called
+ *   <li>{@code cache_load}: reading a stored campaign response from disk
+ * </ul>
+ *
+ * <p>Each phase is measured with eager and with deferred initialization, and with or without a
+ * campaign response already cached on disk. Results are written as JSON, see {@link
+ * BenchmarkReport}.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ColdStartBenchmark {
+  private static final String OUTPUT_DIR_PROPERTY = "fiam.benchmark.outputDir";
+  private static final String BASELINE_PROPERTY = "fiam.benchmark.baseline";
+  private static final int ITERATIONS = Integer.getInteger("fiam.benchmark.iterations", 20);
+  private static final long SERVER_LATENCY_MILLIS =
+      Long.getLong("fiam.benchmark.serverLatencyMillis", 50);
+  private static final long DISPLAY_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final String DEFERRED_INITIALIZATION_KEY =
+      "firebase_inapp_messaging_deferred_initialization_enabled";
+
+  private static final FirebaseOptions OPTIONS =
+      new FirebaseOptions.Builder()
+          .setGcmSenderId("project_number")
+          .setApplicationId("app-id")
+          .setApiKey("apiKey")
+          .setProjectId("fiam-benchmark")
+          .build();
+
+  private static final BenchmarkReport report = new BenchmarkReport("cold_start");
+  private static FakeSdkServingServer server;
+
+  enum Mode {
+    EAGER,
+    DEFERRED
+  }
+
+  enum Scenario {
+    /** Nothing is cached, campaigns are fetched from the fake server. */
+    NETWORK,
+    /** A valid campaign response is already stored on disk. */
+    CACHED
+  }
+
+  private final Mode mode;
+  private final Scenario scenario;
+
+  public ColdStartBenchmark(Mode mode, Scenario scenario, int iteration) {
+    this.mode = mode;
+    this.scenario = scenario;
+  }
+
+  @ParameterizedRobolectricTestRunner.Parameters(name = "{0}/{1}#{2}")
+  public static Collection<Object[]> parameters() {
+    List<Object[]> parameters = new ArrayList<>();
+    for (int i = 0; i < ITERATIONS; i++) {
+      for (Mode mode : Mode.values()) {
+        for (Scenario scenario : Scenario.values()) {
+          parameters.add(new Object[] {mode, scenario, i});
+        }
+      }
+    }
+    return parameters;
+  }
+
+  @BeforeClass
+  public static void startServer() throws Exception {
+    server = new FakeSdkServingServer().start();
+    server.setLatency(FakeSdkServingServer.LatencyModel.fixed(SERVER_LATENCY_MILLIS));
+    server.setBehavior(FakeSdkServingServer.respondingWith(campaignsResponse()));
+
+    report.putConfig("iterations", ITERATIONS);
+    report.putConfig("server_latency_millis", SERVER_LATENCY_MILLIS);
+    report.putConfig("sdk_int", Build.VERSION.SDK_INT);
+    report.putConfig("java_version", System.getProperty("java.version"));
+  }
+
+  @AfterClass
+  public static void writeReport() throws Exception {
+    server.close();
+
+    File outputDir = new File(System.getProperty(OUTPUT_DIR_PROPERTY, "build/benchmark"));
+    // Written to fiam.benchmark.outputDir, see the README
+    report.write(outputDir);
+
+    String baseline = System.getProperty(BASELINE_PROPERTY, "");
+    if (!baseline.isEmpty()) {
+      List<String> regressions =
+          report.findRegressions(new File(baseline), BenchmarkReport.DEFAULT_REGRESSION_TOLERANCE);
+      assertWithMessage("Regressions against %s", baseline).that(regressions).isEmpty();
+    }
+  }
+
+  @Test
+  public void coldStart() throws Exception {
+    Application application = ApplicationProvider.getApplicationContext();
+    if (mode == Mode.DEFERRED) {
+      enableDeferredInitialization(application);
+    }
+    if (scenario == Scenario.CACHED) {
+      new ProtoStorageClient(application, CAMPAIGN_CACHE_FILE)
+          .write(IndexedCampaignCache.encode(campaignsResponse(), System.currentTimeMillis()))
+          .blockingAwait();
+    }
+    ComponentContainer container = newContainer(application);
+    int fetchesBefore = server.getFetchCount();
+
+    long registrarStart = System.nanoTime();
+    FirebaseInAppMessaging fiam =
+        (FirebaseInAppMessaging)
+            new FirebaseInAppMessagingRegistrar(new InProcessGrpcChannelModule(server))
+                .getComponents()
+                .get(0)
+                .getFactory()
+                .create(container);
+    record("registrar", System.nanoTime() - registrarStart);
+
+    CountDownLatch displayed = new CountDownLatch(1);
+    AtomicLong displayedAt = new AtomicLong();
+    fiam.setMessageDisplayComponent(
+        (message, callbacks) -> {
+          displayedAt.set(System.nanoTime());
+          displayed.countDown();
+        });
+
+    // Registered after the SDK's own lifecycle callbacks, so its onActivityResumed runs once the
+    // SDK has handled the resume.
+    ResumeTimer resumeTimer = new ResumeTimer();
+    application.registerActivityLifecycleCallbacks(resumeTimer);
+    Robolectric.buildActivity(Activity.class).setup();
+    record("first_foreground", resumeTimer.resumedAt - resumeTimer.preResumedAt);
+
+    awaitOnMainLooper(displayed);
+    record("time_to_display", displayedAt.get() - resumeTimer.preResumedAt);
+
+    if (scenario == Scenario.CACHED) {
+      long cacheStart = System.nanoTime();
+      IndexedCampaignCache cached =
+          IndexedCampaignCache.decode(
+              new ProtoStorageClient(application, CAMPAIGN_CACHE_FILE).map().blockingGet());
+      record("cache_load", System.nanoTime() - cacheStart);
+      assertThat(cached).isNotNull();
+    } else {
+      assertThat(server.getFetchCount()).isGreaterThan(fetchesBefore);
+    }
+  }
+
+  private void record(String phase, long nanos) {
+    String key = mode.name().toLowerCase(Locale.US) + "/" + scenario.name().toLowerCase(Locale.US);
+    report.record(key, phase, nanos);
+  }
+
+  private static void enableDeferredInitialization(Application application) {
+    Bundle metaData = new Bundle();
+    metaData.putBoolean(DEFERRED_INITIALIZATION_KEY, true);
+    shadowOf(application.getPackageManager())
+            .getInternalMutablePackageInfo(application.getPackageName())
+            .applicationInfo
+            .metaData =
+        metaData;
+  }
+
+  /** Runs the main looper, which delivers the message to the display, until the latch opens. */
+  private static void awaitOnMainLooper(CountDownLatch latch) throws InterruptedException {
+    long deadline = System.nanoTime() + DISPLAY_TIMEOUT_NANOS;
+    while (true) {
+      shadowOf(Looper.getMainLooper()).idle();
+      if (latch.await(1, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("No message was displayed within the timeout");
+      }
+    }
+  }
+
+  private static ComponentContainer newContainer(Application application) {
+    FirebaseApp firebaseApp = mock(FirebaseApp.class);
+    when(firebaseApp.getName()).thenReturn(FirebaseApp.DEFAULT_APP_NAME);
+    when(firebaseApp.getOptions()).thenReturn(OPTIONS);
+    when(firebaseApp.getApplicationContext()).thenReturn(application);
+    when(firebaseApp.isDataCollectionDefaultEnabled()).thenReturn(true);
+
+    InstallationTokenResult installationToken = mock(InstallationTokenResult.class);
+    when(installationToken.getToken()).thenReturn("installation_token");
+    FirebaseInstallationsApi firebaseInstallations = mock(FirebaseInstallationsApi.class);
+    when(firebaseInstallations.getId()).thenReturn(Tasks.forResult("installation_id"));
+    when(firebaseInstallations.getToken(anyBoolean()))
+        .thenReturn(Tasks.forResult(installationToken));
+
+    AbtComponent abtComponent = mock(AbtComponent.class);
+    when(abtComponent.get(anyString())).thenReturn(mock(FirebaseABTesting.class));
+
+    Deferred<AnalyticsConnector> analyticsConnector = handler -> {};
+
+    ComponentContainer container = mock(ComponentContainer.class);
+    when(container.get(FirebaseApp.class)).thenReturn(firebaseApp);
+    when(container.get(FirebaseInstallationsApi.class)).thenReturn(firebaseInstallations);
+    when(container.get(AbtComponent.class)).thenReturn(abtComponent);
+    when(container.getDeferred(AnalyticsConnector.class)).thenReturn(analyticsConnector);
+    when(container.get(Subscriber.class)).thenReturn(mock(Subscriber.class));
+    when(container.get(Qualified.qualified(LegacyTransportBackend.class, TransportFactory.class)))
+        .thenReturn(mock(TransportFactory.class, RETURNS_MOCKS));
+    when(container.get(Qualified.qualified(Background.class, Executor.class)))
+        .thenReturn(TestOnlyExecutors.background());
+    when(container.get(Qualified.qualified(Blocking.class, Executor.class)))
+        .thenReturn(TestOnlyExecutors.blocking());
+    when(container.get(Qualified.qualified(Lightweight.class, Executor.class)))
+        .thenReturn(TestOnlyExecutors.lite());
+    return container;
+  }
+
+  private static FetchEligibleCampaignsResponse campaignsResponse() {
+    long now = System.currentTimeMillis();
+    long day = TimeUnit.DAYS.toMillis(1);
+    ThickContent campaign =
+        ThickContent.newBuilder()
+            .setPriority(Priority.newBuilder().setValue(1))
+            .addTriggeringConditions(
+                TriggeringCondition.newBuilder().setFiamTrigger(Trigger.ON_FOREGROUND))
+            .setVanillaPayload(
+                VanillaCampaignPayload.newBuilder()
+                    .setCampaignId("cold_start_campaign")
+                    .setCampaignName("cold start")
+                    .setCampaignStartTimeMillis(now - day)
+                    .setCampaignEndTimeMillis(now + day))
+            .setContent(TestProtos.BANNER_MESSAGE_PROTO)
+            .build();
+    return FetchEligibleCampaignsResponse.newBuilder()
+        .setExpirationEpochTimestampMillis(now + day)
+        .addMessages(campaign)
+        .build();
+  }
+
+  /** Records when the first activity starts resuming and when every callback has seen it. */
+  private static class ResumeTimer implements Application.ActivityLifecycleCallbacks {
+    long preResumedAt;
+    long resumedAt;
+
+    @Override
+    public void onActivityPreResumed(@NonNull Activity activity) {
+      if (preResumedAt == 0) {
+        preResumedAt = System.nanoTime();
+      }
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+      if (resumedAt == 0) {
+        resumedAt = System.nanoTime();
+      }
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, Bundle savedInstanceState) {}
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {}
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {}
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {}
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {}
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {}
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpression;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpressionList;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.Parser;
+import io.reactivex.Maybe;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of updating the impression history with {@link ImpressionStorageClient}, for histories
+ * from 10 to 100k impressions.
+ *
+ * <p>Every call starts from the same history, already loaded in memory as it would be after the
+ * first trigger, and writes the updated history to disk.
+ *
+ * <p>{@code storeImpressionConcurrently} stores impressions from 8 threads through one client,
+ * whose history is reset every iteration. Impressions stored while a write is in progress share
+ * the next write, so it writes fewer bytes per impression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ImpressionStorageClientBenchmark {
+  private static final long NOW = TimeUnit.DAYS.toMillis(20_000);
+  private static final int CLEARED_CAMPAIGNS = 10;
+
+  @Param({"10", "1000", "100000"})
+  public int historySize;
+
+  private TempDirApplication application;
+  private ProtoStorageClient storageClient;
+  private CampaignImpression newImpression;
+  private FetchEligibleCampaignsResponse response;
+  private ImpressionStorageClient sharedClient;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    CampaignImpressionList.Builder history = CampaignImpressionList.newBuilder();
+    for (int i = 0; i < historySize; i++) {
+      history.addAlreadySeenCampaigns(
+          CampaignImpression.newBuilder()
+              .setCampaignId("campaign_" + random.nextInt(historySize))
+              .setImpressionTimestampMillis(NOW - random.nextInt(Integer.MAX_VALUE)));
+    }
+    application = new TempDirApplication();
+    storageClient = new PreloadedStorageClient(application, history.build());
+    newImpression =
+        CampaignImpression.newBuilder()
+            .setCampaignId("campaign_new")
+            .setImpressionTimestampMillis(NOW)
+            .build();
+
+    FetchEligibleCampaignsResponse.Builder fetched = FetchEligibleCampaignsResponse.newBuilder();
+    for (int i = 0; i < CLEARED_CAMPAIGNS; i++) {
+      fetched.addMessages(
+          ThickContent.newBuilder()
+              .setVanillaPayload(
+                  VanillaCampaignPayload.newBuilder()
+                      .setCampaignId("campaign_" + random.nextInt(historySize))));
+    }
+    response = fetched.build();
+  }
+
+  @Setup(Level.Iteration)
+  public void newSharedClient() {
+    sharedClient = new ImpressionStorageClient(storageClient);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    application.deleteFiles();
+    application.getFilesDir().delete();
+  }
+
+  @Benchmark
+  public void storeImpression(StorageCounters counters) {
+    new ImpressionStorageClient(storageClient).storeImpression(newImpression).blockingAwait();
+    counters.recordWrites(application);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void storeImpressionConcurrently(StorageCounters counters) {
+    sharedClient.storeImpression(newImpression).blockingAwait();
+    counters.recordWrites(application);
+  }
+
+  @Benchmark
+  public void clearImpressions(StorageCounters counters) {
+    new ImpressionStorageClient(storageClient).clearImpressions(response).blockingAwait();
+    counters.recordWrites(application);
+  }
+
+  /** Serves a fixed history from memory and writes updates to disk. */
+  private static class PreloadedStorageClient extends ProtoStorageClient {
+    private final CampaignImpressionList history;
+
+    PreloadedStorageClient(TempDirApplication application, CampaignImpressionList history) {
+      super(application, "impressions");
+      this.history = history;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends AbstractMessageLite> Maybe<T> read(Parser<T> parser) {
+      return Maybe.just((T) history);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import com.google.firebase.inappmessaging.testutil.CampaignGenerator;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of reading and writing the campaign cache, through {@link ProtoStorageClient} directly
+ * and through {@link CampaignCacheClient}, for responses from 1 KB to 5 MB.
+ *
+ * <p>{@code cacheClientGetCold} uses a new {@link CampaignCacheClient} for every call, as on the
+ * first trigger after a cold start, while {@code cacheClientGetWarm} is served from memory. The
+ * cache client maps its file and only reads the campaign index, see {@link IndexedCampaignCache}.
+ * {@code read} and {@code write} exercise the storage client with the response proto. {@code read}
+ * is served from the client's snapshot of the record, while {@code readCold} uses a new client and
+ * reads the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProtoStorageClientBenchmark {
+  private static final String FILE_NAME = "campaign_proto";
+  private static final String CACHE_FILE_NAME = "campaign_cache";
+  private static final long NOW = TimeUnit.DAYS.toMillis(20_000);
+
+  @Param({"1024", "65536", "1048576", "5242880"})
+  public int payloadBytes;
+
+  private TempDirApplication application;
+  private FakeClock clock;
+  private ProtoStorageClient storageClient;
+  private ProtoStorageClient cacheStorageClient;
+  private CampaignCacheClient warmCacheClient;
+  private FetchEligibleCampaignsResponse response;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    application = new TempDirApplication();
+    clock = new FakeClock(NOW);
+    storageClient = new ProtoStorageClient(application, FILE_NAME);
+    cacheStorageClient = new ProtoStorageClient(application, CACHE_FILE_NAME);
+    response = new CampaignGenerator(42, NOW).generateResponseOfSize(payloadBytes);
+    storageClient.write(response).blockingAwait();
+    warmCacheClient = new CampaignCacheClient(cacheStorageClient, clock);
+    warmCacheClient.put(response).blockingAwait();
+    application.takeBytesWritten();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    application.deleteFiles();
+    application.getFilesDir().delete();
+  }
+
+  @Benchmark
+  public FetchEligibleCampaignsResponse read() {
+    return storageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+  }
+
+  @Benchmark
+  public FetchEligibleCampaignsResponse readCold() {
+    return new ProtoStorageClient(application, FILE_NAME)
+        .read(FetchEligibleCampaignsResponse.parser())
+        .blockingGet();
+  }
+
+  @Benchmark
+  public void write(StorageCounters counters) {
+    storageClient.write(response).blockingAwait();
+    counters.recordWrites(application);
+  }
+
+  @Benchmark
+  public IndexedCampaignCache cacheClientGetCold() {
+    return new CampaignCacheClient(cacheStorageClient, clock).get().blockingGet();
+  }
+
+  @Benchmark
+  public IndexedCampaignCache cacheClientGetWarm() {
+    return warmCacheClient.get().blockingGet();
+  }
+
+  @Benchmark
+  public void cacheClientPut(StorageCounters counters) {
+    warmCacheClient.put(response).blockingAwait();
+    counters.recordWrites(application);
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.firebase.inappmessaging.testutil.CampaignGenerator;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of {@link ProtoStorageClient#read} with many threads reading the same store, as when
+ * triggers, display callbacks and fetches all check impressions at once.
+ *
+ * <p>{@code concurrentReads} runs 8 readers. In the {@code readsDuringWrites} group, 7 readers run
+ * against a thread that keeps replacing the record on disk, so reads that wait for writes show up
+ * in the upper percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProtoStorageClientContentionBenchmark {
+  private static final String FILE_NAME = "contended_proto";
+  private static final long NOW = TimeUnit.DAYS.toMillis(20_000);
+
+  @Param({"1024", "65536"})
+  public int payloadBytes;
+
+  private TempDirApplication application;
+  private ProtoStorageClient storageClient;
+  private FetchEligibleCampaignsResponse response;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    application = new TempDirApplication();
+    response = new CampaignGenerator(42, NOW).generateResponseOfSize(payloadBytes);
+    new ProtoStorageClient(application, FILE_NAME).write(response).blockingAwait();
+    application.takeBytesWritten();
+  }
+
+  // A new client for every iteration, so its first read loads the record from disk
+  @Setup(Level.Iteration)
+  public void newClient() {
+    storageClient = new ProtoStorageClient(application, FILE_NAME);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    application.deleteFiles();
+    application.getFilesDir().delete();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public FetchEligibleCampaignsResponse concurrentReads() {
+    return read();
+  }
+
+  @Benchmark
+  @Group("readsDuringWrites")
+  @GroupThreads(7)
+  public FetchEligibleCampaignsResponse readDuringWrites() {
+    return read();
+  }
+
+  @Benchmark
+  @Group("readsDuringWrites")
+  @GroupThreads(1)
+  public void writeDuringReads(StorageCounters counters) {
+    storageClient.write(response).blockingAwait();
+    counters.recordWrites(application);
+  }
+
+  private FetchEligibleCampaignsResponse read() {
+    return storageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+  }
+}
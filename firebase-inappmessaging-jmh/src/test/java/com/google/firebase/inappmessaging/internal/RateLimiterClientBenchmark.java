@@ -0,0 +1,77 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import com.google.firebase.inappmessaging.model.RateLimit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Latency of {@link RateLimiterClient}, with the stored limits already loaded in memory. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimiterClientBenchmark {
+  private static final RateLimit APP_FOREGROUND_LIMIT =
+      RateLimit.builder()
+          .setLimit(1)
+          .setLimiterKey("APP_FOREGROUND_ONE_PER_DAY_LIMITER_KEY")
+          .setTimeToLiveMillis(TimeUnit.DAYS.toMillis(1))
+          .build();
+
+  private TempDirApplication application;
+  private RateLimiterClient rateLimiterClient;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    application = new TempDirApplication();
+    rateLimiterClient =
+        new RateLimiterClient(
+            new ProtoStorageClient(application, "rate_limits"), new FakeClock(1_000_000L));
+    rateLimiterClient.increment(APP_FOREGROUND_LIMIT).blockingAwait();
+    application.takeBytesWritten();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    application.deleteFiles();
+    application.getFilesDir().delete();
+  }
+
+  @Benchmark
+  public void increment(StorageCounters counters) {
+    rateLimiterClient.increment(APP_FOREGROUND_LIMIT).blockingAwait();
+    counters.recordWrites(application);
+  }
+
+  @Benchmark
+  public boolean isRateLimited() {
+    return rateLimiterClient.isRateLimited(APP_FOREGROUND_LIMIT).blockingGet();
+  }
+}
@@ -0,0 +1,205 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import com.google.firebase.inappmessaging.model.InAppMessage;
+import com.google.firebase.inappmessaging.model.ProtoMarshallerClient;
+import com.google.firebase.inappmessaging.testutil.CampaignGenerator;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpressionList;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the steps {@link InAppMessageStreamManager} runs for every trigger to pick the
+ * messages to display: the activity window check, the triggering condition match, the impression
+ * filter, the priority selection and the decode into an {@link InAppMessage}. {@link #selection()}
+ * chains them the way the stream manager does.
+ *
+ * <p>Run with the GC profiler to get the allocation rate, see the {@code jmh} task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SelectionPipelineBenchmark {
+  private static final long NOW = TimeUnit.DAYS.toMillis(20_000);
+
+  @Param({"10", "100", "1000", "5000"})
+  public int campaignCount;
+
+  @Param({"0", "1000", "50000"})
+  public int impressionCount;
+
+  @Param({"ON_FOREGROUND", "event_0"})
+  public String event;
+
+  private final Clock clock = new FakeClock(NOW);
+  private List<ThickContent> campaigns;
+  private CampaignSchedule campaignSchedule;
+  private IndexedCampaignCache indexedCache;
+  private ImpressionStorageClient impressionStorageClient;
+
+  @Setup
+  public void setUp() {
+    CampaignGenerator generator = new CampaignGenerator(42, NOW);
+    FetchEligibleCampaignsResponse response = generator.generateResponse(campaignCount);
+    campaigns = response.getMessagesList();
+    campaignSchedule = new CampaignSchedule(response);
+    indexedCache = IndexedCampaignCache.of(response, NOW);
+    CampaignImpressionList impressions =
+        generator.generateImpressions(response, impressionCount, /* hitRatio= */ 0.5);
+    ProtoStorageClient impressionStore =
+        new ProtoStorageClient(new InMemoryStorageBackend(clock), "impressions");
+    impressionStore.write(impressions).blockingAwait();
+    impressionStorageClient = new ImpressionStorageClient(impressionStore);
+    // Populate the in-memory cache, as it would be after the first trigger
+    impressionStorageClient.getAllImpressions().blockingGet();
+  }
+
+  @Benchmark
+  public int isActive() {
+    int active = 0;
+    for (ThickContent content : campaigns) {
+      if (InAppMessageStreamManager.isActive(clock, content)) {
+        active++;
+      }
+    }
+    return active;
+  }
+
+  /** The activity check through the per-response index, as the stream manager does it. */
+  @Benchmark
+  public int activeCampaigns() {
+    return campaignSchedule.getActiveCampaigns(clock.now()).size();
+  }
+
+  @Benchmark
+  public int containsTriggeringCondition() {
+    int triggered = 0;
+    for (ThickContent content : campaigns) {
+      if (InAppMessageStreamManager.containsTriggeringCondition(event, content)) {
+        triggered++;
+      }
+    }
+    return triggered;
+  }
+
+  /** The activity check and trigger match over the cache index, as for a cached response. */
+  @Benchmark
+  public int indexedTriggeredCampaigns() {
+    return indexedCache
+        .getTriggeredCampaigns(Collections.singletonList(event), clock.now(), false)
+        .size();
+  }
+
+  @Benchmark
+  public int impressionFilter() {
+    int notImpressed = 0;
+    for (ThickContent content : campaigns) {
+      if (!impressionStorageClient.isImpressed(content).blockingGet()) {
+        notImpressed++;
+      }
+    }
+    return notImpressed;
+  }
+
+  @Benchmark
+  public List<ThickContent> sortByPriority() {
+    List<ThickContent> sorted = new ArrayList<>(campaigns);
+    Collections.sort(sorted, InAppMessageStreamManager::compareByPriority);
+    return sorted;
+  }
+
+  /** The bounded selection the stream manager uses in place of the full sort. */
+  @Benchmark
+  public List<ThickContent> selectTopK() {
+    TopKSelector<ThickContent> selector =
+        new TopKSelector<>(
+            InAppMessageStreamManager.DEFAULT_MAX_SELECTED_MESSAGES,
+            InAppMessageStreamManager::compareByPriority);
+    for (ThickContent content : campaigns) {
+      selector.offer(content);
+    }
+    return selector.getSelected();
+  }
+
+  @Benchmark
+  public void decode(Blackhole blackhole) {
+    for (ThickContent content : campaigns) {
+      blackhole.consume(decode(content));
+    }
+  }
+
+  /** The steps above chained in the order {@code InAppMessageStreamManager} applies them. */
+  @Benchmark
+  public List<InAppMessage> selection() {
+    return Flowable.fromIterable(campaignSchedule.getActiveCampaigns(clock.now()))
+        .filter(content -> InAppMessageStreamManager.containsTriggeringCondition(event, content))
+        .flatMapMaybe(
+            content ->
+                content.getIsTestCampaign()
+                    ? Maybe.just(content)
+                    : impressionStorageClient
+                        .isImpressed(content)
+                        .filter(isImpressed -> !isImpressed)
+                        .map(isImpressed -> content))
+        .collect(
+            () ->
+                new TopKSelector<ThickContent>(
+                    InAppMessageStreamManager.DEFAULT_MAX_SELECTED_MESSAGES,
+                    InAppMessageStreamManager::compareByPriority),
+            TopKSelector::offer)
+        .flattenAsFlowable(TopKSelector::getSelected)
+        .map(SelectionPipelineBenchmark::decode)
+        .toList()
+        .blockingGet();
+  }
+
+  private static InAppMessage decode(ThickContent content) {
+    boolean isVanilla = content.getPayloadCase() == ThickContent.PayloadCase.VANILLA_PAYLOAD;
+    return ProtoMarshallerClient.decode(
+        content.getContent(),
+        isVanilla
+            ? content.getVanillaPayload().getCampaignId()
+            : content.getExperimentalPayload().getCampaignId(),
+        isVanilla
+            ? content.getVanillaPayload().getCampaignName()
+            : content.getExperimentalPayload().getCampaignName(),
+        content.getIsTestCampaign(),
+        content.getDataBundleMap());
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule.CAMPAIGN_CACHE_FILE;
+import static com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule.IMPRESSIONS_STORE_FILE;
+import static com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule.KEY_VALUE_STORE_FILE;
+import static com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule.RATE_LIMIT_STORE_FILE;
+
+import com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link StorageBackend}s that {@link ProtoStorageClientModule} can pick, for records
+ * from 1 KB to 1 MB.
+ *
+ * <p>{@code loadAllStores} reads the three stores with a new backend, as on the first trigger after
+ * a cold start. The in-memory backend has nothing to load, so it reuses its instance. {@code
+ * readImpressions} reads a store again once loaded, and {@code writeImpressions} replaces it. The
+ * campaign cache and rate limit store keep their size, so the key-value backend, which rewrites
+ * every store on each write, reports the extra bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StorageBackendBenchmark {
+  private static final long NOW = TimeUnit.DAYS.toMillis(20_000);
+  private static final int RATE_LIMIT_BYTES = 64;
+
+  @Param({
+    ProtoStorageClientModule.FILE_BACKEND,
+    ProtoStorageClientModule.KEY_VALUE_BACKEND,
+    ProtoStorageClientModule.IN_MEMORY_BACKEND
+  })
+  public String backendName;
+
+  @Param({"1024", "65536", "1048576"})
+  public int recordBytes;
+
+  private TempDirApplication application;
+  private FakeClock clock;
+  private StorageBackend backend;
+  private byte[] record;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    application = new TempDirApplication();
+    clock = new FakeClock(NOW);
+    backend = newBackend();
+    Random random = new Random(42);
+    record = new byte[recordBytes];
+    random.nextBytes(record);
+    byte[] rateLimits = new byte[RATE_LIMIT_BYTES];
+    random.nextBytes(rateLimits);
+
+    backend.write(CAMPAIGN_CACHE_FILE, record);
+    backend.write(IMPRESSIONS_STORE_FILE, record);
+    backend.write(RATE_LIMIT_STORE_FILE, rateLimits);
+    application.takeBytesWritten();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    application.deleteFiles();
+    application.getFilesDir().delete();
+  }
+
+  @Benchmark
+  public void loadAllStores(Blackhole blackhole) throws IOException {
+    StorageBackend cold = backend instanceof InMemoryStorageBackend ? backend : newBackend();
+    blackhole.consume(cold.map(CAMPAIGN_CACHE_FILE));
+    blackhole.consume(cold.read(IMPRESSIONS_STORE_FILE));
+    blackhole.consume(cold.read(RATE_LIMIT_STORE_FILE));
+  }
+
+  @Benchmark
+  public byte[] readImpressions() throws IOException {
+    return backend.read(IMPRESSIONS_STORE_FILE);
+  }
+
+  @Benchmark
+  public void writeImpressions(StorageCounters counters) throws IOException {
+    backend.write(IMPRESSIONS_STORE_FILE, record);
+    counters.recordWrites(application);
+  }
+
+  private StorageBackend newBackend() {
+    switch (backendName) {
+      case ProtoStorageClientModule.KEY_VALUE_BACKEND:
+        return new KeyValueStorageBackend(application, KEY_VALUE_STORE_FILE, clock);
+      case ProtoStorageClientModule.IN_MEMORY_BACKEND:
+        return new InMemoryStorageBackend(clock);
+      default:
+        return new FileStorageBackend(application);
+    }
+  }
+}
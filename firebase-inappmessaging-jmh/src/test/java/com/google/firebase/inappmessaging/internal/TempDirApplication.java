@@ -0,0 +1,95 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import android.app.Application;
+import android.content.Context;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Application} stand-in for the JVM whose files directory is a fresh temporary
+ * directory. It counts the bytes written through {@link #openFileOutput(String, int)}.
+ */
+class TempDirApplication extends Application {
+  private final File filesDir;
+  private final AtomicLong bytesWritten = new AtomicLong();
+
+  TempDirApplication() {
+    try {
+      filesDir = Files.createTempDirectory("fiam-jmh").toFile();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public Context getApplicationContext() {
+    return this;
+  }
+
+  @Override
+  public File getFilesDir() {
+    return filesDir;
+  }
+
+  @Override
+  public FileInputStream openFileInput(String name) throws FileNotFoundException {
+    return new FileInputStream(new File(filesDir, name));
+  }
+
+  @Override
+  public FileOutputStream openFileOutput(String name, int mode) throws FileNotFoundException {
+    return new FileOutputStream(new File(filesDir, name), (mode & MODE_APPEND) != 0) {
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        bytesWritten.addAndGet(len);
+      }
+
+      @Override
+      public void write(byte[] b) throws IOException {
+        super.write(b);
+        bytesWritten.addAndGet(b.length);
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        super.write(b);
+        bytesWritten.incrementAndGet();
+      }
+    };
+  }
+
+  /** Returns the number of bytes written since the last call. */
+  long takeBytesWritten() {
+    return bytesWritten.getAndSet(0);
+  }
+
+  /** Deletes every file written so far. */
+  void deleteFiles() {
+    File[] files = filesDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+}
@@ -211,9 +211,12 @@ public class FirebaseInAppMessagingFlowableTest {
   private static DaggerTestAppComponent.Builder appComponentBuilder;
 
   private static void clearProtoDiskCache(Context context) {
-    context.deleteFile(CAMPAIGN_CACHE_FILE);
-    context.deleteFile(IMPRESSIONS_STORE_FILE);
-    context.deleteFile(RATE_LIMIT_STORE_FILE);
+    for (String fileName :
+        new String[] {CAMPAIGN_CACHE_FILE, IMPRESSIONS_STORE_FILE, RATE_LIMIT_STORE_FILE}) {
+      context.deleteFile(fileName);
+      // Previous versions are read when a record is corrupt
+      context.deleteFile(fileName + ".bak");
+    }
   }
 
   private static List<Object> getPlainValues(TestSubscriber<InAppMessage> subscriber) {
@@ -426,7 +429,7 @@ public class FirebaseInAppMessagingFlowableTest {
               throw new NullPointerException();
             })
         .when(application)
-        .openFileInput(CAMPAIGN_CACHE_FILE);
+        .getFilesDir(); // The campaign cache is mapped from the files directory
     subscriber = listenerToFlowable(instance);
 
     analyticsConnector.invokeListenerOnEvent(ANALYTICS_EVENT_NAME);
@@ -448,7 +451,7 @@ public class FirebaseInAppMessagingFlowableTest {
               throw new NullPointerException();
             })
         .when(application)
-        .openFileInput(CAMPAIGN_CACHE_FILE);
+        .getFilesDir();
     subscriber = listenerToFlowable(instance);
 
     analyticsConnector.invokeListenerOnEvent(ANALYTICS_EVENT_NAME);
@@ -468,7 +471,7 @@ public class FirebaseInAppMessagingFlowableTest {
               throw new NullPointerException();
             })
         .when(application)
-        .openFileInput(CAMPAIGN_CACHE_FILE);
+        .getFilesDir();
     subscriber = listenerToFlowable(instance);
 
     analyticsConnector.invokeListenerOnEvent(ANALYTICS_EVENT_NAME);
@@ -16,9 +16,11 @@ package com.google.firebase.inappmessaging;
 
 import android.app.Application;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.annotations.concurrent.Blocking;
 import com.google.firebase.events.Subscriber;
 import com.google.firebase.inappmessaging.internal.ApiClient;
 import com.google.firebase.inappmessaging.internal.DataCollectionHelper;
+import com.google.firebase.inappmessaging.internal.DeferredInitializationHelper;
 import com.google.firebase.inappmessaging.internal.GrpcClient;
 import com.google.firebase.inappmessaging.internal.ProviderInstaller;
 import com.google.firebase.inappmessaging.internal.SharedPreferencesUtils;
@@ -28,6 +30,7 @@ import com.google.firebase.inappmessaging.internal.time.Clock;
 import com.google.firebase.installations.FirebaseInstallationsApi;
 import dagger.Module;
 import dagger.Provides;
+import java.util.concurrent.Executor;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
@@ -69,6 +72,12 @@ public class TestApiClientModule {
     return new DataCollectionHelper(firebaseApp, sharedPreferencesUtils, firebaseEventSubscriber);
   }
 
+  @Provides
+  DeferredInitializationHelper providesDeferredInitializationHelper(
+      @Blocking Executor blockingExecutor) {
+    return new DeferredInitializationHelper(sharedPreferencesUtils, blockingExecutor);
+  }
+
   @Provides
   TestDeviceHelper providesTestDeviceHelper() {
     return this.testDeviceHelper;
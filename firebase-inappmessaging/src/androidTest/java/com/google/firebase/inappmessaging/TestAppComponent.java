@@ -17,6 +17,7 @@ package com.google.firebase.inappmessaging;
 import com.google.firebase.inappmessaging.internal.injection.components.AppComponent;
 import com.google.firebase.inappmessaging.internal.injection.components.UniversalComponent;
 import com.google.firebase.inappmessaging.internal.injection.modules.GrpcClientModule;
+import com.google.firebase.inappmessaging.internal.injection.modules.InAppMessageStreamModule;
 import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
 import dagger.Component;
 
@@ -30,6 +31,7 @@ import dagger.Component;
       TestAbTestingModule.class,
 
       // Real modules
-      GrpcClientModule.class
+      GrpcClientModule.class,
+      InAppMessageStreamModule.class
     })
 public interface TestAppComponent extends AppComponent {}
@@ -18,6 +18,7 @@ import com.google.firebase.inappmessaging.internal.injection.components.Universa
 import com.google.firebase.inappmessaging.internal.injection.modules.AnalyticsEventsModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.AppMeasurementModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ApplicationModule;
+import com.google.firebase.inappmessaging.internal.injection.modules.CacheMemoryModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ExecutorsModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ProgrammaticContextualTriggerFlowableModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule;
@@ -43,5 +44,6 @@ import javax.inject.Singleton;
       RateLimitModule.class,
       AppMeasurementModule.class,
       ExecutorsModule.class,
+      CacheMemoryModule.class,
     })
 public interface TestUniversalComponent extends UniversalComponent {}
@@ -20,17 +20,26 @@ import androidx.annotation.VisibleForTesting;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.annotations.concurrent.Lightweight;
 import com.google.firebase.inappmessaging.internal.DataCollectionHelper;
+import com.google.firebase.inappmessaging.internal.DeferredInitializationHelper;
 import com.google.firebase.inappmessaging.internal.DeveloperListenerManager;
+import com.google.firebase.inappmessaging.internal.DisplayArbiter;
 import com.google.firebase.inappmessaging.internal.DisplayCallbacksFactory;
 import com.google.firebase.inappmessaging.internal.InAppMessageStreamManager;
 import com.google.firebase.inappmessaging.internal.Logging;
 import com.google.firebase.inappmessaging.internal.ProgramaticContextualTriggers;
+import com.google.firebase.inappmessaging.internal.TriggerGate;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.ProgrammaticTrigger;
 import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
 import com.google.firebase.inappmessaging.model.TriggeredInAppMessage;
 import com.google.firebase.installations.FirebaseInstallationsApi;
+import dagger.Lazy;
 import io.reactivex.disposables.Disposable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.inject.Inject;
 
 /**
@@ -48,23 +57,36 @@ import javax.inject.Inject;
  *
  * <p>To delete the Installation ID and the data associated with it, see {@link
  * FirebaseInstallationsApi#delete()}.
+ *
+ * <p>To keep app startup as light as possible, the network, storage and trigger pipeline can be
+ * built lazily, on the first programmatic trigger or once the main thread goes idle, by adding the
+ * following to your application’s manifest:
+ *
+ * <pre>{@code
+ * <meta-data
+ *     android:name="firebase_inapp_messaging_deferred_initialization_enabled"
+ *     android:value="true" />
+ * }</pre>
  */
 @FirebaseAppScope
 public class FirebaseInAppMessaging {
 
-  private final InAppMessageStreamManager inAppMessageStreamManager;
+  private final Lazy<InAppMessageStreamManager> inAppMessageStreamManager;
   private final DataCollectionHelper dataCollectionHelper;
-  private final DisplayCallbacksFactory displayCallbacksFactory;
+  private final Lazy<DisplayCallbacksFactory> displayCallbacksFactory;
   private final DeveloperListenerManager developerListenerManager;
+  private final DisplayArbiter displayArbiter;
+  private final TriggerGate triggerGate;
   private final ProgramaticContextualTriggers programaticContextualTriggers;
   private final FirebaseInstallationsApi firebaseInstallations;
+  private final Object initializationLock = new Object();
+  private final AtomicBoolean isInitialized = new AtomicBoolean(false);
 
   private boolean areMessagesSuppressed;
   private FirebaseInAppMessagingDisplay fiamDisplay;
   @Lightweight private Executor lightWeightExecutor;
 
   @VisibleForTesting
-  @Inject
   FirebaseInAppMessaging(
       InAppMessageStreamManager inAppMessageStreamManager,
       @ProgrammaticTrigger ProgramaticContextualTriggers programaticContextualTriggers,
@@ -72,7 +94,61 @@ public class FirebaseInAppMessaging {
       FirebaseInstallationsApi firebaseInstallations,
       DisplayCallbacksFactory displayCallbacksFactory,
       DeveloperListenerManager developerListenerManager,
+      DisplayArbiter displayArbiter,
+      TriggerGate triggerGate,
       @Lightweight Executor lightWeightExecutor) {
+    this(
+        () -> inAppMessageStreamManager,
+        programaticContextualTriggers,
+        dataCollectionHelper,
+        firebaseInstallations,
+        () -> displayCallbacksFactory,
+        developerListenerManager,
+        displayArbiter,
+        triggerGate,
+        lightWeightExecutor,
+        /* deferInitialization= */ false,
+        /* deferredInitializationHelper= */ null);
+  }
+
+  @Inject
+  FirebaseInAppMessaging(
+      Lazy<InAppMessageStreamManager> inAppMessageStreamManager,
+      @ProgrammaticTrigger ProgramaticContextualTriggers programaticContextualTriggers,
+      DataCollectionHelper dataCollectionHelper,
+      FirebaseInstallationsApi firebaseInstallations,
+      Lazy<DisplayCallbacksFactory> displayCallbacksFactory,
+      DeveloperListenerManager developerListenerManager,
+      DisplayArbiter displayArbiter,
+      TriggerGate triggerGate,
+      @Lightweight Executor lightWeightExecutor,
+      DeferredInitializationHelper deferredInitializationHelper) {
+    this(
+        inAppMessageStreamManager,
+        programaticContextualTriggers,
+        dataCollectionHelper,
+        firebaseInstallations,
+        displayCallbacksFactory,
+        developerListenerManager,
+        displayArbiter,
+        triggerGate,
+        lightWeightExecutor,
+        deferredInitializationHelper.isDeferredInitializationEnabled(),
+        deferredInitializationHelper);
+  }
+
+  private FirebaseInAppMessaging(
+      Lazy<InAppMessageStreamManager> inAppMessageStreamManager,
+      ProgramaticContextualTriggers programaticContextualTriggers,
+      DataCollectionHelper dataCollectionHelper,
+      FirebaseInstallationsApi firebaseInstallations,
+      Lazy<DisplayCallbacksFactory> displayCallbacksFactory,
+      DeveloperListenerManager developerListenerManager,
+      DisplayArbiter displayArbiter,
+      TriggerGate triggerGate,
+      Executor lightWeightExecutor,
+      boolean deferInitialization,
+      @Nullable DeferredInitializationHelper deferredInitializationHelper) {
     this.inAppMessageStreamManager = inAppMessageStreamManager;
     this.programaticContextualTriggers = programaticContextualTriggers;
     this.dataCollectionHelper = dataCollectionHelper;
@@ -80,8 +156,38 @@ public class FirebaseInAppMessaging {
     this.areMessagesSuppressed = false;
     this.displayCallbacksFactory = displayCallbacksFactory;
     this.developerListenerManager = developerListenerManager;
+    this.displayArbiter = displayArbiter;
+    this.triggerGate = triggerGate;
     this.lightWeightExecutor = lightWeightExecutor;
 
+    if (deferInitialization) {
+      Logging.logd("Deferring InAppMessaging initialization until first trigger or idle");
+      deferredInitializationHelper.runWhenIdle(this::initialize);
+    } else {
+      initialize();
+    }
+  }
+
+  /**
+   * Builds the trigger pipeline and starts listening for events. This is a no-op after the first
+   * call.
+   *
+   * <p>Deferred initialization runs this off the main thread. A trigger that arrives meanwhile
+   * waits for the pipeline to be subscribed, so its event is not lost.
+   */
+  private void initialize() {
+    if (isInitialized.get()) {
+      return;
+    }
+    synchronized (initializationLock) {
+      if (!isInitialized.get()) {
+        startPipeline();
+        isInitialized.set(true);
+      }
+    }
+  }
+
+  private void startPipeline() {
     firebaseInstallations
         .getId()
         .addOnSuccessListener(
@@ -90,10 +196,18 @@ public class FirebaseInAppMessaging {
               Logging.logi("Starting InAppMessaging runtime with Installation ID " + id);
             });
 
+    // Messages triggered together or back to back are queued, and shown one at a time
+    displayArbiter.start(this::displayMessage);
     Disposable unused =
         inAppMessageStreamManager
+            .get()
             .createFirebaseInAppMessageStream()
-            .subscribe(FirebaseInAppMessaging.this::triggerInAppMessage);
+            .subscribe(displayArbiter::enqueue);
+  }
+
+  @VisibleForTesting
+  boolean isInitialized() {
+    return isInitialized.get();
   }
 
   /**
@@ -179,7 +293,9 @@ public class FirebaseInAppMessaging {
    * Enables or disables suppression of Firebase In App Messaging messages.
    *
    * <p>When enabled, no in app messages will be rendered until either you either disable
-   * suppression, or the app restarts, as this state is not preserved over app restarts.
+   * suppression, or the app restarts, as this state is not preserved over app restarts. Events
+   * are not evaluated against campaigns while messages are suppressed, except for the last few,
+   * which are evaluated if suppression is lifted within a few seconds.
    *
    * <p>By default, messages are not suppressed.
    *
@@ -187,6 +303,7 @@ public class FirebaseInAppMessaging {
    */
   public void setMessagesSuppressed(@NonNull Boolean areMessagesSuppressed) {
     this.areMessagesSuppressed = areMessagesSuppressed;
+    triggerGate.setMessagesSuppressed(areMessagesSuppressed);
   }
 
   /**
@@ -206,6 +323,7 @@ public class FirebaseInAppMessaging {
   public void setMessageDisplayComponent(@NonNull FirebaseInAppMessagingDisplay messageDisplay) {
     Logging.logi("Setting display event component");
     this.fiamDisplay = messageDisplay;
+    triggerGate.setDisplayAttached(true);
   }
 
   /**
@@ -216,6 +334,7 @@ public class FirebaseInAppMessaging {
   public void clearDisplayListener() {
     Logging.logi("Removing display event component");
     this.fiamDisplay = null;
+    triggerGate.setDisplayAttached(false);
   }
 
   /**
@@ -363,16 +482,47 @@ public class FirebaseInAppMessaging {
    * @param eventName
    */
   public void triggerEvent(@NonNull String eventName) {
+    // The trigger listener is only registered once the pipeline has been built
+    initialize();
     programaticContextualTriggers.triggerEvent(eventName);
   }
 
-  private void triggerInAppMessage(TriggeredInAppMessage inAppMessage) {
-    if (this.fiamDisplay != null) {
-      // The APIs that control the UI are going to be called on the main thread. Yay!
-      fiamDisplay.displayMessage(
-          inAppMessage.getInAppMessage(),
-          displayCallbacksFactory.generateDisplayCallback(
-              inAppMessage.getInAppMessage(), inAppMessage.getTriggeringEvent()));
+  /**
+   * Programmatically triggers several contextual triggers at once. The events are evaluated
+   * together, with a single campaign fetch, and at most the highest priority in-app message that
+   * is triggered by any of them is displayed.
+   *
+   * <p>Repeated events are triggered once. Nothing is triggered if {@code eventNames} is empty.
+   *
+   * @param eventNames the events to trigger
+   * @throws NullPointerException if {@code eventNames} is null
+   */
+  public void triggerEvents(@NonNull Collection<String> eventNames) {
+    if (eventNames == null) {
+      throw new NullPointerException("eventNames must not be null");
+    }
+    List<String> distinctEvents = new ArrayList<>(new LinkedHashSet<>(eventNames));
+    if (distinctEvents.isEmpty()) {
+      return;
+    }
+    // The trigger listener is only registered once the pipeline has been built
+    initialize();
+    programaticContextualTriggers.triggerEvents(distinctEvents);
+  }
+
+  private boolean displayMessage(TriggeredInAppMessage inAppMessage) {
+    if (this.fiamDisplay == null) {
+      return false;
     }
+    // The APIs that control the UI are going to be called on the main thread. Yay!
+    fiamDisplay.displayMessage(
+        inAppMessage.getInAppMessage(),
+        displayArbiter.trackCallbacks(
+            inAppMessage,
+            displayCallbacksFactory
+                .get()
+                .generateDisplayCallback(
+                    inAppMessage.getInAppMessage(), inAppMessage.getTriggeringEvent())));
+    return true;
   }
 }
@@ -17,6 +17,7 @@ package com.google.firebase.inappmessaging;
 import android.app.Application;
 import android.content.Context;
 import androidx.annotation.Keep;
+import androidx.annotation.VisibleForTesting;
 import com.google.android.datatransport.TransportFactory;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.abt.FirebaseABTesting;
@@ -43,11 +44,13 @@ import com.google.firebase.inappmessaging.internal.injection.modules.ApiClientMo
 import com.google.firebase.inappmessaging.internal.injection.modules.AppMeasurementModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ApplicationModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ExecutorsModule;
+import com.google.firebase.inappmessaging.internal.injection.modules.GrpcChannelModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.GrpcClientModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ProgrammaticContextualTriggerFlowableModule;
 import com.google.firebase.inject.Deferred;
 import com.google.firebase.installations.FirebaseInstallationsApi;
 import com.google.firebase.platforminfo.LibraryVersionComponent;
+import io.reactivex.flowables.ConnectableFlowable;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executor;
@@ -70,6 +73,22 @@ public class FirebaseInAppMessagingRegistrar implements ComponentRegistrar {
   private Qualified<TransportFactory> legacyTransportFactory =
       Qualified.qualified(LegacyTransportBackend.class, TransportFactory.class);
 
+  private final GrpcChannelModule grpcChannelModule;
+
+  @Keep
+  public FirebaseInAppMessagingRegistrar() {
+    this(new GrpcChannelModule());
+  }
+
+  /**
+   * Allows benchmarks and integration tests to point the SDK at a fake backend, for example an
+   * in-process gRPC server.
+   */
+  @VisibleForTesting
+  public FirebaseInAppMessagingRegistrar(GrpcChannelModule grpcChannelModule) {
+    this.grpcChannelModule = grpcChannelModule;
+  }
+
   @Override
   @Keep
   public List<Component<?>> getComponents() {
@@ -103,6 +122,7 @@ public class FirebaseInAppMessagingRegistrar implements ComponentRegistrar {
 
     UniversalComponent universalComponent =
         DaggerUniversalComponent.builder()
+            .grpcChannelModule(grpcChannelModule)
             .applicationModule(new ApplicationModule(application))
             .appMeasurementModule(
                 new AppMeasurementModule(analyticsConnector, firebaseEventsSubscriber))
@@ -117,6 +137,10 @@ public class FirebaseInAppMessagingRegistrar implements ComponentRegistrar {
                     container.get(blockingExecutor)))
             .build();
 
+    // Start tracking the foreground state right away, so that the first ON_FOREGROUND is not missed
+    // when the trigger pipeline is built lazily.
+    ConnectableFlowable<String> unused = universalComponent.appForegroundEventFlowable();
+
     AppComponent instance =
         DaggerAppComponent.builder()
             .abtIntegrationHelper(
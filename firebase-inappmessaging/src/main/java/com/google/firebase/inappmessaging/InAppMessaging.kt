@@ -26,6 +26,14 @@ import com.google.firebase.components.ComponentRegistrar
 val Firebase.inAppMessaging: FirebaseInAppMessaging
   get() = FirebaseInAppMessaging.instance
 
+/**
+ * Triggers [eventNames] together, displaying at most the highest priority message they trigger.
+ *
+ * @see FirebaseInAppMessaging.triggerEvents
+ */
+fun FirebaseInAppMessaging.triggerEvents(vararg eventNames: String) =
+  triggerEvents(eventNames.asList())
+
 /** @suppress */
 @Keep
 class FirebaseInAppMessagingKtxRegistrar : ComponentRegistrar {
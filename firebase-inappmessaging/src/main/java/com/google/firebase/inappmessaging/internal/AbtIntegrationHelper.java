@@ -14,6 +14,7 @@
 
 package com.google.firebase.inappmessaging.internal;
 
+import androidx.annotation.GuardedBy;
 import androidx.annotation.VisibleForTesting;
 import com.google.firebase.abt.AbtException;
 import com.google.firebase.abt.AbtExperimentInfo;
@@ -24,16 +25,33 @@ import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppS
 import com.google.internal.firebase.inappmessaging.v1.CampaignProto;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executor;
 import javax.inject.Inject;
 
-/** @hide */
+/**
+ * Reports FIAM experiments to ABT. It tracks what ABT has been told so that unchanged running
+ * experiments are not validated again, and an experiment is only reported active once while it is
+ * running.
+ *
+ * @hide
+ */
 @FirebaseAppScope
 public class AbtIntegrationHelper {
   private final FirebaseABTesting abTesting;
   @VisibleForTesting Executor executor;
 
+  @GuardedBy("this")
+  private List<ExperimentPayloadProto.ExperimentPayload> runningExperiments =
+      Collections.emptyList();
+
+  @GuardedBy("this")
+  private final Set<ExperimentPayloadProto.ExperimentPayload> activeExperiments = new HashSet<>();
+
   @Inject
   public AbtIntegrationHelper(FirebaseABTesting abTesting, @Blocking Executor blockingExecutor) {
     this.abTesting = abTesting;
@@ -42,42 +60,52 @@ public class AbtIntegrationHelper {
 
   /**
    * Takes a {@link FetchEligibleCampaignsResponse} and updates ABT with the currently running
-   * experiments based on the content of the response.
+   * experiments based on the content of the response. Nothing is reported if the running
+   * experiments are the same as in the previous response.
    *
    * @param response the {@link FetchEligibleCampaignsResponse} containing an up to date experiment
    *     list.
    */
   void updateRunningExperiments(FetchEligibleCampaignsResponse response) {
-    ArrayList<AbtExperimentInfo> runningExperiments = new ArrayList<>();
+    List<ExperimentPayloadProto.ExperimentPayload> payloads = new ArrayList<>();
     for (CampaignProto.ThickContent content : response.getMessagesList()) {
       if (!content.getIsTestCampaign()
           && content
               .getPayloadCase()
               .equals(CampaignProto.ThickContent.PayloadCase.EXPERIMENTAL_PAYLOAD)) {
-        ExperimentPayloadProto.ExperimentPayload payload =
-            content.getExperimentalPayload().getExperimentPayload();
-        runningExperiments.add(
-            new AbtExperimentInfo(
-                payload.getExperimentId(),
-                payload.getVariantId(),
-                payload.getTriggerEvent(),
-                new Date(payload.getExperimentStartTimeMillis()),
-                payload.getTriggerTimeoutMillis(),
-                payload.getTimeToLiveMillis()));
+        payloads.add(content.getExperimentalPayload().getExperimentPayload());
       }
     }
-    if (runningExperiments.isEmpty()) {
+    synchronized (this) {
+      if (payloads.equals(runningExperiments)) {
+        return;
+      }
+      runningExperiments = payloads;
+      // An experiment that stops running is reported active again if it comes back
+      activeExperiments.retainAll(payloads);
+    }
+    if (payloads.isEmpty()) {
       return;
     }
     executor.execute(
         () -> {
+          ArrayList<AbtExperimentInfo> experimentInfos = new ArrayList<>(payloads.size());
+          for (ExperimentPayloadProto.ExperimentPayload payload : payloads) {
+            experimentInfos.add(toExperimentInfo(payload));
+          }
           try {
             Logging.logd(
-                "Updating running experiments with: " + runningExperiments.size() + " experiments");
-            abTesting.validateRunningExperiments(runningExperiments);
+                "Updating running experiments with: " + experimentInfos.size() + " experiments");
+            abTesting.validateRunningExperiments(experimentInfos);
           } catch (AbtException e) {
             Logging.loge(
                 "Unable to register experiments with ABT, missing analytics?\n" + e.getMessage());
+            synchronized (this) {
+              // Validate again with the next response
+              if (runningExperiments == payloads) {
+                runningExperiments = Collections.emptyList();
+              }
+            }
           }
         });
   }
@@ -85,29 +113,42 @@ public class AbtIntegrationHelper {
   /**
    * Takes a {@link ExperimentPayloadProto.ExperimentPayload} and tells ABT to set it as an active
    * experiment. This is meant to be called on an experimental FIAM that is getting displayed to a
-   * user, because that would indicate that the experiment is now active for that user.
+   * user, because that would indicate that the experiment is now active for that user. Experiments
+   * that were already reported active are not reported again.
    *
    * @param payload the {@link ExperimentPayloadProto.ExperimentPayload} that should be set as
    *     active.
    */
   void setExperimentActive(ExperimentPayloadProto.ExperimentPayload payload) {
+    synchronized (this) {
+      if (!activeExperiments.add(payload)) {
+        return;
+      }
+    }
     executor.execute(
         () -> {
           try {
             Logging.logd("Updating active experiment: " + payload.toString());
-            abTesting.reportActiveExperiment(
-                new AbtExperimentInfo(
-                    payload.getExperimentId(),
-                    payload.getVariantId(),
-                    payload.getTriggerEvent(),
-                    new Date(payload.getExperimentStartTimeMillis()),
-                    payload.getTriggerTimeoutMillis(),
-                    payload.getTimeToLiveMillis()));
+            abTesting.reportActiveExperiment(toExperimentInfo(payload));
           } catch (AbtException e) {
             Logging.loge(
                 "Unable to set experiment as active with ABT, missing analytics?\n"
                     + e.getMessage());
+            synchronized (this) {
+              activeExperiments.remove(payload);
+            }
           }
         });
   }
+
+  private static AbtExperimentInfo toExperimentInfo(
+      ExperimentPayloadProto.ExperimentPayload payload) {
+    return new AbtExperimentInfo(
+        payload.getExperimentId(),
+        payload.getVariantId(),
+        payload.getTriggerEvent(),
+        new Date(payload.getExperimentStartTimeMillis()),
+        payload.getTriggerTimeoutMillis(),
+        payload.getTimeToLiveMillis());
+  }
 }
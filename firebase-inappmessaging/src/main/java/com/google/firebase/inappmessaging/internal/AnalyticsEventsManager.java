@@ -16,6 +16,7 @@ package com.google.firebase.inappmessaging.internal;
 
 import android.annotation.SuppressLint;
 import android.text.TextUtils;
+import androidx.annotation.GuardedBy;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.firebase.analytics.connector.AnalyticsConnector;
 import com.google.firebase.analytics.connector.AnalyticsConnector.AnalyticsConnectorHandle;
@@ -27,6 +28,7 @@ import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.flowables.ConnectableFlowable;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -41,6 +43,12 @@ public class AnalyticsEventsManager {
   private final ConnectableFlowable<String> flowable;
   private AnalyticsConnectorHandle handle;
 
+  @GuardedBy("this")
+  private Set<String> registeredEventNames = Collections.emptySet();
+
+  @GuardedBy("this")
+  private int registeredEventNamesHash = registeredEventNames.hashCode();
+
   public AnalyticsEventsManager(AnalyticsConnector analyticsConnector) {
     this.analyticsConnector = analyticsConnector;
     AnalyticsFlowableSubscriber subscriber = new AnalyticsFlowableSubscriber();
@@ -86,11 +94,27 @@ public class AnalyticsEventsManager {
     return analyticsEvents;
   }
 
-  public void updateContextualTriggers(FetchEligibleCampaignsResponse serviceResponse) {
+  /**
+   * Registers the analytics events that trigger campaigns in {@code serviceResponse}. Analytics is
+   * only called when the set of events differs from the last one registered, which is the common
+   * case for repeated fetches.
+   */
+  public synchronized void updateContextualTriggers(
+      FetchEligibleCampaignsResponse serviceResponse) {
     Set<String> analyticsEventNames = extractAnalyticsEventNames(serviceResponse);
+    // The hash rules out most changed sets without comparing them element by element
+    int analyticsEventNamesHash = analyticsEventNames.hashCode();
+    if (analyticsEventNamesHash == registeredEventNamesHash
+        && analyticsEventNames.equals(registeredEventNames)) {
+      Logging.logd("Contextual triggers are unchanged, skipping registration");
+      return;
+    }
     Logging.logd(
         "Updating contextual triggers for the following analytics events: " + analyticsEventNames);
-    handle.registerEventNames(analyticsEventNames);
+    // Registered sets are never modified, so the handle can hold on to them without copying
+    registeredEventNames = Collections.unmodifiableSet(analyticsEventNames);
+    registeredEventNamesHash = analyticsEventNamesHash;
+    handle.registerEventNames(registeredEventNames);
   }
 
   private class AnalyticsFlowableSubscriber implements FlowableOnSubscribe<String> {
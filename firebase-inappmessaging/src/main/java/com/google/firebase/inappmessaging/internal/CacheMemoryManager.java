@@ -0,0 +1,174 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Drops the SDK's in-memory caches when the system asks the app to trim its memory. Every cache
+ * is backed by a store on disk and reloads itself on its next use, so trimming only costs a read.
+ *
+ * <p>Caches are trimmed in tiers. The decoded campaigns are the largest, and are dropped once the
+ * app is hidden or memory runs low. The impression and rate limit stores are read before every
+ * display, and are only dropped once the app is in the background or memory is critical.
+ *
+ * @hide
+ */
+@ThreadSafe
+public class CacheMemoryManager implements ComponentCallbacks2 {
+
+  /** The order in which caches are trimmed. A tier is trimmed along with every tier before it. */
+  public enum Tier {
+    /** Campaigns decoded from the campaign cache or a fetch. */
+    CAMPAIGNS,
+    /** The impression and rate limit stores. */
+    STORES
+  }
+
+  /** A cache that can be dropped at any time, and is reloaded on its next use. */
+  public interface TrimmableCache {
+    /** Drops what is held in memory. Must not block on I/O. */
+    void trimMemory();
+
+    /** Returns an estimate of the heap held by the cache, or 0 if it holds nothing. */
+    long getCachedBytes();
+  }
+
+  private final List<TrimmableCache> campaignCaches = new CopyOnWriteArrayList<>();
+  private final List<TrimmableCache> storeCaches = new CopyOnWriteArrayList<>();
+  private final AtomicLong trimCount = new AtomicLong();
+
+  public CacheMemoryManager(
+      CampaignCacheClient campaignCacheClient,
+      ImpressionStorageClient impressionStorageClient,
+      RateLimiterClient rateLimiterClient) {
+    register(Tier.CAMPAIGNS, campaignCacheClient);
+    register(Tier.STORES, impressionStorageClient);
+    register(Tier.STORES, rateLimiterClient);
+  }
+
+  /** Trims {@code cache} along with the other caches of {@code tier}. */
+  public void register(Tier tier, TrimmableCache cache) {
+    (tier == Tier.CAMPAIGNS ? campaignCaches : storeCaches).add(cache);
+  }
+
+  /** Stops trimming {@code cache}, so this manager no longer holds on to it. */
+  public void unregister(TrimmableCache cache) {
+    campaignCaches.remove(cache);
+    storeCaches.remove(cache);
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    Tier tier = getTierToTrim(level);
+    if (tier != null) {
+      trim(tier);
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    trim(Tier.STORES);
+  }
+
+  @Override
+  public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+
+  /** Drops the caches of {@code tier} and of every tier before it. */
+  public void trim(Tier tier) {
+    long before = getCachedBytes(campaignCaches) + getCachedBytes(storeCaches);
+    trim(campaignCaches);
+    if (tier == Tier.STORES) {
+      trim(storeCaches);
+    }
+    trimCount.incrementAndGet();
+    Logging.logd("Trimmed " + tier + " caches, " + before + " bytes were held");
+  }
+
+  /** Returns how much memory the caches currently hold. */
+  public Footprint getFootprint() {
+    return new Footprint(
+        getCachedBytes(campaignCaches), getCachedBytes(storeCaches), trimCount.get());
+  }
+
+  /** Returns the last tier to trim at {@code level}, or null if nothing should be trimmed. */
+  @VisibleForTesting
+  @Nullable
+  static Tier getTierToTrim(int level) {
+    if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+      return Tier.STORES;
+    }
+    // Between RUNNING_LOW and BACKGROUND, which includes UI_HIDDEN
+    if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      return Tier.CAMPAIGNS;
+    }
+    return null;
+  }
+
+  private static void trim(List<TrimmableCache> caches) {
+    for (TrimmableCache cache : caches) {
+      cache.trimMemory();
+    }
+  }
+
+  private static long getCachedBytes(List<TrimmableCache> caches) {
+    long bytes = 0;
+    for (TrimmableCache cache : caches) {
+      bytes += cache.getCachedBytes();
+    }
+    return bytes;
+  }
+
+  /** Snapshot of the memory held by the SDK's caches. */
+  public static class Footprint {
+    private final long campaignBytes;
+    private final long storeBytes;
+    private final long trimCount;
+
+    Footprint(long campaignBytes, long storeBytes, long trimCount) {
+      this.campaignBytes = campaignBytes;
+      this.storeBytes = storeBytes;
+      this.trimCount = trimCount;
+    }
+
+    /** Estimated heap held by the decoded campaigns. */
+    public long getCampaignBytes() {
+      return campaignBytes;
+    }
+
+    /** Estimated heap held by the impression and rate limit stores. */
+    public long getStoreBytes() {
+      return storeBytes;
+    }
+
+    public long getTotalBytes() {
+      return campaignBytes + storeBytes;
+    }
+
+    /** Number of times the caches were trimmed since the app started. */
+    public long getTrimCount() {
+      return trimCount;
+    }
+  }
+}
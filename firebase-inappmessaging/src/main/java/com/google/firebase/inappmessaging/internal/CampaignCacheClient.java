@@ -14,14 +14,13 @@
 
 package com.google.firebase.inappmessaging.internal;
 
-import android.app.Application;
-import com.google.firebase.inappmessaging.internal.injection.modules.ProtoStorageClientModule;
+import androidx.annotation.GuardedBy;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.CampaignCache;
 import com.google.firebase.inappmessaging.internal.time.Clock;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
-import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -32,81 +31,220 @@ import javax.inject.Singleton;
  * Client to store and retrieve the latest version of eligible campaigns fetched from the fiam
  * service
  *
+ * <p>Campaigns are stored as an {@link IndexedCampaignCache}. The cache file is memory-mapped
+ * rather than read, and a campaign is only parsed once it is triggered.
+ *
  * <p>Operations performed on the cache are thread safe but non atomic.
  *
+ * <p>The decoded campaigns are dropped by {@link #trimMemory()}, and mapped again by the next
+ * {@link #get()}.
+ *
+ * <p>The trigger stream currently fetches from the service on every trigger, see {@link
+ * InAppMessageStreamManager}, and skips the cache entirely. Nothing in the SDK reads or writes it
+ * today.
+ *
  * @hide
  */
 @ThreadSafe
 @Singleton
-public class CampaignCacheClient {
+public class CampaignCacheClient implements CacheMemoryManager.TrimmableCache {
   private final ProtoStorageClient storageClient;
-  private final Application application;
   private final Clock clock;
-  @Nullable private FetchEligibleCampaignsResponse cachedResponse;
+
+  // Holds the time it was written, so validity checks never touch the file system
+  @Nullable private volatile IndexedCampaignCache cachedCampaigns;
+
+  private final Object trimMetricsLock = new Object();
+
+  @GuardedBy("trimMetricsLock")
+  private long cachedResponseCount;
+
+  @GuardedBy("trimMetricsLock")
+  private long droppedCampaignCount;
+
+  @GuardedBy("trimMetricsLock")
+  private long savedBytes;
+
+  @GuardedBy("trimMetricsLock")
+  private long lastCachedBytes;
 
   @Inject
-  CampaignCacheClient(
-      @CampaignCache ProtoStorageClient storageClient, Application application, Clock clock) {
+  CampaignCacheClient(@CampaignCache ProtoStorageClient storageClient, Clock clock) {
     this.storageClient = storageClient;
-    this.application = application;
     this.clock = clock;
   }
 
   /**
-   * Writes the provided {@link FetchEligibleCampaignsResponse} to file storage and caches it in
-   * memory.
+   * Writes the provided {@link FetchEligibleCampaignsResponse} to file storage, along with the
+   * time of the write, and caches it in memory.
+   *
+   * <p>Campaigns that can never be displayed are dropped first, see {@link
+   * CampaignResponseTrimmer}.
    *
    * @param fetchEligibleCampaignsResponse
    * @return
    */
   public Completable put(FetchEligibleCampaignsResponse fetchEligibleCampaignsResponse) {
-    return storageClient
-        .write(fetchEligibleCampaignsResponse)
-        .doOnComplete(() -> cachedResponse = fetchEligibleCampaignsResponse);
+    return put(fetchEligibleCampaignsResponse, /* isTestDevice= */ false);
+  }
+
+  /**
+   * Like {@link #put(FetchEligibleCampaignsResponse)}, but campaigns whose schedule has ended are
+   * kept if {@code isTestDevice} is true.
+   *
+   * @param fetchEligibleCampaignsResponse
+   * @param isTestDevice whether the response was fetched by a test device
+   */
+  public Completable put(
+      FetchEligibleCampaignsResponse fetchEligibleCampaignsResponse, boolean isTestDevice) {
+    return Completable.defer(
+        () -> {
+          long now = clock.now();
+          FetchEligibleCampaignsResponse trimmed =
+              CampaignResponseTrimmer.trim(fetchEligibleCampaignsResponse, now, isTestDevice);
+          byte[] encoded = IndexedCampaignCache.encode(trimmed, now);
+          return storageClient
+              .write(encoded)
+              .doOnComplete(
+                  () -> {
+                    cachedCampaigns = IndexedCampaignCache.decode(ByteBuffer.wrap(encoded));
+                    recordTrim(fetchEligibleCampaignsResponse, trimmed, encoded.length);
+                  });
+        });
+  }
+
+  /** Returns how much trimming has shrunk the responses cached since the app started. */
+  public TrimMetrics getTrimMetrics() {
+    synchronized (trimMetricsLock) {
+      return new TrimMetrics(
+          cachedResponseCount, droppedCampaignCount, savedBytes, lastCachedBytes);
+    }
+  }
+
+  private void recordTrim(
+      FetchEligibleCampaignsResponse response,
+      FetchEligibleCampaignsResponse trimmed,
+      int cachedBytes) {
+    int dropped = response.getMessagesCount() - trimmed.getMessagesCount();
+    long saved = 0;
+    if (dropped > 0) {
+      saved = response.getSerializedSize() - trimmed.getSerializedSize();
+      Logging.logd(
+          "Dropped " + dropped + " unusable campaigns before caching, saving " + saved + " bytes");
+    }
+    synchronized (trimMetricsLock) {
+      cachedResponseCount++;
+      droppedCampaignCount += dropped;
+      savedBytes += saved;
+      lastCachedBytes = cachedBytes;
+    }
   }
 
   /**
-   * Gets the last cached campaign response
+   * Gets the last cached campaigns
    *
    * <p>Returns {@link Maybe#empty()} if any of the following are true
    *
    * <ul>
    *   <li>If the storage client returns {@link Maybe#empty()}.
    *   <li>If the ttl on the cached proto is set and has expired.
-   *   <li>If the ttl on the cached proto is not set and the proto file is older than 1 {@link
-   *       TimeUnit#DAYS}.
+   *   <li>If the ttl on the cached proto is not set and the proto was written more than 1 {@link
+   *       TimeUnit#DAYS} ago.
    * </ul>
    *
+   * <p>Campaigns cached in memory are checked when this is called, without any I/O.
+   *
    * @return
    */
-  public Maybe<FetchEligibleCampaignsResponse> get() {
-    Maybe<FetchEligibleCampaignsResponse> readFromCache = Maybe.fromCallable(() -> cachedResponse);
-    Maybe<FetchEligibleCampaignsResponse> readFromStorage =
-        storageClient
-            .read(FetchEligibleCampaignsResponse.parser())
-            .doOnSuccess(response -> cachedResponse = response);
-    return readFromCache
-        .switchIfEmpty(readFromStorage)
-        .filter(this::isResponseValid)
-        .doOnError(s -> cachedResponse = null);
+  public Maybe<IndexedCampaignCache> get() {
+    IndexedCampaignCache cached = cachedCampaigns;
+    if (cached != null) {
+      return isValid(cached) ? Maybe.just(cached) : Maybe.empty();
+    }
+    return storageClient
+        .map()
+        .flatMap(this::load)
+        .doOnSuccess(loaded -> cachedCampaigns = loaded)
+        .filter(this::isValid)
+        .doOnError(s -> cachedCampaigns = null);
   }
 
-  private boolean isResponseValid(FetchEligibleCampaignsResponse response) {
-    long expirationTimestamp = response.getExpirationEpochTimestampMillis();
-    long currentTime = clock.now();
+  /** Drops the campaigns held in memory. */
+  @Override
+  public void trimMemory() {
+    cachedCampaigns = null;
+    // Only holds a record read before the cache was indexed
+    storageClient.trimMemory();
+  }
 
-    File file =
-        new File(
-            application.getApplicationContext().getFilesDir(),
-            ProtoStorageClientModule.CAMPAIGN_CACHE_FILE);
+  @Override
+  public long getCachedBytes() {
+    IndexedCampaignCache cached = cachedCampaigns;
+    return (cached == null ? 0 : cached.estimateHeapBytes()) + storageClient.getCachedBytes();
+  }
+
+  private Maybe<IndexedCampaignCache> load(ByteBuffer buffer) {
+    if (IndexedCampaignCache.isIndexed(buffer)) {
+      IndexedCampaignCache loaded = IndexedCampaignCache.decode(buffer);
+      if (loaded == null) {
+        Logging.logi("Recoverable exception while reading cache: corrupt index");
+      }
+      return loaded == null ? Maybe.empty() : Maybe.just(loaded);
+    }
+    // Written before the cache was indexed, the next fetch replaces it
+    return storageClient
+        .readTimestamped(FetchEligibleCampaignsResponse.parser())
+        .map(
+            legacy ->
+                IndexedCampaignCache.of(legacy.getMessage(), legacy.getWrittenAtMillis()));
+  }
+
+  private boolean isValid(IndexedCampaignCache cached) {
+    long expirationTimestamp = cached.getExpirationEpochTimestampMillis();
+    long currentTime = clock.now();
 
     if (expirationTimestamp != 0) {
       return currentTime < expirationTimestamp;
     }
+    return currentTime < cached.getWrittenAtMillis() + TimeUnit.DAYS.toMillis(1);
+  }
+
+  /** Snapshot of how much trimming has shrunk the cached responses. */
+  public static class TrimMetrics {
+    private final long cachedResponseCount;
+    private final long droppedCampaignCount;
+    private final long savedBytes;
+    private final long lastCachedBytes;
+
+    TrimMetrics(
+        long cachedResponseCount,
+        long droppedCampaignCount,
+        long savedBytes,
+        long lastCachedBytes) {
+      this.cachedResponseCount = cachedResponseCount;
+      this.droppedCampaignCount = droppedCampaignCount;
+      this.savedBytes = savedBytes;
+      this.lastCachedBytes = lastCachedBytes;
+    }
+
+    /** Number of responses written to the cache. */
+    public long getCachedResponseCount() {
+      return cachedResponseCount;
+    }
+
+    /** Number of campaigns dropped from those responses. */
+    public long getDroppedCampaignCount() {
+      return droppedCampaignCount;
+    }
+
+    /** Serialized size of the dropped campaigns. */
+    public long getSavedBytes() {
+      return savedBytes;
+    }
 
-    if (file.exists()) {
-      return currentTime < (file.lastModified() + TimeUnit.DAYS.toMillis(1));
+    /** Size of the last cache written, or 0 if none was. */
+    public long getLastCachedBytes() {
+      return lastCachedBytes;
     }
-    return true;
   }
 }
@@ -0,0 +1,112 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.firebase.inappmessaging.CommonTypesProto.Trigger;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+
+/**
+ * Drops the campaigns of a fetched response that this client can never display, before the
+ * response is cached. The cache, its index and the campaigns parsed from it then only hold usable
+ * campaigns.
+ *
+ * <p>A campaign is dropped if its content is not a banner, modal, image only or card message, if
+ * its schedule has ended, or if none of its triggering conditions can fire. Test campaigns are
+ * shown on foreground whatever their schedule and triggers, so they are only dropped for their
+ * content. Ended campaigns are kept for test devices, whose responses are used to check campaigns
+ * outside of their schedule.
+ */
+final class CampaignResponseTrimmer {
+
+  private CampaignResponseTrimmer() {}
+
+  /**
+   * Returns {@code response} without the campaigns that can not be displayed at or after {@code
+   * nowMillis}, or {@code response} itself if they all can.
+   *
+   * @param keepEndedCampaigns true to skip the schedule check, for test devices
+   */
+  static FetchEligibleCampaignsResponse trim(
+      FetchEligibleCampaignsResponse response, long nowMillis, boolean keepEndedCampaigns) {
+    FetchEligibleCampaignsResponse.Builder trimmed = null;
+    for (int i = 0; i < response.getMessagesCount(); i++) {
+      ThickContent content = response.getMessages(i);
+      boolean usable = isUsable(content, nowMillis, keepEndedCampaigns);
+      if (!usable && trimmed == null) {
+        // Copied on the first dropped campaign, most responses have none
+        trimmed = response.toBuilder().clearMessages();
+        for (int kept = 0; kept < i; kept++) {
+          trimmed.addMessages(response.getMessages(kept));
+        }
+      } else if (usable && trimmed != null) {
+        trimmed.addMessages(content);
+      }
+    }
+    return trimmed == null ? response : trimmed.build();
+  }
+
+  /** Returns whether {@code content} holds a message the display can show. */
+  static boolean isDisplayable(ThickContent content) {
+    switch (content.getContent().getMessageDetailsCase()) {
+      case BANNER:
+      case IMAGE_ONLY:
+      case MODAL:
+      case CARD:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isUsable(
+      ThickContent content, long nowMillis, boolean keepEndedCampaigns) {
+    if (!isDisplayable(content)) {
+      return false;
+    }
+    if (content.getIsTestCampaign()) {
+      return true;
+    }
+    return (keepEndedCampaigns || !hasEnded(content, nowMillis)) && canBeTriggered(content);
+  }
+
+  private static boolean hasEnded(ThickContent content, long nowMillis) {
+    return CampaignSchedule.hasSchedule(content)
+        && nowMillis >= CampaignSchedule.getEndTimeMillis(content);
+  }
+
+  private static boolean canBeTriggered(ThickContent content) {
+    for (TriggeringCondition condition : content.getTriggeringConditionsList()) {
+      switch (condition.getConditionCase()) {
+        case FIAM_TRIGGER:
+          if (condition.getFiamTrigger() == Trigger.APP_LAUNCH
+              || condition.getFiamTrigger() == Trigger.ON_FOREGROUND) {
+            return true;
+          }
+          break;
+        case EVENT:
+          if (!condition.getEvent().getName().isEmpty()) {
+            return true;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,151 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Index of the activity windows of the campaigns in a {@link FetchEligibleCampaignsResponse}.
+ *
+ * <p>A campaign is active strictly between its start and end time. The set of active campaigns
+ * therefore only changes at a handful of boundaries: the first millisecond after a start time and
+ * the end time itself. The index keeps the active set along with the boundaries around it, and only
+ * recomputes it once the clock moves past one of them, so checking activity on each trigger is
+ * constant time.
+ *
+ * @hide
+ */
+@ThreadSafe
+public class CampaignSchedule {
+  /** Returned by {@link #getNextBoundaryMillis} when no campaign starts or ends in the future. */
+  public static final long NO_BOUNDARY = Long.MAX_VALUE;
+
+  private final FetchEligibleCampaignsResponse response;
+  private final List<ThickContent> campaigns = new ArrayList<>();
+  private final long[] activeFrom;
+  private final long[] activeUntil;
+
+  private List<ThickContent> activeCampaigns = Collections.emptyList();
+  private long validFrom = Long.MAX_VALUE;
+  private long validUntil = Long.MIN_VALUE;
+
+  public CampaignSchedule(FetchEligibleCampaignsResponse response) {
+    this.response = response;
+    List<ThickContent> messages = response.getMessagesList();
+    activeFrom = new long[messages.size()];
+    activeUntil = new long[messages.size()];
+    for (ThickContent content : messages) {
+      if (!hasSchedule(content)) {
+        continue; // Campaigns without a valid payload are never displayed
+      }
+      int i = campaigns.size();
+      campaigns.add(content);
+      long startTime = getStartTimeMillis(content);
+      activeFrom[i] = startTime == Long.MAX_VALUE ? startTime : startTime + 1;
+      activeUntil[i] = getEndTimeMillis(content);
+    }
+  }
+
+  /** Estimates the heap held by this index, most of which is the response it was built for. */
+  public long estimateHeapBytes() {
+    return response.getSerializedSize() + 16L * activeFrom.length;
+  }
+
+  /**
+   * Returns whether this index was built for {@code response}. Responses are compared by identity,
+   * so each fetch gets a new index rather than a comparison of every campaign on the trigger path.
+   */
+  public boolean isFor(FetchEligibleCampaignsResponse response) {
+    return this.response == response;
+  }
+
+  /**
+   * Returns the campaigns active at {@code nowMillis}, in the order of the response.
+   *
+   * <p>The result is reused until the next boundary passes and must not be modified.
+   */
+  public synchronized List<ThickContent> getActiveCampaigns(long nowMillis) {
+    if (nowMillis < validFrom || nowMillis >= validUntil) {
+      recompute(nowMillis);
+    }
+    return activeCampaigns;
+  }
+
+  /**
+   * Returns the next time after {@code nowMillis} at which a campaign becomes active or expires,
+   * or {@link #NO_BOUNDARY}.
+   */
+  public synchronized long getNextBoundaryMillis(long nowMillis) {
+    if (nowMillis < validFrom || nowMillis >= validUntil) {
+      recompute(nowMillis);
+    }
+    return validUntil;
+  }
+
+  private void recompute(long nowMillis) {
+    List<ThickContent> active = new ArrayList<>();
+    long from = Long.MIN_VALUE;
+    long until = NO_BOUNDARY;
+    for (int i = 0; i < campaigns.size(); i++) {
+      if (activeFrom[i] <= nowMillis && nowMillis < activeUntil[i]) {
+        active.add(campaigns.get(i));
+      }
+      if (activeFrom[i] <= nowMillis) {
+        from = Math.max(from, activeFrom[i]);
+      } else {
+        until = Math.min(until, activeFrom[i]);
+      }
+      if (activeUntil[i] <= nowMillis) {
+        from = Math.max(from, activeUntil[i]);
+      } else {
+        until = Math.min(until, activeUntil[i]);
+      }
+    }
+    activeCampaigns = Collections.unmodifiableList(active);
+    validFrom = from;
+    validUntil = until;
+  }
+
+  /** Returns whether {@code content} is active at {@code nowMillis}, without an index. */
+  @VisibleForTesting
+  static boolean isActiveAt(ThickContent content, long nowMillis) {
+    return hasSchedule(content)
+        && nowMillis > getStartTimeMillis(content)
+        && nowMillis < getEndTimeMillis(content);
+  }
+
+  static boolean hasSchedule(ThickContent content) {
+    return content.getPayloadCase() == ThickContent.PayloadCase.VANILLA_PAYLOAD
+        || content.getPayloadCase() == ThickContent.PayloadCase.EXPERIMENTAL_PAYLOAD;
+  }
+
+  static long getStartTimeMillis(ThickContent content) {
+    return content.getPayloadCase() == ThickContent.PayloadCase.VANILLA_PAYLOAD
+        ? content.getVanillaPayload().getCampaignStartTimeMillis()
+        : content.getExperimentalPayload().getCampaignStartTimeMillis();
+  }
+
+  static long getEndTimeMillis(ThickContent content) {
+    return content.getPayloadCase() == ThickContent.PayloadCase.VANILLA_PAYLOAD
+        ? content.getVanillaPayload().getCampaignEndTimeMillis()
+        : content.getExperimentalPayload().getCampaignEndTimeMillis();
+  }
+}
@@ -14,12 +14,15 @@
 
 package com.google.firebase.inappmessaging.internal;
 
+import android.content.SharedPreferences;
+import androidx.annotation.Nullable;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.firebase.DataCollectionDefaultChange;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.events.Subscriber;
 import com.google.firebase.installations.FirebaseInstallationsApi;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.inject.Inject;
 
 /**
@@ -39,6 +42,19 @@ public class DataCollectionHelper {
   private SharedPreferencesUtils sharedPreferencesUtils;
   private AtomicBoolean isGlobalAutomaticDataCollectionEnabled;
 
+  // The resolved value of isAutomaticDataCollectionEnabled. Every invalidation installs a new
+  // holder, so a resolution racing with a change fails to replace the holder it started from
+  private final AtomicReference<CachedValue> cachedAutomaticDataCollectionEnabled =
+      new AtomicReference<>(new CachedValue(0, null));
+
+  // Held strongly since SharedPreferences only keeps weak references to its listeners
+  private final SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener =
+      (preferences, key) -> {
+        if (key == null || AUTO_INIT_PREFERENCES.equals(key)) {
+          invalidateCache();
+        }
+      };
+
   @Inject
   public DataCollectionHelper(
       FirebaseApp firebaseApp,
@@ -55,7 +71,9 @@ public class DataCollectionHelper {
           // off the firebaseApp
           DataCollectionDefaultChange change = event.getPayload();
           isGlobalAutomaticDataCollectionEnabled.set(change.enabled);
+          invalidateCache();
         });
+    sharedPreferencesUtils.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
   }
 
   /**
@@ -64,7 +82,17 @@ public class DataCollectionHelper {
    * @return true if auto initialization is required
    */
   public boolean isAutomaticDataCollectionEnabled() {
+    CachedValue cached = cachedAutomaticDataCollectionEnabled.get();
+    if (cached.value != null) {
+      return cached.value;
+    }
+    boolean resolved = resolveAutomaticDataCollectionEnabled();
+    cachedAutomaticDataCollectionEnabled.compareAndSet(
+        cached, new CachedValue(cached.generation, resolved));
+    return resolved;
+  }
 
+  private boolean resolveAutomaticDataCollectionEnabled() {
     // We follow this order of precedence:
     // P0 - the manual override in shared prefs
     // P1 - the product-level manifest override
@@ -112,6 +140,7 @@ public class DataCollectionHelper {
   public void setAutomaticDataCollectionEnabled(boolean isEnabled) {
     // Update SharedPreferences, so that we preserve state across app restarts
     sharedPreferencesUtils.setBooleanPreference(AUTO_INIT_PREFERENCES, isEnabled);
+    invalidateCache();
   }
 
   /**
@@ -153,6 +182,15 @@ public class DataCollectionHelper {
       sharedPreferencesUtils.setBooleanPreference(
           AUTO_INIT_PREFERENCES, Boolean.TRUE.equals(isEnabled));
     }
+    invalidateCache();
+  }
+
+  private void invalidateCache() {
+    CachedValue current;
+    do {
+      current = cachedAutomaticDataCollectionEnabled.get();
+    } while (!cachedAutomaticDataCollectionEnabled.compareAndSet(
+        current, new CachedValue(current.generation + 1, null)));
   }
 
   private boolean readAutomaticDataCollectionEnabledFromPreferences() {
@@ -166,4 +204,15 @@ public class DataCollectionHelper {
   private boolean isProductManifestSet() {
     return sharedPreferencesUtils.isManifestSet(MANIFEST_METADATA_AUTO_INIT_ENABLED);
   }
+
+  /** A resolved value, or null, along with the number of invalidations before it. */
+  private static final class CachedValue {
+    final int generation;
+    @Nullable final Boolean value;
+
+    CachedValue(int generation, @Nullable Boolean value) {
+      this.generation = generation;
+      this.value = value;
+    }
+  }
 }
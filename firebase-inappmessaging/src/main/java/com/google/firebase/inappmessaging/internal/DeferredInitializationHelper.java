@@ -0,0 +1,80 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.firebase.annotations.concurrent.Blocking;
+import java.util.concurrent.Executor;
+import javax.inject.Inject;
+
+/**
+ * Determines whether the SDK should defer building its network, storage and trigger pipeline until
+ * it is first needed, and schedules that work off the main thread once the main thread goes idle.
+ *
+ * <p>Deferred initialization is opted into through the app's manifest:
+ *
+ * <pre>{@code
+ * <meta-data
+ *     android:name="firebase_inapp_messaging_deferred_initialization_enabled"
+ *     android:value="true" />
+ * }</pre>
+ *
+ * @hide
+ */
+public class DeferredInitializationHelper {
+
+  @VisibleForTesting
+  static final String MANIFEST_METADATA_DEFERRED_INITIALIZATION_ENABLED =
+      "firebase_inapp_messaging_deferred_initialization_enabled";
+
+  private final SharedPreferencesUtils sharedPreferencesUtils;
+  private final Executor blockingExecutor;
+
+  @Inject
+  public DeferredInitializationHelper(
+      SharedPreferencesUtils sharedPreferencesUtils, @Blocking Executor blockingExecutor) {
+    this.sharedPreferencesUtils = sharedPreferencesUtils;
+    this.blockingExecutor = blockingExecutor;
+  }
+
+  /**
+   * Determine whether initialization should be deferred until the first trigger or idle.
+   *
+   * @return true if the manifest opts into deferred initialization
+   */
+  public boolean isDeferredInitializationEnabled() {
+    return sharedPreferencesUtils.getBooleanManifestValue(
+        MANIFEST_METADATA_DEFERRED_INITIALIZATION_ENABLED, false);
+  }
+
+  /**
+   * Runs the provided runnable on the blocking executor once the main thread's message queue first
+   * becomes idle, which is after the app has rendered its first frame. Building the pipeline reads
+   * the manifest and the stores, so it is kept off the main thread altogether.
+   */
+  public void runWhenIdle(Runnable runnable) {
+    new Handler(Looper.getMainLooper())
+        .post(
+            () ->
+                Looper.myQueue()
+                    .addIdleHandler(
+                        () -> {
+                          blockingExecutor.execute(runnable);
+                          return false; // Only run once
+                        }));
+  }
+}
@@ -14,8 +14,10 @@
 
 package com.google.firebase.inappmessaging.internal;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import com.google.firebase.annotations.concurrent.Background;
+import com.google.firebase.annotations.concurrent.Blocking;
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingClickListener;
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingDismissListener;
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayCallbacks;
@@ -23,9 +25,16 @@ import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayErrorList
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingImpressionListener;
 import com.google.firebase.inappmessaging.model.Action;
 import com.google.firebase.inappmessaging.model.InAppMessage;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A class used to manage and schedule events to registered (ie: developer-defined) or expensive
@@ -36,7 +45,12 @@ import java.util.concurrent.Executor;
 @SuppressWarnings("JavaDoc")
 public class DeveloperListenerManager {
 
+  // Listeners running longer than this are dispatched on their own from then on
+  @VisibleForTesting
+  static final long SLOW_LISTENER_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
   private final Executor backgroundExecutor;
+  private final Executor blockingExecutor;
   private Map<FirebaseInAppMessagingClickListener, ClicksExecutorAndListener>
       registeredClickListeners = new HashMap<>();
   private Map<FirebaseInAppMessagingDismissListener, DismissExecutorAndListener>
@@ -46,42 +60,104 @@ public class DeveloperListenerManager {
   private Map<FirebaseInAppMessagingImpressionListener, ImpressionExecutorAndListener>
       registeredImpressionListeners = new HashMap<>();
 
-  public DeveloperListenerManager(@Background Executor backgroundExecutor) {
+  public DeveloperListenerManager(
+      @Background Executor backgroundExecutor, @Blocking Executor blockingExecutor) {
     this.backgroundExecutor = backgroundExecutor;
+    this.blockingExecutor = blockingExecutor;
   }
 
   // Used internally by MetricsLoggerClient
   public void impressionDetected(InAppMessage inAppMessage) {
-    for (ImpressionExecutorAndListener listener : registeredImpressionListeners.values()) {
-      listener
-          .withExecutor(backgroundExecutor)
-          .execute(() -> listener.getListener().impressionDetected(inAppMessage));
-    }
+    dispatch(
+        registeredImpressionListeners.values(),
+        listener -> listener.impressionDetected(inAppMessage));
   }
 
   public void displayErrorEncountered(
       InAppMessage inAppMessage,
       FirebaseInAppMessagingDisplayCallbacks.InAppMessagingErrorReason errorReason) {
-    for (ErrorsExecutorAndListener listener : registeredErrorListeners.values()) {
-      listener
-          .withExecutor(backgroundExecutor)
-          .execute(() -> listener.getListener().displayErrorEncountered(inAppMessage, errorReason));
-    }
+    dispatch(
+        registeredErrorListeners.values(),
+        listener -> listener.displayErrorEncountered(inAppMessage, errorReason));
   }
 
   public void messageClicked(InAppMessage inAppMessage, Action action) {
-    for (ClicksExecutorAndListener listener : registeredClickListeners.values()) {
-      listener
-          .withExecutor(backgroundExecutor)
-          .execute(() -> listener.getListener().messageClicked(inAppMessage, action));
-    }
+    dispatch(
+        registeredClickListeners.values(), listener -> listener.messageClicked(inAppMessage, action));
   }
 
   public void messageDismissed(InAppMessage inAppMessage) {
-    for (DismissExecutorAndListener listener : registeredDismissListeners.values()) {
-      listener
-          .withExecutor(backgroundExecutor)
-          .execute(() -> listener.getListener().messageDismissed(inAppMessage));
+    dispatch(
+        registeredDismissListeners.values(), listener -> listener.messageDismissed(inAppMessage));
+  }
+
+  /**
+   * Submits a single task per distinct executor which invokes all of that executor's listeners in
+   * turn. Listeners that have previously been detected as slow are isolated into their own task so
+   * that they cannot delay the rest of the batch. Those without an executor of their own run on the
+   * blocking executor, so they cannot hold up the shared background executor either.
+   *
+   * <p>Like a listener dispatched on its own, a listener that throws fails the task on its
+   * executor. The rest of its batch is notified first.
+   */
+  private <T> void dispatch(
+      Collection<? extends ExecutorAndListener<T>> listeners, ListenerCallback<T> callback) {
+    if (listeners.isEmpty()) {
+      return;
+    }
+    Map<Executor, List<ExecutorAndListener<T>>> batches = new LinkedHashMap<>();
+    for (ExecutorAndListener<T> listener : listeners) {
+      if (listener.isSlow()) {
+        listener.withExecutor(blockingExecutor).execute(() -> invoke(listener, callback));
+        continue;
+      }
+      Executor executor = listener.withExecutor(backgroundExecutor);
+      List<ExecutorAndListener<T>> batch = batches.get(executor);
+      if (batch == null) {
+        batch = new ArrayList<>();
+        batches.put(executor, batch);
+      }
+      batch.add(listener);
+    }
+    for (Map.Entry<Executor, List<ExecutorAndListener<T>>> entry : batches.entrySet()) {
+      List<ExecutorAndListener<T>> batch = entry.getValue();
+      entry
+          .getKey()
+          .execute(
+              () -> {
+                RuntimeException failure = null;
+                for (ExecutorAndListener<T> listener : batch) {
+                  try {
+                    invoke(listener, callback);
+                  } catch (RuntimeException e) {
+                    if (failure == null) {
+                      failure = e;
+                    } else {
+                      failure.addSuppressed(e);
+                    }
+                  }
+                }
+                if (failure != null) {
+                  throw failure;
+                }
+              });
+    }
+  }
+
+  private static <T> void invoke(ExecutorAndListener<T> listener, ListenerCallback<T> callback) {
+    long start = System.nanoTime();
+    try {
+      callback.invoke(listener.getListener());
+    } finally {
+      long elapsedNanos = System.nanoTime() - start;
+      if (listener.recordLatency(elapsedNanos)) {
+        Logging.logw(
+            String.format(
+                Locale.US,
+                "Slow developer listener %s took %d ms, it will be dispatched separately",
+                listener.getListener().getClass().getName(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+      }
     }
   }
 
@@ -167,12 +243,104 @@ public class DeveloperListenerManager {
     return listeners;
   }
 
+  /**
+   * Returns the latency metrics recorded for the given developer listener, or null if the listener
+   * is not registered.
+   */
+  @Nullable
+  public ListenerMetrics getListenerMetrics(Object listener) {
+    ExecutorAndListener<?> executorAndListener = registeredClickListeners.get(listener);
+    if (executorAndListener == null) {
+      executorAndListener = registeredImpressionListeners.get(listener);
+    }
+    if (executorAndListener == null) {
+      executorAndListener = registeredErrorListeners.get(listener);
+    }
+    if (executorAndListener == null) {
+      executorAndListener = registeredDismissListeners.get(listener);
+    }
+    return executorAndListener == null ? null : executorAndListener.metrics();
+  }
+
+  /** Snapshot of the time spent inside a single developer listener. */
+  public static class ListenerMetrics {
+    private final long invocationCount;
+    private final long totalLatencyNanos;
+    private final long maxLatencyNanos;
+    private final long slowInvocationCount;
+
+    ListenerMetrics(
+        long invocationCount,
+        long totalLatencyNanos,
+        long maxLatencyNanos,
+        long slowInvocationCount) {
+      this.invocationCount = invocationCount;
+      this.totalLatencyNanos = totalLatencyNanos;
+      this.maxLatencyNanos = maxLatencyNanos;
+      this.slowInvocationCount = slowInvocationCount;
+    }
+
+    public long getInvocationCount() {
+      return invocationCount;
+    }
+
+    public long getTotalLatencyNanos() {
+      return totalLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+      return maxLatencyNanos;
+    }
+
+    public long getSlowInvocationCount() {
+      return slowInvocationCount;
+    }
+  }
+
+  private interface ListenerCallback<T> {
+    void invoke(T listener);
+  }
+
   private abstract static class ExecutorAndListener<T> {
 
     private final Executor executor;
+    private final AtomicLong invocationCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong slowInvocationCount = new AtomicLong();
 
     public abstract T getListener();
 
+    /**
+     * Records the time spent in a single invocation.
+     *
+     * @return true if this invocation is the first one to exceed the slow listener threshold
+     */
+    boolean recordLatency(long elapsedNanos) {
+      invocationCount.incrementAndGet();
+      totalLatencyNanos.addAndGet(elapsedNanos);
+      long max = maxLatencyNanos.get();
+      while (elapsedNanos > max && !maxLatencyNanos.compareAndSet(max, elapsedNanos)) {
+        max = maxLatencyNanos.get();
+      }
+      if (elapsedNanos < SLOW_LISTENER_THRESHOLD_NANOS) {
+        return false;
+      }
+      return slowInvocationCount.incrementAndGet() == 1;
+    }
+
+    boolean isSlow() {
+      return slowInvocationCount.get() > 0;
+    }
+
+    ListenerMetrics metrics() {
+      return new ListenerMetrics(
+          invocationCount.get(),
+          totalLatencyNanos.get(),
+          maxLatencyNanos.get(),
+          slowInvocationCount.get());
+    }
+
     public Executor withExecutor(Executor defaultExecutor) {
       if (executor == null) {
         return defaultExecutor;
@@ -0,0 +1,333 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplay;
+import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayCallbacks;
+import com.google.firebase.inappmessaging.internal.injection.qualifiers.AppForeground;
+import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import com.google.firebase.inappmessaging.model.Action;
+import com.google.firebase.inappmessaging.model.TriggeredInAppMessage;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.flowables.ConnectableFlowable;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+
+/**
+ * Decides which of the triggered messages are handed to the {@link FirebaseInAppMessagingDisplay},
+ * and when, so that the display only ever receives one message at a time.
+ *
+ * <p>Triggered messages wait in a queue ordered by test campaigns first, then campaign priority,
+ * then arrival. The next one is handed over once the current message is dismissed, clicked or
+ * fails to render, and the cooldown since then has passed. The rules are:
+ *
+ * <ul>
+ *   <li>A message on screen is never replaced, the display has no way to take it down.
+ *   <li>A better message triggered while others wait is shown before them. When the queue is full,
+ *       it evicts the worst waiting message.
+ *   <li>At most {@link #setMaxMessagesPerSession} messages are shown per foreground session.
+ *       Waiting messages are dropped when the app returns to the foreground, but a message still
+ *       on screen keeps the display busy until it is dismissed.
+ *   <li>Test campaigns skip the cooldown and the session cap, so they can always be previewed.
+ * </ul>
+ *
+ * <p>Messages the display never acknowledges with an impression are given up on after {@link
+ * #IMPRESSION_TIMEOUT_MILLIS}, so a display that silently drops a message does not block the
+ * queue.
+ *
+ * @hide
+ */
+@FirebaseAppScope
+public class DisplayArbiter {
+  /** Hands a message to the display, returns false if there is no display to show it. */
+  public interface DisplaySink {
+    boolean display(TriggeredInAppMessage message);
+  }
+
+  public static final long DEFAULT_COOLDOWN_MILLIS = 0;
+  public static final int DEFAULT_MAX_MESSAGES_PER_SESSION = Integer.MAX_VALUE;
+  public static final int DEFAULT_MAX_PENDING_MESSAGES = 3;
+  @VisibleForTesting static final long IMPRESSION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+  private final Schedulers schedulers;
+  private final Clock clock;
+  private final ConnectableFlowable<String> appForegroundEventFlowable;
+  private final PriorityQueue<Pending> pending = new PriorityQueue<>();
+
+  private long cooldownMillis = DEFAULT_COOLDOWN_MILLIS;
+  private int maxMessagesPerSession = DEFAULT_MAX_MESSAGES_PER_SESSION;
+  private int maxPendingMessages = DEFAULT_MAX_PENDING_MESSAGES;
+
+  @Nullable private DisplaySink sink;
+  @Nullable private TriggeredInAppMessage showing;
+  @Nullable private Disposable scheduledTask;
+  private long lastFinishedMillis = Long.MIN_VALUE;
+  private int shownThisSession;
+  private long arrivals;
+
+  @Inject
+  public DisplayArbiter(
+      Schedulers schedulers,
+      Clock clock,
+      @AppForeground ConnectableFlowable<String> appForegroundEventFlowable) {
+    this.schedulers = schedulers;
+    this.clock = clock;
+    this.appForegroundEventFlowable = appForegroundEventFlowable;
+  }
+
+  /** Starts arbitrating for {@code sink}, and resets the session on every app foreground. */
+  public void start(DisplaySink sink) {
+    synchronized (this) {
+      this.sink = sink;
+    }
+    Disposable unused =
+        appForegroundEventFlowable
+            .observeOn(schedulers.mainThread())
+            .subscribe(event -> onSessionStarted());
+  }
+
+  /** Queues the messages selected for one trigger and shows the best one if the display is free. */
+  public synchronized void enqueue(List<TriggeredInAppMessage> messages) {
+    for (TriggeredInAppMessage message : messages) {
+      Pending candidate = new Pending(message, arrivals++);
+      if (pending.size() < maxPendingMessages) {
+        pending.add(candidate);
+      } else {
+        Pending worst = worstPending();
+        if (candidate.compareTo(worst) < 0) {
+          pending.remove(worst);
+          pending.add(candidate);
+          logDropped(worst.message);
+        } else {
+          logDropped(message);
+        }
+      }
+    }
+    drain();
+  }
+
+  /**
+   * Wraps the callbacks of a message handed to the display, to learn when the display is free
+   * again.
+   */
+  public FirebaseInAppMessagingDisplayCallbacks trackCallbacks(
+      TriggeredInAppMessage message, FirebaseInAppMessagingDisplayCallbacks callbacks) {
+    return new TrackingCallbacks(message, callbacks);
+  }
+
+  public synchronized void setCooldownMillis(long cooldownMillis) {
+    this.cooldownMillis = cooldownMillis;
+  }
+
+  public synchronized void setMaxMessagesPerSession(int maxMessagesPerSession) {
+    this.maxMessagesPerSession = maxMessagesPerSession;
+  }
+
+  public synchronized void setMaxPendingMessages(int maxPendingMessages) {
+    this.maxPendingMessages = maxPendingMessages;
+  }
+
+  @VisibleForTesting
+  synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  @VisibleForTesting
+  synchronized boolean isShowing() {
+    return showing != null;
+  }
+
+  @VisibleForTesting
+  synchronized void onSessionStarted() {
+    if (!pending.isEmpty()) {
+      Logging.logd("Dropping " + pending.size() + " messages triggered in the previous session");
+    }
+    pending.clear();
+    shownThisSession = 0;
+    // A message still on screen stays tracked, the display shows it again on resume. It is only
+    // released by its callbacks, or by the impression timeout if it was never acknowledged
+    if (showing == null) {
+      cancelScheduledTask();
+    }
+  }
+
+  private synchronized void onImpression(TriggeredInAppMessage message) {
+    if (showing == message) {
+      // Wait for the message to be dismissed, however long it is on screen
+      cancelScheduledTask();
+    }
+  }
+
+  private synchronized void onFinished(TriggeredInAppMessage message) {
+    if (showing != message) {
+      return;
+    }
+    showing = null;
+    lastFinishedMillis = clock.now();
+    cancelScheduledTask();
+    // Let the display finish taking the message down before handing it the next one
+    scheduledTask = schedule(this::onCooldownElapsed, cooldownMillis);
+  }
+
+  private synchronized void onImpressionTimeout(TriggeredInAppMessage message) {
+    if (showing == message) {
+      Logging.logw("Display did not show the message, moving on");
+      scheduledTask = null;
+      showing = null;
+      drain();
+    }
+  }
+
+  private void drain() {
+    while (showing == null && sink != null && !pending.isEmpty()) {
+      Pending next = pending.peek();
+      boolean isTest = isTestMessage(next.message);
+      if (!isTest && shownThisSession >= maxMessagesPerSession) {
+        Logging.logd("Session message cap reached, dropping " + pending.size() + " messages");
+        pending.clear();
+        return;
+      }
+      long waitMillis =
+          lastFinishedMillis == Long.MIN_VALUE
+              ? 0
+              : lastFinishedMillis + cooldownMillis - clock.now();
+      if (!isTest && waitMillis > 0) {
+        if (scheduledTask == null) {
+          scheduledTask = schedule(this::onCooldownElapsed, waitMillis);
+        }
+        return;
+      }
+      pending.poll();
+      cancelScheduledTask();
+      // Mark the message as showing first, the display may call back before returning
+      showing = next.message;
+      scheduledTask =
+          schedule(() -> onImpressionTimeout(next.message), IMPRESSION_TIMEOUT_MILLIS);
+      if (!sink.display(next.message)) {
+        showing = null;
+        cancelScheduledTask();
+        continue;
+      }
+      if (!isTest) {
+        shownThisSession++;
+      }
+      return;
+    }
+  }
+
+  private synchronized void onCooldownElapsed() {
+    scheduledTask = null;
+    drain();
+  }
+
+  private Disposable schedule(Runnable task, long delayMillis) {
+    return schedulers.mainThread().scheduleDirect(task, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void cancelScheduledTask() {
+    if (scheduledTask != null) {
+      scheduledTask.dispose();
+      scheduledTask = null;
+    }
+  }
+
+  private Pending worstPending() {
+    Pending worst = null;
+    for (Pending p : pending) {
+      if (worst == null || p.compareTo(worst) > 0) {
+        worst = p;
+      }
+    }
+    return worst;
+  }
+
+  private static boolean isTestMessage(TriggeredInAppMessage message) {
+    return message.getInAppMessage().getCampaignMetadata().getIsTestMessage();
+  }
+
+  private static void logDropped(TriggeredInAppMessage message) {
+    Logging.logd(
+        "Too many messages waiting, dropping "
+            + message.getInAppMessage().getCampaignMetadata().getCampaignName());
+  }
+
+  private static final class Pending implements Comparable<Pending> {
+    final TriggeredInAppMessage message;
+    final long arrival;
+
+    Pending(TriggeredInAppMessage message, long arrival) {
+      this.message = message;
+      this.arrival = arrival;
+    }
+
+    @Override
+    public int compareTo(Pending other) {
+      boolean isTest = isTestMessage(message);
+      if (isTest != isTestMessage(other.message)) {
+        return isTest ? -1 : 1;
+      }
+      int byPriority = Integer.compare(message.getPriority(), other.message.getPriority());
+      return byPriority != 0 ? byPriority : Long.compare(arrival, other.arrival);
+    }
+  }
+
+  /** Forwards to the real callbacks, and frees the display once the message is gone. */
+  private class TrackingCallbacks implements FirebaseInAppMessagingDisplayCallbacks {
+    private final TriggeredInAppMessage message;
+    private final FirebaseInAppMessagingDisplayCallbacks delegate;
+
+    TrackingCallbacks(
+        TriggeredInAppMessage message, FirebaseInAppMessagingDisplayCallbacks delegate) {
+      this.message = message;
+      this.delegate = delegate;
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> impressionDetected() {
+      onImpression(message);
+      return delegate.impressionDetected();
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> messageDismissed(@NonNull InAppMessagingDismissType dismissType) {
+      onFinished(message);
+      return delegate.messageDismissed(dismissType);
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> messageClicked(@NonNull Action action) {
+      onFinished(message);
+      return delegate.messageClicked(action);
+    }
+
+    @NonNull
+    @Override
+    public Task<Void> displayErrorEncountered(
+        @NonNull InAppMessagingErrorReason inAppMessagingErrorReason) {
+      onFinished(message);
+      return delegate.displayErrorEncountered(inAppMessagingErrorReason);
+    }
+  }
+}
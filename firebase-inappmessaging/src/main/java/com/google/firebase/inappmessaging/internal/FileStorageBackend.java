@@ -0,0 +1,109 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static android.content.Context.MODE_PRIVATE;
+
+import android.app.Application;
+import androidx.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Stores each record in its own file in the app's file directory, named after its key. This is
+ * the format the SDK has always used.
+ *
+ * <p>Records are replaced by writing a temporary file and renaming it over the record, so a failed
+ * write leaves the previous record, and mapped records keep their contents. The replaced file is
+ * renamed to a backup first, which costs no extra write.
+ *
+ * @hide
+ */
+@ThreadSafe
+public class FileStorageBackend implements StorageBackend {
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final String PREVIOUS_FILE_SUFFIX = ".bak";
+
+  private final Application application;
+
+  public FileStorageBackend(Application application) {
+    this.application = application;
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(String key) throws IOException {
+    try (FileInputStream input = application.openFileInput(key)) {
+      byte[] bytes = new byte[(int) input.getChannel().size()];
+      new DataInputStream(input).readFully(bytes);
+      return bytes;
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  @Override
+  public ByteBuffer map(String key) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(getFile(key), "r")) {
+      FileChannel channel = file.getChannel();
+      // The mapping remains valid once the file is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  @Override
+  public byte[] readPrevious(String key) throws IOException {
+    return read(key + PREVIOUS_FILE_SUFFIX);
+  }
+
+  @Override
+  public void write(String key, byte[] bytes) throws IOException {
+    // Writers of the same key are serialized by the caller, see ProtoStorageClient
+    String tempFileName = key + TEMP_FILE_SUFFIX;
+    try (FileOutputStream output = application.openFileOutput(tempFileName, MODE_PRIVATE)) {
+      output.write(bytes);
+    }
+    File file = getFile(key);
+    // If the process dies between the renames, the record is missing and readers fall back to the
+    // backup
+    if (file.exists() && !file.renameTo(getFile(key + PREVIOUS_FILE_SUFFIX))) {
+      Logging.logw("Unable to keep the previous record of " + key);
+    }
+    if (!getFile(tempFileName).renameTo(file)) {
+      throw new IOException("Unable to replace " + key);
+    }
+  }
+
+  @Override
+  public long lastModified(String key) {
+    return getFile(key).lastModified();
+  }
+
+  private File getFile(String key) {
+    return new File(application.getFilesDir(), key);
+  }
+}
@@ -63,9 +63,13 @@ public class ForegroundNotifier implements Application.ActivityLifecycleCallback
   private Runnable check;
   private final BehaviorSubject<String> foregroundSubject = BehaviorSubject.create();
 
-  /** @return a {@link ConnectableFlowable} representing a stream of foreground events */
+  /**
+   * @return a {@link ConnectableFlowable} representing a stream of foreground events. The latest
+   *     event is replayed to late subscribers, so a pipeline that is built after the app came to the
+   *     foreground still sees it.
+   */
   public ConnectableFlowable<String> foregroundFlowable() {
-    return foregroundSubject.toFlowable(BackpressureStrategy.BUFFER).publish();
+    return foregroundSubject.toFlowable(BackpressureStrategy.BUFFER).replay(1);
   }
 
   @Override
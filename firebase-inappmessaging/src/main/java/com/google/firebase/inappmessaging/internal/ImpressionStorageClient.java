@@ -33,15 +33,22 @@ import javax.inject.Singleton;
  * @hide
  */
 @Singleton
-public class ImpressionStorageClient {
+public class ImpressionStorageClient implements CacheMemoryManager.TrimmableCache {
   private static final CampaignImpressionList EMPTY_IMPRESSIONS =
       CampaignImpressionList.getDefaultInstance();
   private final ProtoStorageClient storageClient;
-  private Maybe<CampaignImpressionList> cachedImpressionsMaybe = Maybe.empty();
+  // Serializes storeImpression and clearImpressions, which would otherwise overwrite each other
+  private final StoreMutationQueue<CampaignImpressionList> mutations;
+  private volatile Maybe<CampaignImpressionList> cachedImpressionsMaybe = Maybe.empty();
 
   @Inject
   ImpressionStorageClient(@ImpressionStore ProtoStorageClient storageClient) {
     this.storageClient = storageClient;
+    this.mutations =
+        new StoreMutationQueue<>(
+            storageClient,
+            Single.defer(() -> getAllImpressions().defaultIfEmpty(EMPTY_IMPRESSIONS).toSingle()),
+            this::initInMemCache);
   }
 
   private static CampaignImpressionList appendImpression(
@@ -53,16 +60,7 @@ public class ImpressionStorageClient {
 
   /** Stores the provided {@link CampaignImpression} to file storage */
   public Completable storeImpression(CampaignImpression impression) {
-    return getAllImpressions()
-        .defaultIfEmpty(EMPTY_IMPRESSIONS)
-        .flatMapCompletable(
-            storedImpressions -> {
-              CampaignImpressionList appendedImpressions =
-                  appendImpression(storedImpressions, impression);
-              return storageClient
-                  .write(appendedImpressions)
-                  .doOnComplete(() -> initInMemCache(appendedImpressions));
-            });
+    return mutations.submit(storedImpressions -> appendImpression(storedImpressions, impression));
   }
 
   /**
@@ -78,6 +76,27 @@ public class ImpressionStorageClient {
         .doOnError(ignored -> clearInMemCache());
   }
 
+  /**
+   * Reads the stored impressions into memory, so later reads do not touch the file system. Read
+   * failures are absorbed, the next read retries them.
+   */
+  public Completable warmUp() {
+    return getAllImpressions().ignoreElement().onErrorComplete();
+  }
+
+  /** Drops the impressions held in memory. The next read loads them from storage again. */
+  @Override
+  public void trimMemory() {
+    clearInMemCache();
+    storageClient.trimMemory();
+  }
+
+  @Override
+  public long getCachedBytes() {
+    return cachedImpressionsMaybe.map(CampaignImpressionList::getSerializedSize).blockingGet(0)
+        + storageClient.getCachedBytes();
+  }
+
   private void initInMemCache(CampaignImpressionList campaignImpressions) {
     cachedImpressionsMaybe = Maybe.just(campaignImpressions);
   }
@@ -114,24 +133,20 @@ public class ImpressionStorageClient {
       idsToClear.add(id);
     }
     Logging.logd("Potential impressions to clear: " + idsToClear.toString());
-    return getAllImpressions()
-        .defaultIfEmpty(EMPTY_IMPRESSIONS)
-        .flatMapCompletable(
-            (storedImpressions) -> {
-              Logging.logd("Existing impressions: " + storedImpressions.toString());
-              CampaignImpressionList.Builder clearedImpressionListBuilder =
-                  CampaignImpressionList.newBuilder();
-              for (CampaignImpression storedImpression :
-                  storedImpressions.getAlreadySeenCampaignsList()) {
-                if (!idsToClear.contains(storedImpression.getCampaignId())) {
-                  clearedImpressionListBuilder.addAlreadySeenCampaigns(storedImpression);
-                }
-              }
-              CampaignImpressionList clearedImpressionList = clearedImpressionListBuilder.build();
-              Logging.logd("New cleared impression list: " + clearedImpressionList.toString());
-              return storageClient
-                  .write(clearedImpressionList)
-                  .doOnComplete(() -> initInMemCache(clearedImpressionList));
-            });
+    return mutations.submit(
+        storedImpressions -> {
+          Logging.logd("Existing impressions: " + storedImpressions.toString());
+          CampaignImpressionList.Builder clearedImpressionListBuilder =
+              CampaignImpressionList.newBuilder();
+          for (CampaignImpression storedImpression :
+              storedImpressions.getAlreadySeenCampaignsList()) {
+            if (!idsToClear.contains(storedImpression.getCampaignId())) {
+              clearedImpressionListBuilder.addAlreadySeenCampaigns(storedImpression);
+            }
+          }
+          CampaignImpressionList clearedImpressionList = clearedImpressionListBuilder.build();
+          Logging.logd("New cleared impression list: " + clearedImpressionList.toString());
+          return clearedImpressionList;
+        });
   }
 }
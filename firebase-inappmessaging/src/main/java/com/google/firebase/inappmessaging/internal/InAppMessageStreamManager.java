@@ -16,6 +16,7 @@ package com.google.firebase.inappmessaging.internal;
 
 import android.text.TextUtils;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.google.android.gms.tasks.Task;
@@ -23,7 +24,6 @@ import com.google.firebase.annotations.concurrent.Blocking;
 import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.AppForeground;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.ProgrammaticTrigger;
-import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
 import com.google.firebase.inappmessaging.internal.time.Clock;
 import com.google.firebase.inappmessaging.model.InAppMessage;
 import com.google.firebase.inappmessaging.model.MessageType;
@@ -39,28 +39,30 @@ import io.reactivex.Completable;
 import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.flowables.ConnectableFlowable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Executor;
 
-import javax.inject.Inject;
-
 /**
  * Class to federate multiple clients and encapsulate the high level behavior of the fiam headless
  * sdk
  *
  * @hide
  */
-@FirebaseAppScope
-public class InAppMessageStreamManager {
+public class InAppMessageStreamManager implements CacheMemoryManager.TrimmableCache {
     public static final String ON_FOREGROUND = "ON_FOREGROUND";
+    /** By default only the highest priority message is selected for each trigger. */
+    public static final int DEFAULT_MAX_SELECTED_MESSAGES = 1;
     private final ConnectableFlowable<String> appForegroundEventFlowable;
     private final ConnectableFlowable<String> programmaticTriggerEventFlowable;
+    private final ConnectableFlowable<List<String>> programmaticBatchTriggerEventFlowable;
     private final CampaignCacheClient campaignCacheClient;
     private final Clock clock;
     private final ApiClient apiClient;
@@ -73,13 +75,21 @@ public class InAppMessageStreamManager {
     private final AbtIntegrationHelper abtIntegrationHelper;
     private final FirebaseInstallationsApi firebaseInstallations;
     private final DataCollectionHelper dataCollectionHelper;
+    private final TriggerGate triggerGate;
+    // The campaigns of the last trigger, either fetched or read from the cache
+    @Nullable
+    private CampaignSchedule campaignSchedule;
+    @Nullable
+    private IndexedCampaignCache cachedCampaigns;
+    private volatile int maxSelectedMessages = DEFAULT_MAX_SELECTED_MESSAGES;
     @Blocking
     private final Executor blockingExecutor;
 
-    @Inject
     public InAppMessageStreamManager(
             @AppForeground ConnectableFlowable<String> appForegroundEventFlowable,
             @ProgrammaticTrigger ConnectableFlowable<String> programmaticTriggerEventFlowable,
+            @ProgrammaticTrigger
+                    ConnectableFlowable<List<String>> programmaticBatchTriggerEventFlowable,
             CampaignCacheClient campaignCacheClient,
             Clock clock,
             ApiClient apiClient,
@@ -92,9 +102,11 @@ public class InAppMessageStreamManager {
             FirebaseInstallationsApi firebaseInstallations,
             DataCollectionHelper dataCollectionHelper,
             AbtIntegrationHelper abtIntegrationHelper,
-            @Blocking Executor blockingExecutor) {
+            @Blocking Executor blockingExecutor,
+            TriggerGate triggerGate) {
         this.appForegroundEventFlowable = appForegroundEventFlowable;
         this.programmaticTriggerEventFlowable = programmaticTriggerEventFlowable;
+        this.programmaticBatchTriggerEventFlowable = programmaticBatchTriggerEventFlowable;
         this.campaignCacheClient = campaignCacheClient;
         this.clock = clock;
         this.apiClient = apiClient;
@@ -108,9 +120,22 @@ public class InAppMessageStreamManager {
         this.firebaseInstallations = firebaseInstallations;
         this.abtIntegrationHelper = abtIntegrationHelper;
         this.blockingExecutor = blockingExecutor;
+        this.triggerGate = triggerGate;
+    }
+
+    /**
+     * Loads the impression store and rate limit store, one io task each. The campaign cache is
+     * left alone, triggers do not read it while {@link #shouldIgnoreCache} forces a fetch.
+     */
+    private Completable warmUpStores() {
+        return Completable.mergeArray(
+                        impressionStorageClient.warmUp().subscribeOn(schedulers.io()),
+                        rateLimiterClient.warmUp().subscribeOn(schedulers.io()))
+                .doOnComplete(() -> Logging.logd("Warmed up stores"));
     }
 
-    private static boolean containsTriggeringCondition(String event, ThickContent content) {
+    @VisibleForTesting
+    static boolean containsTriggeringCondition(String event, ThickContent content) {
         if (isAppForegroundEvent(event) && content.getIsTestCampaign()) {
             return true; // the triggering condition for test campaigns is always 'app foreground'
         }
@@ -123,6 +148,21 @@ public class InAppMessageStreamManager {
         return false;
     }
 
+    /**
+     * Returns the first of {@code events} that triggers {@code content}, or null if none of them
+     * do.
+     */
+    @Nullable
+    @VisibleForTesting
+    static String getTriggeringEvent(List<String> events, ThickContent content) {
+        for (String event : events) {
+            if (containsTriggeringCondition(event, content)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
     private static boolean hasFiamTrigger(TriggeringCondition tc, String event) {
         return tc.getFiamTrigger().toString().equals(event);
     }
@@ -131,29 +171,16 @@ public class InAppMessageStreamManager {
         return tc.getEvent().getName().equals(event);
     }
 
-    private static boolean isActive(Clock clock, ThickContent content) {
-        long campaignStartTime;
-        long campaignEndTime;
-        if (content.getPayloadCase().equals(ThickContent.PayloadCase.VANILLA_PAYLOAD)) {
-            // Handle the campaign case
-            campaignStartTime = content.getVanillaPayload().getCampaignStartTimeMillis();
-            campaignEndTime = content.getVanillaPayload().getCampaignEndTimeMillis();
-        } else if (content.getPayloadCase().equals(ThickContent.PayloadCase.EXPERIMENTAL_PAYLOAD)) {
-            // Handle the experiment case
-            campaignStartTime = content.getExperimentalPayload().getCampaignStartTimeMillis();
-            campaignEndTime = content.getExperimentalPayload().getCampaignEndTimeMillis();
-        } else {
-            // If we have no valid payload then don't display
-            return false;
-        }
-        long currentTime = clock.now();
-        return currentTime > campaignStartTime && currentTime < campaignEndTime;
+    @VisibleForTesting
+    static boolean isActive(Clock clock, ThickContent content) {
+        return CampaignSchedule.isActiveAt(content, clock.now());
     }
 
     // Comparisons treat the numeric values of priorities like they were ranks i.e lower is better.
     // If one campaign is a test campaign it is of higher priority.
     // Example: P1 > P2. P2(test) > P1. P1(test) > P2(test)
-    private static int compareByPriority(ThickContent content1, ThickContent content2) {
+    @VisibleForTesting
+    static int compareByPriority(ThickContent content1, ThickContent content2) {
         if (content1.getIsTestCampaign() && !content2.getIsTestCampaign()) {
             return -1;
         }
@@ -163,6 +190,18 @@ public class InAppMessageStreamManager {
         return Integer.compare(content1.getPriority().getValue(), content2.getPriority().getValue());
     }
 
+    /**
+     * Sets how many of the eligible messages are selected, in priority order, for each trigger.
+     * Only the selected messages are decoded.
+     */
+    public void setMaxSelectedMessages(int maxSelectedMessages) {
+        if (maxSelectedMessages < 1) {
+            throw new IllegalArgumentException(
+                    "maxSelectedMessages must be at least 1, was " + maxSelectedMessages);
+        }
+        this.maxSelectedMessages = maxSelectedMessages;
+    }
+
     public static boolean isAppForegroundEvent(TriggeringCondition event) {
         return event.getFiamTrigger().toString().equals(ON_FOREGROUND);
     }
@@ -171,30 +210,47 @@ public class InAppMessageStreamManager {
         return event.equals(ON_FOREGROUND);
     }
 
-    private boolean shouldIgnoreCache(String event) {
+    // Every trigger fetches from the service, so the cache is neither read nor written below
+    private boolean shouldIgnoreCache(List<String> events) {
         return true;
     }
 
     public Flowable<List<TriggeredInAppMessage>> createFirebaseInAppMessageStream() {
-        return Flowable.merge(
-                        appForegroundEventFlowable,
-                        analyticsEventsManager.getAnalyticsEventsFlowable(),
-                        programmaticTriggerEventFlowable)
-                .doOnNext(e -> Logging.logd("Event Triggered: " + e))
+        // Each trigger is a batch of events, evaluated together. Most are a single event, only
+        // FirebaseInAppMessaging#triggerEvents emits several
+        Flowable<List<String>> triggers =
+                Flowable.merge(
+                        Flowable.merge(
+                                        appForegroundEventFlowable,
+                                        analyticsEventsManager.getAnalyticsEventsFlowable(),
+                                        programmaticTriggerEventFlowable)
+                                .map(Collections::singletonList),
+                        programmaticBatchTriggerEventFlowable);
+        // The stores are read in parallel while waiting for the first trigger, so it finds them
+        // in memory. Triggers wait for the warm-up rather than reading the files again
+        Completable storesLoaded = warmUpStores().cache();
+        Disposable unused = storesLoaded.subscribe();
+        // Nothing is fetched or evaluated for triggers that could not be displayed
+        return triggerGate
+                .apply(triggers)
+                .doOnNext(events -> Logging.logd("Event Triggered: " + events))
                 .observeOn(schedulers.io())
+                .concatMap(events -> storesLoaded.andThen(Flowable.just(events)))
                 .concatMap(
-                        event -> {
-                            Maybe<FetchEligibleCampaignsResponse> cacheRead =
+                        events -> {
+                            // Only the cached campaigns matching the trigger are parsed
+                            Maybe<List<ThickContent>> cacheRead =
                                     campaignCacheClient
                                             .get()
                                             .doOnSuccess(r -> Logging.logd("Fetched from cache"))
+                                            .map(cache -> getTriggeredCampaigns(events, cache))
                                             .doOnError(e -> Logging.logw("Cache read error: " + e.getMessage()))
                                             .onErrorResumeNext(Maybe.empty()); // Absorb cache read failures
 
                             Consumer<FetchEligibleCampaignsResponse> cacheWrite =
                                     response ->
                                             campaignCacheClient
-                                                    .put(response)
+                                                    .put(response, testDeviceHelper.isDeviceInTestMode())
                                                     .doOnComplete(() -> Logging.logd("Wrote to cache"))
                                                     .doOnError(e -> Logging.logw("Cache write error: " + e.getMessage()))
                                                     .onErrorResumeNext(
@@ -217,31 +273,26 @@ public class InAppMessageStreamManager {
                                                     .map(isImpressed -> content);
 
                             Function<ThickContent, Maybe<ThickContent>> appForegroundRateLimitFilter =
-                                    content -> getContentIfNotRateLimited(event, content);
+                                    content -> getContentIfNotRateLimited(events, content);
 
                             Function<ThickContent, Maybe<ThickContent>> filterDisplayable =
                                     thickContent -> {
-                                        switch (thickContent.getContent().getMessageDetailsCase()) {
-                                            case BANNER:
-                                            case IMAGE_ONLY:
-                                            case MODAL:
-                                            case CARD:
-                                                return Maybe.just(thickContent);
-                                            default:
-                                                Logging.logd("Filtering non-displayable message");
-                                                return Maybe.empty();
+                                        if (CampaignResponseTrimmer.isDisplayable(thickContent)) {
+                                            return Maybe.just(thickContent);
                                         }
+                                        Logging.logd("Filtering non-displayable message");
+                                        return Maybe.empty();
                                     };
 
-                            Function<FetchEligibleCampaignsResponse, Single<List<TriggeredInAppMessage>>>
+                            Function<List<ThickContent>, Single<List<TriggeredInAppMessage>>>
                                     selectThickContent =
-                                    response ->
+                                    campaigns ->
                                             getTriggeredInAppMessageFlowable(
-                                                    event,
+                                                    events,
                                                     filterAlreadyImpressed,
 //                              appForegroundRateLimitFilter,
                                                     filterDisplayable,
-                                                    response);
+                                                    campaigns);
 
                             Maybe<CampaignImpressionList> alreadySeenCampaigns =
                                     impressionStorageClient
@@ -280,12 +331,13 @@ public class InAppMessageStreamManager {
                                                 .doOnSuccess(
                                                         resp -> impressionStorageClient.clearImpressions(resp).subscribe())
                                                 .doOnSuccess(analyticsEventsManager::updateContextualTriggers)
+                                                .doOnSuccess(abtIntegrationHelper::updateRunningExperiments)
                                                 .doOnSuccess(testDeviceHelper::processCampaignFetch)
                                                 .doOnError(e -> Logging.logw("Service fetch error: " + e.getMessage()))
                                                 .onErrorResumeNext(Maybe.empty()); // Absorb service failures
                                     };
 
-                            if (shouldIgnoreCache(event)) {
+                            if (shouldIgnoreCache(events)) {
                                 Logging.logi(
                                         String.format(
                                                 "Forcing fetch from service rather than cache. "
@@ -294,21 +346,28 @@ public class InAppMessageStreamManager {
                                                 testDeviceHelper.isAppInstallFresh()));
                                 return alreadySeenCampaigns
                                         .flatMap(serviceFetch)
+                                        .map(response -> getTriggeredCampaigns(events, response))
                                         .flatMapSingle(selectThickContent)
                                         .toFlowable();
                             }
 
                             Logging.logd("Attempting to fetch campaigns using cache");
                             return cacheRead
-                                    .switchIfEmpty(alreadySeenCampaigns.flatMap(serviceFetch).doOnSuccess(cacheWrite))
+                                    .switchIfEmpty(
+                                            alreadySeenCampaigns
+                                                    .flatMap(serviceFetch)
+                                                    .doOnSuccess(cacheWrite)
+                                                    .map(response -> getTriggeredCampaigns(events, response)))
                                     .flatMapSingle(selectThickContent)
                                     .toFlowable();
                         })
+                .filter(messages -> !messages.isEmpty())
                 .observeOn(schedulers.mainThread()); // Updates are delivered on the main thread
     }
 
-    private Maybe<ThickContent> getContentIfNotRateLimited(String event, ThickContent content) {
-        if (!content.getIsTestCampaign() && isAppForegroundEvent(event)) {
+    private Maybe<ThickContent> getContentIfNotRateLimited(
+            List<String> events, ThickContent content) {
+        if (!content.getIsTestCampaign() && events.contains(ON_FOREGROUND)) {
             return rateLimiterClient
                     .isRateLimited(appForegroundRateLimit)
                     .doOnSuccess(
@@ -335,20 +394,98 @@ public class InAppMessageStreamManager {
     }
 
     private Single<List<TriggeredInAppMessage>> getTriggeredInAppMessageFlowable(
-            String event,
+            List<String> events,
             Function<ThickContent, Maybe<ThickContent>> filterAlreadyImpressed,
 //      Function<ThickContent, Maybe<ThickContent>> appForegroundRateLimitFilter,
             Function<ThickContent, Maybe<ThickContent>> filterDisplayable,
-            FetchEligibleCampaignsResponse response) {
-        List<ThickContent> list = response.getMessagesList();
-        return Flowable.fromIterable(list != null ? list : Collections.emptyList())
-                .filter(content -> testDeviceHelper.isDeviceInTestMode() || isActive(clock, content))
-                .filter(content -> containsTriggeringCondition(event, content))
+            List<ThickContent> triggeredCampaigns) {
+        return Flowable.fromIterable(triggeredCampaigns)
                 .doOnError(e -> Logging.logw("Service fetch error4: " + e.getMessage()))
                 .flatMapMaybe(filterAlreadyImpressed)
                 .flatMapMaybe(filterDisplayable)
-                .sorted(InAppMessageStreamManager::compareByPriority)
-                .flatMapMaybe(content -> triggeredInAppMessage(content, event)).toList();
+                .collect(
+                        () -> new TopKSelector<ThickContent>(
+                                maxSelectedMessages, InAppMessageStreamManager::compareByPriority),
+                        TopKSelector::offer)
+                // Only the selected messages are decoded
+                .flattenAsFlowable(TopKSelector::getSelected)
+                .flatMapMaybe(
+                        content -> triggeredInAppMessage(content, getTriggeringEvent(events, content)))
+                .toList();
+    }
+
+    /** Returns the campaigns of a fetched {@code response} that are triggered by {@code events}. */
+    private List<ThickContent> getTriggeredCampaigns(
+            List<String> events, FetchEligibleCampaignsResponse response) {
+        List<ThickContent> list =
+                testDeviceHelper.isDeviceInTestMode()
+                        ? response.getMessagesList()
+                        : getCampaignSchedule(response).getActiveCampaigns(clock.now());
+        List<ThickContent> triggered = new ArrayList<>();
+        for (ThickContent content : list) {
+            if (getTriggeringEvent(events, content) != null) {
+                triggered.add(content);
+            }
+        }
+        return triggered;
+    }
+
+    /** Returns the cached campaigns that are triggered by {@code events}. */
+    private List<ThickContent> getTriggeredCampaigns(
+            List<String> events, IndexedCampaignCache cache) {
+        synchronized (this) {
+            campaignSchedule = null;
+            cachedCampaigns = cache;
+        }
+        return cache.getTriggeredCampaigns(
+                events, clock.now(), testDeviceHelper.isDeviceInTestMode());
+    }
+
+    @VisibleForTesting
+    @Nullable
+    synchronized CampaignSchedule getCurrentCampaignSchedule() {
+        return campaignSchedule;
+    }
+
+    /**
+     * Returns the activity index of {@code response}, which is built once for each fetched
+     * response.
+     */
+    private synchronized CampaignSchedule getCampaignSchedule(
+            FetchEligibleCampaignsResponse response) {
+        if (campaignSchedule == null || !campaignSchedule.isFor(response)) {
+            campaignSchedule = new CampaignSchedule(response);
+            cachedCampaigns = null;
+        }
+        return campaignSchedule;
+    }
+
+    /**
+     * Returns the next time at which a cached campaign becomes active or expires, or {@link
+     * CampaignSchedule#NO_BOUNDARY} if nothing has been fetched since startup or the last {@link
+     * #trimMemory()}.
+     */
+    public synchronized long getNextScheduleBoundaryMillis() {
+        if (campaignSchedule != null) {
+            return campaignSchedule.getNextBoundaryMillis(clock.now());
+        }
+        if (cachedCampaigns != null) {
+            return cachedCampaigns.getNextBoundaryMillis(clock.now());
+        }
+        return CampaignSchedule.NO_BOUNDARY;
+    }
+
+    /** Drops the campaigns of the last trigger. The next trigger reads or fetches them again. */
+    @Override
+    public synchronized void trimMemory() {
+        campaignSchedule = null;
+        cachedCampaigns = null;
+    }
+
+    @Override
+    public synchronized long getCachedBytes() {
+        // The cached campaigns are shared with, and reported by, the campaign cache client
+        return campaignSchedule == null ? 0 : campaignSchedule.estimateHeapBytes();
     }
 
     private Maybe<TriggeredInAppMessage> triggeredInAppMessage(ThickContent content, String event) {
@@ -382,7 +519,8 @@ public class InAppMessageStreamManager {
             return Maybe.empty();
         }
 
-        return Maybe.just(new TriggeredInAppMessage(inAppMessage, event));
+        return Maybe.just(
+                new TriggeredInAppMessage(inAppMessage, event, content.getPriority().getValue()));
     }
 
     private static boolean validIID(InstallationIdResult iid) {
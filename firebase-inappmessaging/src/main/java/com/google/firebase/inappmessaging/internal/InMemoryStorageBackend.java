@@ -0,0 +1,85 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Holds records in memory only, for tests and for sessions that should not leave state on the
+ * device. Everything is lost when the process dies.
+ *
+ * @hide
+ */
+@ThreadSafe
+public class InMemoryStorageBackend implements StorageBackend {
+  private final Clock clock;
+  private final ConcurrentMap<String, Record> records = new ConcurrentHashMap<>();
+
+  public InMemoryStorageBackend(Clock clock) {
+    this.clock = clock;
+  }
+
+  @Nullable
+  @Override
+  public byte[] read(String key) {
+    Record record = records.get(key);
+    return record == null ? null : record.bytes;
+  }
+
+  @Nullable
+  @Override
+  public ByteBuffer map(String key) {
+    Record record = records.get(key);
+    return record == null ? null : ByteBuffer.wrap(record.bytes).asReadOnlyBuffer();
+  }
+
+  @Nullable
+  @Override
+  public byte[] readPrevious(String key) {
+    Record record = records.get(key);
+    return record == null ? null : record.previousBytes;
+  }
+
+  @Override
+  public synchronized void write(String key, byte[] bytes) {
+    Record previous = records.get(key);
+    // Copied, so the caller is free to reuse its array
+    records.put(
+        key, new Record(bytes.clone(), previous == null ? null : previous.bytes, clock.now()));
+  }
+
+  @Override
+  public long lastModified(String key) {
+    Record record = records.get(key);
+    return record == null ? 0 : record.writtenAtMillis;
+  }
+
+  private static final class Record {
+    final byte[] bytes;
+    @Nullable final byte[] previousBytes;
+    final long writtenAtMillis;
+
+    Record(byte[] bytes, @Nullable byte[] previousBytes, long writtenAtMillis) {
+      this.bytes = bytes;
+      this.previousBytes = previousBytes;
+      this.writtenAtMillis = writtenAtMillis;
+    }
+  }
+}
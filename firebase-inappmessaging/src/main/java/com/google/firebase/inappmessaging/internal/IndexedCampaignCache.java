@@ -0,0 +1,338 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The cached campaigns, stored as a small index of the campaigns' triggers and activity windows
+ * followed by each campaign's serialized {@link ThickContent}.
+ *
+ * <p>Only the index is read when the cache is loaded. A campaign's content, with its creatives, is
+ * parsed the first time one of its triggers fires while it is active, so the time to load the cache
+ * and the heap it occupies do not grow with the size of the campaigns. The buffer is usually a
+ * memory-mapped file, see {@link ProtoStorageClient#map()}.
+ *
+ * <p>The trigger stream does not use the cache today, it fetches from the service on every
+ * trigger. Caches are only encoded and decoded by {@link CampaignCacheClient}.
+ *
+ * <p>The layout is, with big-endian numbers:
+ *
+ * <pre>
+ * byte   FORMAT_MARKER
+ * long   written at millis
+ * long   expiration epoch timestamp millis
+ * int    campaign count
+ * for each campaign:
+ *   int    content offset, from the end of the index
+ *   int    content length
+ *   byte   flags, see FLAG_*
+ *   long   active from millis, inclusive
+ *   long   active until millis, exclusive
+ *   short  trigger count
+ *   for each trigger: short length, UTF-8 bytes
+ * for each campaign: ThickContent bytes
+ * </pre>
+ *
+ * @hide
+ */
+@ThreadSafe
+public class IndexedCampaignCache {
+  /**
+   * First byte of the format. Like the header written by {@link ProtoStorageClient#write(
+   * com.google.protobuf.AbstractMessageLite, long)}, it is never a valid proto tag.
+   */
+  @VisibleForTesting static final byte FORMAT_MARKER = 1;
+
+  private static final int FLAG_TEST_CAMPAIGN = 1;
+  private static final int FLAG_HAS_SCHEDULE = 1 << 1;
+  // An entry without triggers: offset, length, flags, active from and until, trigger count
+  private static final int MIN_INDEX_ENTRY_BYTES = 4 + 4 + 1 + 8 + 8 + 2;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final ByteBuffer buffer;
+  private final long writtenAtMillis;
+  private final long expirationEpochTimestampMillis;
+  private final int[] contentOffsets;
+  private final int[] contentLengths;
+  private final byte[] flags;
+  private final long[] activeFrom;
+  private final long[] activeUntil;
+  private final String[][] triggers;
+  private final AtomicReferenceArray<ThickContent> parsedCampaigns;
+
+  private IndexedCampaignCache(
+      ByteBuffer buffer, long writtenAtMillis, long expiration, int count) {
+    this.buffer = buffer;
+    this.writtenAtMillis = writtenAtMillis;
+    this.expirationEpochTimestampMillis = expiration;
+    contentOffsets = new int[count];
+    contentLengths = new int[count];
+    flags = new byte[count];
+    activeFrom = new long[count];
+    activeUntil = new long[count];
+    triggers = new String[count][];
+    parsedCampaigns = new AtomicReferenceArray<>(count);
+  }
+
+  /** Encodes {@code response}, written at {@code writtenAtMillis}, in the indexed format. */
+  public static byte[] encode(FetchEligibleCampaignsResponse response, long writtenAtMillis) {
+    try {
+      ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+      DataOutputStream index = new DataOutputStream(indexBytes);
+      index.writeByte(FORMAT_MARKER);
+      index.writeLong(writtenAtMillis);
+      index.writeLong(response.getExpirationEpochTimestampMillis());
+      index.writeInt(response.getMessagesCount());
+
+      List<byte[]> contents = new ArrayList<>(response.getMessagesCount());
+      int contentOffset = 0;
+      for (ThickContent content : response.getMessagesList()) {
+        byte[] contentBytes = content.toByteArray();
+        contents.add(contentBytes);
+        index.writeInt(contentOffset);
+        index.writeInt(contentBytes.length);
+        contentOffset += contentBytes.length;
+
+        boolean hasSchedule = CampaignSchedule.hasSchedule(content);
+        index.writeByte(
+            (content.getIsTestCampaign() ? FLAG_TEST_CAMPAIGN : 0)
+                | (hasSchedule ? FLAG_HAS_SCHEDULE : 0));
+        long startTime = hasSchedule ? CampaignSchedule.getStartTimeMillis(content) : 0;
+        index.writeLong(startTime == Long.MAX_VALUE ? startTime : startTime + 1);
+        index.writeLong(hasSchedule ? CampaignSchedule.getEndTimeMillis(content) : 0);
+
+        Set<String> contentTriggers = getTriggers(content);
+        index.writeShort(contentTriggers.size());
+        for (String trigger : contentTriggers) {
+          byte[] triggerBytes = trigger.getBytes(UTF_8);
+          index.writeShort(triggerBytes.length);
+          index.write(triggerBytes);
+        }
+      }
+
+      for (byte[] contentBytes : contents) {
+        indexBytes.write(contentBytes);
+      }
+      return indexBytes.toByteArray();
+    } catch (IOException e) {
+      // Byte array streams do not throw
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Returns whether {@code buffer} starts with the indexed format. */
+  public static boolean isIndexed(ByteBuffer buffer) {
+    return buffer.remaining() > 0 && buffer.get(buffer.position()) == FORMAT_MARKER;
+  }
+
+  /**
+   * Reads the index of {@code buffer}, which must hold the output of {@link #encode}. Returns null
+   * if the index is corrupt. The buffer is not copied, and must not be modified afterwards.
+   */
+  @Nullable
+  public static IndexedCampaignCache decode(ByteBuffer buffer) {
+    ByteBuffer input = buffer.slice();
+    try {
+      if (input.get() != FORMAT_MARKER) {
+        return null;
+      }
+      long writtenAtMillis = input.getLong();
+      long expiration = input.getLong();
+      int count = input.getInt();
+      if (count < 0 || count > input.remaining() / MIN_INDEX_ENTRY_BYTES) {
+        return null;
+      }
+      IndexedCampaignCache cache =
+          new IndexedCampaignCache(input, writtenAtMillis, expiration, count);
+      for (int i = 0; i < count; i++) {
+        cache.contentOffsets[i] = input.getInt();
+        cache.contentLengths[i] = input.getInt();
+        cache.flags[i] = input.get();
+        cache.activeFrom[i] = input.getLong();
+        cache.activeUntil[i] = input.getLong();
+        String[] contentTriggers = new String[input.getShort()];
+        for (int t = 0; t < contentTriggers.length; t++) {
+          byte[] triggerBytes = new byte[input.getShort()];
+          input.get(triggerBytes);
+          contentTriggers[t] = new String(triggerBytes, UTF_8);
+        }
+        cache.triggers[i] = contentTriggers;
+      }
+      // Offsets are relative to the end of the index
+      int contentStart = input.position();
+      for (int i = 0; i < count; i++) {
+        cache.contentOffsets[i] += contentStart;
+        if (cache.contentOffsets[i] < contentStart
+            || cache.contentLengths[i] < 0
+            || cache.contentOffsets[i] > input.limit() - cache.contentLengths[i]) {
+          return null;
+        }
+      }
+      return cache;
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      return null;
+    }
+  }
+
+  /** Returns {@code response}, written at {@code writtenAtMillis}, in the indexed format. */
+  public static IndexedCampaignCache of(
+      FetchEligibleCampaignsResponse response, long writtenAtMillis) {
+    return decode(ByteBuffer.wrap(encode(response, writtenAtMillis)));
+  }
+
+  public long getWrittenAtMillis() {
+    return writtenAtMillis;
+  }
+
+  public long getExpirationEpochTimestampMillis() {
+    return expirationEpochTimestampMillis;
+  }
+
+  public int getCampaignCount() {
+    return triggers.length;
+  }
+
+  /**
+   * Estimates the heap held by this cache: its buffer unless it is mapped, its index, and the
+   * campaigns parsed so far at their serialized size.
+   */
+  public long estimateHeapBytes() {
+    long bytes = buffer.isDirect() ? 0 : buffer.capacity();
+    for (int i = 0; i < triggers.length; i++) {
+      bytes += 4 + 4 + 1 + 8 + 8;
+      for (String trigger : triggers[i]) {
+        bytes += 2L * trigger.length();
+      }
+      ThickContent parsed = parsedCampaigns.get(i);
+      if (parsed != null) {
+        bytes += parsed.getSerializedSize();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the campaigns triggered by any of {@code events}, in the order of the response.
+   * Unless {@code includeInactive} is set, only campaigns active at {@code nowMillis} are
+   * returned. Only the returned campaigns are parsed.
+   */
+  public List<ThickContent> getTriggeredCampaigns(
+      List<String> events, long nowMillis, boolean includeInactive) {
+    List<ThickContent> triggered = new ArrayList<>();
+    for (int i = 0; i < triggers.length; i++) {
+      if (!includeInactive && !isActiveAt(i, nowMillis)) {
+        continue;
+      }
+      if (!isTriggeredBy(i, events)) {
+        continue;
+      }
+      ThickContent content = getCampaign(i);
+      if (content != null) {
+        triggered.add(content);
+      }
+    }
+    return triggered;
+  }
+
+  /**
+   * Returns the next time after {@code nowMillis} at which a campaign becomes active or expires,
+   * or {@link CampaignSchedule#NO_BOUNDARY}.
+   */
+  public long getNextBoundaryMillis(long nowMillis) {
+    long next = CampaignSchedule.NO_BOUNDARY;
+    for (int i = 0; i < triggers.length; i++) {
+      if ((flags[i] & FLAG_HAS_SCHEDULE) == 0) {
+        continue;
+      }
+      if (activeFrom[i] > nowMillis) {
+        next = Math.min(next, activeFrom[i]);
+      }
+      if (activeUntil[i] > nowMillis) {
+        next = Math.min(next, activeUntil[i]);
+      }
+    }
+    return next;
+  }
+
+  private boolean isActiveAt(int i, long nowMillis) {
+    return (flags[i] & FLAG_HAS_SCHEDULE) != 0
+        && activeFrom[i] <= nowMillis
+        && nowMillis < activeUntil[i];
+  }
+
+  // Matches InAppMessageStreamManager#containsTriggeringCondition
+  private boolean isTriggeredBy(int i, List<String> events) {
+    for (String event : events) {
+      if ((flags[i] & FLAG_TEST_CAMPAIGN) != 0
+          && InAppMessageStreamManager.isAppForegroundEvent(event)) {
+        return true;
+      }
+      for (String trigger : triggers[i]) {
+        if (trigger.equals(event)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  private ThickContent getCampaign(int i) {
+    ThickContent content = parsedCampaigns.get(i);
+    if (content != null) {
+      return content;
+    }
+    ByteBuffer contentBytes = buffer.duplicate();
+    contentBytes.limit(contentOffsets[i] + contentLengths[i]);
+    contentBytes.position(contentOffsets[i]);
+    try {
+      content = ThickContent.parseFrom(contentBytes);
+    } catch (InvalidProtocolBufferException e) {
+      Logging.logi("Skipping corrupt cached campaign: " + e.getMessage());
+      return null;
+    }
+    parsedCampaigns.compareAndSet(i, null, content);
+    return parsedCampaigns.get(i);
+  }
+
+  // Both names of each condition are kept, as they are both compared to events
+  private static Set<String> getTriggers(ThickContent content) {
+    Set<String> contentTriggers = new LinkedHashSet<>();
+    for (TriggeringCondition condition : content.getTriggeringConditionsList()) {
+      contentTriggers.add(condition.getFiamTrigger().toString());
+      contentTriggers.add(condition.getEvent().getName());
+    }
+    return contentTriggers;
+  }
+}
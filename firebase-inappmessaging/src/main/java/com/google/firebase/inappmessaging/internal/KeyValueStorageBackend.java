@@ -0,0 +1,246 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static android.content.Context.MODE_PRIVATE;
+
+import android.app.Application;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Stores all records in a single file in the app's file directory. The file is read once, on first
+ * access, and records are then served from memory. Every write rewrites the whole file.
+ *
+ * <p>This trades larger writes for a single file open at startup, which suits apps with small
+ * impression and rate limit stores.
+ *
+ * <p>The file holds the number of records, followed by each record's key, write time, length and
+ * bytes. It is replaced by writing a temporary file and renaming it, so a failed write leaves the
+ * previous records. The replaced file is kept as a backup. It is read if a record is corrupt, and
+ * in place of the file if that is missing or does not parse.
+ *
+ * <p>A key missing from the file is imported from the legacy backend, if one is given, so records
+ * written before an app switched to this backend are kept. Imported records are written to the
+ * file with the next write, and the legacy files are left in place.
+ *
+ * @hide
+ */
+@ThreadSafe
+public class KeyValueStorageBackend implements StorageBackend {
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final String PREVIOUS_FILE_SUFFIX = ".bak";
+
+  private final Application application;
+  private final String fileName;
+  private final Clock clock;
+  @Nullable private final StorageBackend legacyBackend;
+
+  @GuardedBy("this")
+  @Nullable
+  private Map<String, Record> records;
+
+  /** Keys looked up in the legacy backend, whether or not it held a record. */
+  @GuardedBy("this")
+  private final Set<String> importedKeys = new HashSet<>();
+
+  @GuardedBy("this")
+  @Nullable
+  private Map<String, Record> previousRecords;
+
+  public KeyValueStorageBackend(Application application, String fileName, Clock clock) {
+    this(application, fileName, clock, /* legacyBackend= */ null);
+  }
+
+  /**
+   * @param legacyBackend the backend the stores used before, whose records are imported for keys
+   *     missing from the file
+   */
+  public KeyValueStorageBackend(
+      Application application,
+      String fileName,
+      Clock clock,
+      @Nullable StorageBackend legacyBackend) {
+    this.application = application;
+    this.fileName = fileName;
+    this.clock = clock;
+    this.legacyBackend = legacyBackend;
+  }
+
+  @Nullable
+  @Override
+  public synchronized byte[] read(String key) {
+    Record record = getRecord(key);
+    return record == null ? null : record.bytes;
+  }
+
+  @Nullable
+  @Override
+  public synchronized ByteBuffer map(String key) {
+    Record record = getRecord(key);
+    return record == null ? null : ByteBuffer.wrap(record.bytes).asReadOnlyBuffer();
+  }
+
+  @Nullable
+  @Override
+  public synchronized byte[] readPrevious(String key) {
+    if (previousRecords == null) {
+      previousRecords = readFile(fileName + PREVIOUS_FILE_SUFFIX);
+      if (previousRecords == null) {
+        previousRecords = new HashMap<>();
+      }
+    }
+    Record record = previousRecords.get(key);
+    return record == null ? null : record.bytes;
+  }
+
+  @Override
+  public synchronized void write(String key, byte[] bytes) throws IOException {
+    // Imported first, so the replaced record is kept as the previous version
+    getRecord(key);
+    Map<String, Record> current = getRecords();
+    Map<String, Record> updated = new HashMap<>(current);
+    updated.put(key, new Record(bytes.clone(), clock.now()));
+    writeFile(updated);
+    previousRecords = current;
+    records = updated;
+  }
+
+  @Override
+  public synchronized long lastModified(String key) {
+    Record record = getRecord(key);
+    return record == null ? 0 : record.writtenAtMillis;
+  }
+
+  /** Returns the record of {@code key}, importing it from the legacy backend on first access. */
+  @GuardedBy("this")
+  @Nullable
+  private Record getRecord(String key) {
+    Map<String, Record> current = getRecords();
+    Record record = current.get(key);
+    if (record != null || legacyBackend == null || importedKeys.contains(key)) {
+      return record;
+    }
+    byte[] bytes;
+    try {
+      bytes = legacyBackend.read(key);
+    } catch (IOException e) {
+      // Tried again on the next access, unless a write replaces the record first
+      Logging.logi("Recoverable exception while importing " + key + ": " + e.getMessage());
+      return null;
+    }
+    importedKeys.add(key);
+    if (bytes == null) {
+      return null;
+    }
+    record = new Record(bytes, legacyBackend.lastModified(key));
+    current.put(key, record);
+    return record;
+  }
+
+  @GuardedBy("this")
+  private Map<String, Record> getRecords() {
+    if (records == null) {
+      records = readFile(fileName);
+    }
+    if (records == null) {
+      // Corrupt, or moved aside by a write that died before replacing it
+      records = readFile(fileName + PREVIOUS_FILE_SUFFIX);
+    }
+    if (records == null) {
+      records = new HashMap<>();
+    }
+    return records;
+  }
+
+  /** Returns the records of file {@code name}, or null if it is missing or does not parse. */
+  @GuardedBy("this")
+  @Nullable
+  private Map<String, Record> readFile(String name) {
+    Map<String, Record> read = new HashMap<>();
+    try (FileInputStream file = application.openFileInput(name)) {
+      long fileSize = file.getChannel().size();
+      DataInputStream input = new DataInputStream(new BufferedInputStream(file));
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        String key = input.readUTF();
+        long writtenAtMillis = input.readLong();
+        int length = input.readInt();
+        if (length < 0 || length > fileSize) {
+          throw new IOException("Invalid record length " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        read.put(key, new Record(bytes, writtenAtMillis));
+      }
+      return read;
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (IOException e) {
+      // Truncated or corrupt
+      Logging.logi("Recoverable exception while reading key value store: " + e.getMessage());
+      return null;
+    }
+  }
+
+  @GuardedBy("this")
+  private void writeFile(Map<String, Record> toWrite) throws IOException {
+    String tempFileName = fileName + TEMP_FILE_SUFFIX;
+    try (DataOutputStream output =
+        new DataOutputStream(
+            new BufferedOutputStream(application.openFileOutput(tempFileName, MODE_PRIVATE)))) {
+      output.writeInt(toWrite.size());
+      for (Map.Entry<String, Record> entry : toWrite.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeLong(entry.getValue().writtenAtMillis);
+        output.writeInt(entry.getValue().bytes.length);
+        output.write(entry.getValue().bytes);
+      }
+    }
+    File filesDir = application.getFilesDir();
+    File file = new File(filesDir, fileName);
+    if (file.exists() && !file.renameTo(new File(filesDir, fileName + PREVIOUS_FILE_SUFFIX))) {
+      Logging.logw("Unable to keep the previous records of " + fileName);
+    }
+    if (!new File(filesDir, tempFileName).renameTo(file)) {
+      throw new IOException("Unable to replace " + fileName);
+    }
+  }
+
+  private static final class Record {
+    final byte[] bytes;
+    final long writtenAtMillis;
+
+    Record(byte[] bytes, long writtenAtMillis) {
+      this.bytes = bytes;
+      this.writtenAtMillis = writtenAtMillis;
+    }
+  }
+}
@@ -14,6 +14,8 @@
 
 package com.google.firebase.inappmessaging.internal;
 
+import java.util.List;
+
 /**
  * The {@link ProgramaticContextualTriggers} notifies listeners set via {@link
  * #setListener(Listener)} when an contextual trigger has been programatically triggered via the
@@ -23,6 +25,7 @@ package com.google.firebase.inappmessaging.internal;
  */
 public class ProgramaticContextualTriggers {
   private Listener listener;
+  private BatchListener batchListener;
 
   public void setListener(Listener listener) {
     this.listener = listener;
@@ -32,13 +35,28 @@ public class ProgramaticContextualTriggers {
     this.listener = null;
   }
 
+  public void setBatchListener(BatchListener batchListener) {
+    this.batchListener = batchListener;
+  }
+
   public void triggerEvent(String eventName) {
     Logging.logd("Programmatically trigger: " + eventName);
     listener.onEventTrigger(eventName);
   }
 
+  /** Triggers several events at once, so they are evaluated together. */
+  public void triggerEvents(List<String> eventNames) {
+    Logging.logd("Programmatically trigger: " + eventNames);
+    batchListener.onEventsTrigger(eventNames);
+  }
+
   /** Listener to receive callbacks when the trigger is emitted */
   public interface Listener {
     void onEventTrigger(String trigger);
   }
+
+  /** Listener to receive callbacks when several triggers are emitted together */
+  public interface BatchListener {
+    void onEventsTrigger(List<String> triggers);
+  }
 }
@@ -14,69 +14,84 @@
 
 package com.google.firebase.inappmessaging.internal;
 
-import static android.content.Context.MODE_PRIVATE;
-
 import android.app.Application;
+import androidx.annotation.Nullable;
 import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Parser;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
- * File backed storage client for protos. Reads and writes are non atomic, but thread safe.
+ * Storage client for protos, backed by a {@link StorageBackend}. Reads and writes are thread safe.
  *
- * <p>The client confers locking semantics per client read/written.
+ * <p>Records are framed by a {@link RecordHeader}, and checked against it when read.
  *
- * <p>Creating multiple clients that read/write to the same file will violate the principles of this
- * thread safety
+ * <p>Readers share a snapshot of the current record, loaded on the first read and replaced by each
+ * write, so they neither block nor touch the backend. The record is checked against its header
+ * once, when the snapshot is installed, and the message read from it is kept with it, so later
+ * reads return it without parsing. Only writers, and the first read, are serialized per client.
+ * The snapshot is dropped by {@link #trimMemory()} and reloaded by the next read.
  *
- * <p>In the future we can consider using Android/Support's AtomicFile to provide atomic reads and
- * writes
+ * <p>Creating multiple clients that read/write to the same key will violate the principles of this
+ * thread safety
  *
  * @hide
  */
 @ThreadSafe
 public class ProtoStorageClient {
-  private final Application application;
-  private final String fileName;
+  // Starts the header of records written with a timestamp. Zero is never a valid proto tag, so
+  // records written without a header are told apart by their first byte
+  private static final byte TIMESTAMP_HEADER_MARKER = 0;
+  private static final int TIMESTAMP_HEADER_BYTES = 1 + 8;
 
+  private final StorageBackend backend;
+  private final String key;
+  private final Object writeLock = new Object();
+
+  // Null until the record is first read, once trimmed, and after write(byte[]), whose records are
+  // mapped rather than held on the heap
+  @Nullable private volatile Snapshot snapshot;
+
+  /** Creates a client for the file {@code fileName}, in the app's file directory. */
   public ProtoStorageClient(Application application, String fileName) {
-    this.application = application;
-    this.fileName = fileName;
+    this(new FileStorageBackend(application), fileName);
+  }
+
+  /** Creates a client for the record stored under {@code key} in {@code backend}. */
+  public ProtoStorageClient(StorageBackend backend, String key) {
+    this.backend = backend;
+    this.key = key;
   }
 
   /**
-   * Write the proto to a file in the app' s file directory.
-   *
-   * <p>Writes are non atomic.
+   * Write the proto to storage.
    *
    * <p>Readers are expected to deal with corrupt data resulting from faulty writes
    *
    * @param messageLite
-   * @throws IOException
    */
   public Completable write(AbstractMessageLite messageLite) {
     return Completable.fromCallable(
         () -> {
-          // reads / writes are synchronized per client instance
-          synchronized (this) {
-            try (FileOutputStream output = application.openFileOutput(fileName, MODE_PRIVATE)) {
-              output.write(messageLite.toByteArray());
-              return messageLite;
-            }
+          byte[] record = toRecord(messageLite, null);
+          Snapshot written = Snapshot.ofWritten(record);
+          written.message = new Parsed(messageLite.getParserForType(), messageLite);
+          synchronized (writeLock) {
+            backend.write(key, record);
+            snapshot = written;
+            return messageLite;
           }
         });
   }
 
   /**
-   * Read the contents of the file into a proto object using the parser. Since writes are not
-   * atomic, the caller will receive {@link Maybe#empty()} when data is corrupt.
+   * Read the stored record into a proto object using the parser. The caller will receive {@link
+   * Maybe#empty()} when there is no record or data is corrupt.
    *
    * <p>Some valid scenarios that can lead to corrupt data :
    *
@@ -86,21 +101,334 @@ public class ProtoStorageClient {
    *   <li>Process killed while writing
    * </ul>
    *
+   * <p>A corrupt record is replaced by the version it replaced, if the backend kept it and it is
+   * valid. So is an empty record, unless the backend kept no previous version.
+   *
    * @param parser
    * @param <T>
    */
   public <T extends AbstractMessageLite> Maybe<T> read(Parser<T> parser) {
     return Maybe.fromCallable(
         () -> {
-          // reads / writes are synchronized per client instance
-          synchronized (this) {
-            try (FileInputStream inputStream = application.openFileInput(fileName)) {
-              return parser.parseFrom(inputStream);
-            } catch (InvalidProtocolBufferException | FileNotFoundException e) {
-              Logging.logi("Recoverable exception while reading cache: " + e.getMessage());
-              return null;
-            }
+          return readRecord(parser, /* timestamped= */ false, parser::parseFrom);
+        });
+  }
+
+  /**
+   * Write the proto to storage, preceded by a small header holding {@code writtenAtMillis}. Read it
+   * back with {@link #readTimestamped(Parser)}.
+   *
+   * @param messageLite
+   * @param writtenAtMillis the time of the write, as reported by the caller's clock
+   */
+  public Completable write(AbstractMessageLite messageLite, long writtenAtMillis) {
+    return Completable.fromCallable(
+        () -> {
+          byte[] record = toRecord(messageLite, writtenAtMillis);
+          Snapshot written = Snapshot.ofWritten(record);
+          written.timestampedMessage =
+              new Parsed(
+                  messageLite.getParserForType(),
+                  new TimestampedMessage<>(messageLite, writtenAtMillis));
+          synchronized (writeLock) {
+            backend.write(key, record);
+            snapshot = written;
+            return messageLite;
+          }
+        });
+  }
+
+  /**
+   * Read a proto written by {@link #write(AbstractMessageLite, long)} along with the time it was
+   * written. Records written by {@link #write(AbstractMessageLite)} are read too, using the time
+   * the backend last wrote them. Like {@link #read(Parser)}, the caller receives {@link
+   * Maybe#empty()} when data is corrupt.
+   *
+   * @param parser
+   * @param <T>
+   */
+  public <T extends AbstractMessageLite> Maybe<TimestampedMessage<T>> readTimestamped(
+      Parser<T> parser) {
+    return Maybe.fromCallable(
+        () -> {
+          return readRecord(
+              parser, /* timestamped= */ true, payload -> parseTimestamped(payload, parser));
+        });
+  }
+
+  /**
+   * Replaces the record with {@code bytes}. Buffers returned by {@link #map()} keep seeing the old
+   * contents. Unlike protos, the record is not kept in memory for readers.
+   *
+   * @param bytes
+   */
+  public Completable write(byte[] bytes) {
+    return Completable.fromAction(
+        () -> {
+          byte[] record = RecordHeader.wrap(bytes);
+          synchronized (writeLock) {
+            backend.write(key, record);
+            snapshot = null;
+          }
+        });
+  }
+
+  /**
+   * Returns a read-only view of the bytes written by {@link #write(byte[])}, which the file backend
+   * memory-maps. The caller receives {@link Maybe#empty()} if the record is missing or corrupt and
+   * the backend kept no valid previous version.
+   *
+   * <p>Only the length of a mapped record is checked against its header. Verifying its checksum
+   * would read every page of the mapping, which callers parse on demand.
+   */
+  public Maybe<ByteBuffer> map() {
+    return Maybe.fromCallable(
+        () -> {
+          // Backends are thread safe, and replace mapped records without changing their contents
+          ByteBuffer record = backend.map(key);
+          // Records are never written empty, and may be missing after a failed write, see
+          // loadSnapshot
+          ByteBuffer payload =
+              record != null && record.hasRemaining()
+                  ? RecordHeader.unwrap(record, /* verifyChecksum= */ false)
+                  : null;
+          if (payload != null) {
+            return payload;
           }
+          byte[] previous = backend.readPrevious(key);
+          if (previous == null && (record == null || !record.hasRemaining())) {
+            return record;
+          }
+          payload =
+              previous == null
+                  ? null
+                  : RecordHeader.unwrap(ByteBuffer.wrap(previous), /* verifyChecksum= */ true);
+          logFallback(payload != null);
+          return payload == null ? null : payload.asReadOnlyBuffer();
         });
   }
+
+  /** Drops the snapshot of the current record. The next read loads it from the backend again. */
+  public void trimMemory() {
+    // Not under the write lock, so trimming never waits for a write. A snapshot installed by a
+    // concurrent write or load is as current as the backend
+    snapshot = null;
+  }
+
+  /** Returns the size of the record held in memory, or 0 if none is. */
+  public long getCachedBytes() {
+    Snapshot current = snapshot;
+    return current == null ? 0 : current.recordBytes;
+  }
+
+  /**
+   * Returns the message {@code payloadParser} reads from the current record, and keeps it with the
+   * snapshot for the next read with the same {@code parser}.
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private <T> T readRecord(Parser<?> parser, boolean timestamped, PayloadParser<T> payloadParser)
+      throws IOException {
+    Snapshot current = getSnapshot();
+    Parsed memoized = timestamped ? current.timestampedMessage : current.message;
+    if (memoized != null && memoized.parser == parser) {
+      return (T) memoized.value;
+    }
+    if (current.payload == null) {
+      return null;
+    }
+    T parsed = parsePayload(current.payload, payloadParser);
+    if (parsed == null && current.canFallBack) {
+      // The record matches its header but does not parse
+      parsed = parsePrevious(payloadParser);
+    }
+    if (parsed != null) {
+      Parsed result = new Parsed(parser, parsed);
+      if (timestamped) {
+        current.timestampedMessage = result;
+      } else {
+        current.message = result;
+      }
+    }
+    return parsed;
+  }
+
+  /** Returns the current snapshot, loading it from the backend on the first call. */
+  private Snapshot getSnapshot() throws IOException {
+    Snapshot current = snapshot;
+    if (current == null) {
+      // Loaded under the write lock, so a record read before a write can't replace the snapshot
+      // that write installs
+      synchronized (writeLock) {
+        current = snapshot;
+        if (current == null) {
+          current = loadSnapshot();
+          snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Reads the record and checks it against its header. A missing or corrupt record is replaced by
+   * the version the backend kept, if it is valid.
+   */
+  private Snapshot loadSnapshot() throws IOException {
+    byte[] record = backend.read(key);
+    // Records are never written empty, so an empty record is a write that did not complete, unless
+    // the backend kept no previous version, as for files written before records had headers. A
+    // missing record with a previous version is a write that died after moving the record aside
+    ByteBuffer payload = record == null || record.length == 0 ? null : unwrap(record);
+    if (payload != null) {
+      return new Snapshot(payload, /* canFallBack= */ true, record.length);
+    }
+    byte[] previous = backend.readPrevious(key);
+    if (previous == null && (record == null || record.length == 0)) {
+      return new Snapshot(
+          record == null ? null : ByteBuffer.wrap(record), /* canFallBack= */ false, 0);
+    }
+    ByteBuffer previousPayload = previous == null ? null : unwrap(previous);
+    logFallback(previousPayload != null);
+    return previousPayload == null
+        ? new Snapshot(null, /* canFallBack= */ false, 0)
+        : new Snapshot(previousPayload, /* canFallBack= */ false, previous.length);
+  }
+
+  @Nullable
+  private <T> T parsePrevious(PayloadParser<T> parser) throws IOException {
+    byte[] previous = backend.readPrevious(key);
+    ByteBuffer payload = previous == null ? null : unwrap(previous);
+    T parsed = payload == null ? null : parsePayload(payload, parser);
+    logFallback(parsed != null);
+    return parsed;
+  }
+
+  @Nullable
+  private static ByteBuffer unwrap(byte[] record) {
+    ByteBuffer payload = RecordHeader.unwrap(ByteBuffer.wrap(record), /* verifyChecksum= */ true);
+    if (payload == null) {
+      Logging.logi("Recoverable exception while reading cache: record does not match its header");
+    }
+    return payload;
+  }
+
+  @Nullable
+  private static <T> T parsePayload(ByteBuffer payload, PayloadParser<T> parser) {
+    try {
+      // Parsers may move the position of the buffer they are given
+      return parser.parse(payload.duplicate());
+    } catch (InvalidProtocolBufferException e) {
+      Logging.logi("Recoverable exception while reading cache: " + e.getMessage());
+      return null;
+    }
+  }
+
+  @Nullable
+  private <T extends AbstractMessageLite> TimestampedMessage<T> parseTimestamped(
+      ByteBuffer payload, Parser<T> parser) throws InvalidProtocolBufferException {
+    int start = payload.position();
+    if (!payload.hasRemaining() || payload.get(start) != TIMESTAMP_HEADER_MARKER) {
+      return new TimestampedMessage<>(parser.parseFrom(payload), backend.lastModified(key));
+    }
+    if (payload.remaining() < TIMESTAMP_HEADER_BYTES) {
+      Logging.logi("Recoverable exception while reading cache: truncated header");
+      return null;
+    }
+    long writtenAtMillis = payload.getLong(start + 1);
+    payload.position(start + TIMESTAMP_HEADER_BYTES);
+    return new TimestampedMessage<>(parser.parseFrom(payload), writtenAtMillis);
+  }
+
+  private void logFallback(boolean recovered) {
+    Logging.logw(
+        recovered
+            ? "Record " + key + " is corrupt, read its previous version"
+            : "Record " + key + " is corrupt and has no valid previous version");
+  }
+
+  /**
+   * Serializes {@code messageLite} straight into a record, after the timestamp header if {@code
+   * writtenAtMillis} is set.
+   */
+  private static byte[] toRecord(AbstractMessageLite messageLite, @Nullable Long writtenAtMillis)
+      throws IOException {
+    int prefixBytes = writtenAtMillis == null ? 0 : TIMESTAMP_HEADER_BYTES;
+    int messageBytes = messageLite.getSerializedSize();
+    byte[] record = RecordHeader.newRecord(prefixBytes + messageBytes);
+    if (writtenAtMillis != null) {
+      ByteBuffer.wrap(record, RecordHeader.HEADER_BYTES, prefixBytes)
+          .put(TIMESTAMP_HEADER_MARKER)
+          .putLong(writtenAtMillis);
+    }
+    CodedOutputStream output =
+        CodedOutputStream.newInstance(
+            record, RecordHeader.HEADER_BYTES + prefixBytes, messageBytes);
+    messageLite.writeTo(output);
+    output.checkNoSpaceLeft();
+    return RecordHeader.seal(record);
+  }
+
+  /** Parses the payload of a record, or returns null if it is invalid. */
+  private interface PayloadParser<T> {
+    @Nullable
+    T parse(ByteBuffer payload) throws InvalidProtocolBufferException;
+  }
+
+  /**
+   * The payload of the current record, checked against its header, and the messages read from it.
+   * Only the messages change once it is created.
+   */
+  private static final class Snapshot {
+    // Null if there is no record, or it is corrupt and the backend kept no valid version
+    @Nullable final ByteBuffer payload;
+    // Whether the backend may hold a previous version to read if the payload does not parse
+    final boolean canFallBack;
+    final long recordBytes;
+    @Nullable volatile Parsed message;
+    @Nullable volatile Parsed timestampedMessage;
+
+    Snapshot(@Nullable ByteBuffer payload, boolean canFallBack, long recordBytes) {
+      this.payload = payload;
+      this.canFallBack = canFallBack;
+      this.recordBytes = recordBytes;
+    }
+
+    /** Returns a snapshot of a record this client has just serialized, which needs no checks. */
+    static Snapshot ofWritten(byte[] record) {
+      int payloadLength = record.length - RecordHeader.HEADER_BYTES;
+      ByteBuffer payload = ByteBuffer.wrap(record, RecordHeader.HEADER_BYTES, payloadLength);
+      return new Snapshot(payload.slice(), /* canFallBack= */ true, record.length);
+    }
+  }
+
+  /** A message read with {@code parser}. */
+  private static final class Parsed {
+    final Parser<?> parser;
+    final Object value;
+
+    Parsed(Parser<?> parser, Object value) {
+      this.parser = parser;
+      this.value = value;
+    }
+  }
+
+  /** A proto along with the time it was written to storage. */
+  public static final class TimestampedMessage<T extends AbstractMessageLite> {
+    private final T message;
+    private final long writtenAtMillis;
+
+    public TimestampedMessage(T message, long writtenAtMillis) {
+      this.message = message;
+      this.writtenAtMillis = writtenAtMillis;
+    }
+
+    public T getMessage() {
+      return message;
+    }
+
+    public long getWrittenAtMillis() {
+      return writtenAtMillis;
+    }
+  }
 }
@@ -21,7 +21,6 @@ import androidx.annotation.Nullable;
 import com.google.firebase.analytics.connector.AnalyticsConnector;
 import com.google.firebase.inject.Deferred;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -112,8 +111,10 @@ public class ProxyAnalyticsConnector implements AnalyticsConnector {
   private static class ProxyAnalyticsConnectorHandle implements AnalyticsConnectorHandle {
     private static final Object UNREGISTERED = new Object();
 
+    // The latest names registered before analytics is available. Like the names registered with
+    // analytics, they replace any earlier ones
     @GuardedBy("this")
-    private Set<String> eventNames = new HashSet<>();
+    private Set<String> eventNames = Collections.emptySet();
 
     private volatile Object instance;
 
@@ -139,7 +140,7 @@ public class ProxyAnalyticsConnector implements AnalyticsConnector {
             synchronized (ProxyAnalyticsConnectorHandle.this) {
               if (!eventNames.isEmpty()) {
                 handle.registerEventNames(eventNames);
-                eventNames = new HashSet<>();
+                eventNames = Collections.emptySet();
               }
             }
           });
@@ -158,7 +159,7 @@ public class ProxyAnalyticsConnector implements AnalyticsConnector {
       }
       instance = UNREGISTERED;
       synchronized (this) {
-        eventNames.clear();
+        eventNames = Collections.emptySet();
       }
     }
 
@@ -175,7 +176,7 @@ public class ProxyAnalyticsConnector implements AnalyticsConnector {
         return;
       }
       synchronized (this) {
-        eventNames.addAll(set);
+        eventNames = set;
       }
     }
 
@@ -191,7 +192,7 @@ public class ProxyAnalyticsConnector implements AnalyticsConnector {
         return;
       }
       synchronized (this) {
-        eventNames.clear();
+        eventNames = Collections.emptySet();
       }
     }
   }
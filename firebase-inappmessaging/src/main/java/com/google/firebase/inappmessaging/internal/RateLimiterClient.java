@@ -19,7 +19,6 @@ import com.google.firebase.inappmessaging.internal.time.Clock;
 import com.google.firebase.inappmessaging.model.RateLimit;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
-import io.reactivex.Observable;
 import io.reactivex.Single;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -36,12 +35,14 @@ import javax.inject.Singleton;
  * @hide
  */
 @Singleton
-public class RateLimiterClient {
+public class RateLimiterClient implements CacheMemoryManager.TrimmableCache {
   private static final RateLimitProto.RateLimit EMPTY_RATE_LIMITS =
       RateLimitProto.RateLimit.getDefaultInstance();
   private final ProtoStorageClient storageClient;
   private final Clock clock;
-  private Maybe<RateLimitProto.RateLimit> cachedRateLimts = Maybe.empty();
+  // Serializes increments, which would otherwise overwrite each other
+  private final StoreMutationQueue<RateLimitProto.RateLimit> mutations;
+  private volatile Maybe<RateLimitProto.RateLimit> cachedRateLimts = Maybe.empty();
 
   @Inject
   RateLimiterClient(
@@ -50,6 +51,11 @@ public class RateLimiterClient {
       Clock clock) {
     this.storageClient = storageClient;
     this.clock = clock;
+    this.mutations =
+        new StoreMutationQueue<>(
+            storageClient,
+            Single.defer(() -> getRateLimits().defaultIfEmpty(EMPTY_RATE_LIMITS).toSingle()),
+            this::initInMemCache);
   }
 
   private static Counter increment(Counter current) {
@@ -65,22 +71,16 @@ public class RateLimiterClient {
    * #isRateLimited(RateLimit)} before incrementing.
    */
   public Completable increment(RateLimit limit) {
-    return getRateLimits()
-        .defaultIfEmpty(EMPTY_RATE_LIMITS)
-        .flatMapCompletable(
-            storedLimits ->
-                Observable.just(storedLimits.getLimitsOrDefault(limit.limiterKey(), newCounter()))
-                    .filter(counter -> !isLimitExpired(counter, limit))
-                    .switchIfEmpty(Observable.just(newCounter()))
-                    .map(
-                        current -> {
-                          Counter incremented = increment(current);
-                          return RateLimitProto.RateLimit.newBuilder(storedLimits)
-                              .putLimits(limit.limiterKey(), incremented)
-                              .build();
-                        })
-                    .flatMapCompletable(
-                        a -> storageClient.write(a).doOnComplete(() -> initInMemCache(a))));
+    return mutations.submit(
+        storedLimits -> {
+          Counter current = storedLimits.getLimitsOrDefault(limit.limiterKey(), newCounter());
+          if (isLimitExpired(current, limit)) {
+            current = newCounter();
+          }
+          return RateLimitProto.RateLimit.newBuilder(storedLimits)
+              .putLimits(limit.limiterKey(), increment(current))
+              .build();
+        });
   }
 
   /** True if the limit has been reached and has not expired. */
@@ -97,6 +97,27 @@ public class RateLimiterClient {
     return (currentTime - counter.getStartTimeEpoch()) > limit.timeToLiveMillis();
   }
 
+  /**
+   * Reads the stored limits into memory, so later checks do not touch the file system. Read
+   * failures are absorbed, the next check retries them.
+   */
+  public Completable warmUp() {
+    return getRateLimits().ignoreElement().onErrorComplete();
+  }
+
+  /** Drops the limits held in memory. The next check loads them from storage again. */
+  @Override
+  public void trimMemory() {
+    clearInMemCache();
+    storageClient.trimMemory();
+  }
+
+  @Override
+  public long getCachedBytes() {
+    return cachedRateLimts.map(RateLimitProto.RateLimit::getSerializedSize).blockingGet(0)
+        + storageClient.getCachedBytes();
+  }
+
   private Maybe<RateLimitProto.RateLimit> getRateLimits() {
     return cachedRateLimts
         .switchIfEmpty(
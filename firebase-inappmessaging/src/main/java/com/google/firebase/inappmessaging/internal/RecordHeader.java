@@ -0,0 +1,127 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The header {@link ProtoStorageClient} writes in front of every record: a magic number, the format
+ * version, the length of the payload and its CRC32. A record is checked against its header before
+ * its payload is parsed, so a truncated or damaged record is never mistaken for a shorter one.
+ *
+ * <p>The magic number starts with a byte that no proto starts with, unlike the records written
+ * before the header existed. Those have no header and are returned as they are, to be parsed like
+ * before.
+ *
+ * <p>Records written with a later format version are rejected. A version that changes the payload
+ * should keep reading the payloads of earlier versions, so records are migrated when they are next
+ * written rather than dropped.
+ */
+final class RecordHeader {
+  // 0x02 'F' 'I' 'M'. Two is never a valid proto tag, and 0 and 1 start the timestamped and indexed
+  // payloads
+  @VisibleForTesting static final int MAGIC = 0x0246494d;
+  @VisibleForTesting static final byte FORMAT_VERSION = 1;
+  static final int HEADER_BYTES = 4 + 1 + 4 + 4;
+
+  private static final int VERSION_OFFSET = 4;
+  private static final int LENGTH_OFFSET = 5;
+  private static final int CHECKSUM_OFFSET = 9;
+  private static final int COPY_BUFFER_BYTES = 8192;
+
+  private RecordHeader() {}
+
+  /** Returns an array with room for a header followed by {@code payloadLength} bytes. */
+  static byte[] newRecord(int payloadLength) {
+    return new byte[HEADER_BYTES + payloadLength];
+  }
+
+  /**
+   * Writes the header of a record from {@link #newRecord(int)}, once its payload is in place.
+   *
+   * @return {@code record}
+   */
+  static byte[] seal(byte[] record) {
+    int payloadLength = record.length - HEADER_BYTES;
+    CRC32 checksum = new CRC32();
+    checksum.update(record, HEADER_BYTES, payloadLength);
+    ByteBuffer.wrap(record)
+        .putInt(MAGIC)
+        .put(FORMAT_VERSION)
+        .putInt(payloadLength)
+        .putInt((int) checksum.getValue());
+    return record;
+  }
+
+  /** Returns a record holding {@code payload}. */
+  static byte[] wrap(byte[] payload) {
+    byte[] record = newRecord(payload.length);
+    System.arraycopy(payload, 0, record, HEADER_BYTES, payload.length);
+    return seal(record);
+  }
+
+  /**
+   * Returns the payload of {@code record}, from its position to its limit, or null if the record
+   * does not match its header. Records without a header are returned as they are.
+   *
+   * @param verifyChecksum false to only check the header and the length, which does not read the
+   *     payload. Use it for mapped records, whose pages are only read when parsed
+   */
+  @Nullable
+  static ByteBuffer unwrap(ByteBuffer record, boolean verifyChecksum) {
+    int start = record.position();
+    if (!record.hasRemaining() || record.get(start) != (byte) (MAGIC >>> 24)) {
+      return record;
+    }
+    if (record.remaining() < HEADER_BYTES || record.getInt(start) != MAGIC) {
+      return null;
+    }
+    if (record.get(start + VERSION_OFFSET) != FORMAT_VERSION) {
+      return null;
+    }
+    int payloadLength = record.getInt(start + LENGTH_OFFSET);
+    if (payloadLength != record.remaining() - HEADER_BYTES) {
+      return null;
+    }
+    ByteBuffer payload = record.duplicate();
+    payload.position(start + HEADER_BYTES);
+    payload = payload.slice();
+    if (verifyChecksum && checksum(payload) != record.getInt(start + CHECKSUM_OFFSET)) {
+      return null;
+    }
+    return payload;
+  }
+
+  private static int checksum(ByteBuffer payload) {
+    CRC32 checksum = new CRC32();
+    if (payload.hasArray()) {
+      checksum.update(
+          payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+    } else {
+      // CRC32#update(ByteBuffer) needs API 26
+      ByteBuffer source = payload.duplicate();
+      byte[] buffer = new byte[Math.min(COPY_BUFFER_BYTES, source.remaining())];
+      while (source.hasRemaining()) {
+        int length = Math.min(buffer.length, source.remaining());
+        source.get(buffer, 0, length);
+        checksum.update(buffer, 0, length);
+      }
+    }
+    return (int) checksum.getValue();
+  }
+}
@@ -19,6 +19,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.os.Bundle;
+import androidx.annotation.Nullable;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.firebase.FirebaseApp;
 import javax.inject.Inject;
@@ -30,6 +32,8 @@ public class SharedPreferencesUtils {
   static final String PREFERENCES_PACKAGE_NAME = "com.google.firebase.inappmessaging";
 
   private final FirebaseApp firebaseApp;
+  @Nullable private volatile Bundle manifestMetaData;
+  private volatile boolean manifestMetaDataLoaded;
 
   @Inject
   public SharedPreferencesUtils(FirebaseApp firebaseApp) {
@@ -120,6 +124,22 @@ public class SharedPreferencesUtils {
     return preferences.contains(preference);
   }
 
+  /**
+   * Registers a listener to be notified when the preferences stored by this SDK change.
+   *
+   * <p>The preferences framework only keeps a weak reference to the listener, so callers must hold
+   * on to it for as long as they want to be notified.
+   *
+   * @param listener the listener to register.
+   */
+  public void registerOnSharedPreferenceChangeListener(
+      SharedPreferences.OnSharedPreferenceChangeListener listener) {
+    Application application = (Application) firebaseApp.getApplicationContext();
+    application
+        .getSharedPreferences(PREFERENCES_PACKAGE_NAME, Context.MODE_PRIVATE)
+        .registerOnSharedPreferenceChangeListener(listener);
+  }
+
   /**
    * Helper method for getting a boolean value from the apps manifest
    *
@@ -127,24 +147,8 @@ public class SharedPreferencesUtils {
    * @return whether the preference has been set or not
    */
   public boolean isManifestSet(String preference) {
-    Application application = (Application) firebaseApp.getApplicationContext();
-    // Check if there's metadata in the manifest setting the auto-init state.
-    try {
-      PackageManager packageManager = application.getPackageManager();
-      if (packageManager != null) {
-        ApplicationInfo applicationInfo =
-            packageManager.getApplicationInfo(
-                application.getPackageName(), PackageManager.GET_META_DATA);
-        return applicationInfo != null
-            && applicationInfo.metaData != null
-            && applicationInfo.metaData.containsKey(preference);
-      }
-    } catch (PackageManager.NameNotFoundException e) {
-      // This shouldn't happen since it's this app's package. However, if it does, we want to fall
-      // through to the default, and avoid throwing an exception
-
-    }
-    return false;
+    Bundle metaData = getManifestMetaData();
+    return metaData != null && metaData.containsKey(preference);
   }
 
   /**
@@ -156,7 +160,60 @@ public class SharedPreferencesUtils {
    * @return the value stored or the default if the stored value is not found.
    */
   public boolean getBooleanManifestValue(String preference, boolean defaultValue) {
-    Application application = (Application) firebaseApp.getApplicationContext();
+    Bundle metaData = getManifestMetaData();
+    if (metaData != null && metaData.containsKey(preference)) {
+      return metaData.getBoolean(preference);
+    }
+
+    // Return the default
+    return defaultValue;
+  }
+
+  /**
+   * Helper method for getting an int value from the apps manifest
+   *
+   * @param preference the manifest preference key.
+   * @param defaultValue the default value to return if the key is not found.
+   * @return the value in the manifest or the default if it is not set.
+   */
+  public int getIntManifestValue(String preference, int defaultValue) {
+    Bundle metaData = getManifestMetaData();
+    if (metaData != null && metaData.containsKey(preference)) {
+      return metaData.getInt(preference, defaultValue);
+    }
+
+    // Return the default
+    return defaultValue;
+  }
+
+  /**
+   * Returns the application's manifest metadata. The manifest cannot change while the process is
+   * alive, so the binder call to the package manager is made at most once.
+   */
+  @Nullable
+  private Bundle getManifestMetaData() {
+    if (manifestMetaDataLoaded) {
+      return manifestMetaData;
+    }
+    synchronized (this) {
+      if (!manifestMetaDataLoaded) {
+        manifestMetaData =
+            readManifestMetaData((Application) firebaseApp.getApplicationContext());
+        manifestMetaDataLoaded = true;
+      }
+      return manifestMetaData;
+    }
+  }
+
+  /**
+   * Reads the application's manifest metadata from the package manager. Prefer the instance
+   * methods, which read it once, where a {@link FirebaseApp} is at hand.
+   *
+   * @param application the application whose manifest is read.
+   * @return the metadata, or null if there is none.
+   */
+  @Nullable
+  public static Bundle readManifestMetaData(Application application) {
     // Check if there's metadata in the manifest setting the auto-init state.
     try {
       PackageManager packageManager = application.getPackageManager();
@@ -164,18 +221,14 @@ public class SharedPreferencesUtils {
         ApplicationInfo applicationInfo =
             packageManager.getApplicationInfo(
                 application.getPackageName(), PackageManager.GET_META_DATA);
-        if (applicationInfo != null
-            && applicationInfo.metaData != null
-            && applicationInfo.metaData.containsKey(preference)) {
-          return applicationInfo.metaData.getBoolean(preference);
+        if (applicationInfo != null) {
+          return applicationInfo.metaData;
         }
       }
     } catch (PackageManager.NameNotFoundException e) {
       // This shouldn't happen since it's this app's package. However, if it does, we want to fall
       // through to the default, and avoid throwing an exception
     }
-
-    // Return the default
-    return defaultValue;
+    return null;
   }
 }
@@ -0,0 +1,61 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the SDK's persisted state: the campaign cache, the impression store and the rate limit
+ * store. Each is a single record of bytes, stored under its own key.
+ *
+ * <p>{@link ProtoStorageClient} turns records into protos. Implementations only move bytes, and
+ * must be thread safe.
+ *
+ * @hide
+ */
+public interface StorageBackend {
+
+  /**
+   * Returns the record stored under {@code key}, or null if there is none. Callers must not modify
+   * the returned array.
+   */
+  @Nullable
+  byte[] read(String key) throws IOException;
+
+  /**
+   * Returns a read-only view of the record stored under {@code key}, or null if there is none. The
+   * view keeps its contents when the record is replaced later.
+   */
+  @Nullable
+  ByteBuffer map(String key) throws IOException;
+
+  /**
+   * Returns an earlier version of the record stored under {@code key}, kept when it was replaced,
+   * or null if there is none. Callers fall back to it when the current record is corrupt.
+   */
+  @Nullable
+  byte[] readPrevious(String key) throws IOException;
+
+  /**
+   * Replaces the record stored under {@code key}, keeping the replaced version for {@link
+   * #readPrevious}. A write that fails leaves the current record in place.
+   */
+  void write(String key, byte[] bytes) throws IOException;
+
+  /** Returns when the record stored under {@code key} was last written, or 0 if unknown. */
+  long lastModified(String key);
+}
@@ -0,0 +1,158 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import com.google.protobuf.AbstractMessageLite;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Applies the mutations of a persisted store one at a time, in the order they were submitted, so
+ * concurrent read-modify-write cycles no longer lose each other's updates.
+ *
+ * <p>There is a single writer at any time: the first thread to submit a mutation drains the queue,
+ * and other threads only enqueue theirs. Mutations submitted while a write is in progress are
+ * applied together to the latest state, which is then written once.
+ */
+@ThreadSafe
+final class StoreMutationQueue<T extends AbstractMessageLite> {
+  private final ProtoStorageClient storageClient;
+  private final Single<T> currentState;
+  private final Consumer<T> onPersisted;
+  private final Queue<PendingMutation<T>> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger wip = new AtomicInteger();
+
+  /**
+   * @param currentState the state mutations apply to, subscribed to once per write
+   * @param onPersisted called with the new state once it is written, before mutations complete
+   */
+  StoreMutationQueue(
+      ProtoStorageClient storageClient, Single<T> currentState, Consumer<T> onPersisted) {
+    this.storageClient = storageClient;
+    this.currentState = currentState;
+    this.onPersisted = onPersisted;
+  }
+
+  /**
+   * Queues {@code mutation}, which returns the new state of the store given its current one. The
+   * returned completable completes once the new state is written, and fails if the mutation throws,
+   * or if the state can not be read or written.
+   */
+  Completable submit(Function<T, T> mutation) {
+    return Completable.create(
+        emitter -> {
+          pending.offer(new PendingMutation<>(mutation, emitter));
+          drain();
+        });
+  }
+
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      List<PendingMutation<T>> batch = new ArrayList<>();
+      for (PendingMutation<T> mutation = pending.poll();
+          mutation != null;
+          mutation = pending.poll()) {
+        batch.add(mutation);
+      }
+      if (!batch.isEmpty()) {
+        applyAndPersist(batch);
+      }
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void applyAndPersist(List<PendingMutation<T>> batch) {
+    T state;
+    try {
+      state = currentState.toFuture().get();
+    } catch (ExecutionException e) {
+      fail(batch, e.getCause());
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(batch, e);
+      return;
+    }
+
+    List<PendingMutation<T>> applied = new ArrayList<>(batch.size());
+    for (PendingMutation<T> mutation : batch) {
+      try {
+        state = mutation.mutation.apply(state);
+        applied.add(mutation);
+      } catch (Exception e) {
+        signalError(mutation, e);
+      }
+    }
+    if (applied.isEmpty()) {
+      return;
+    }
+
+    Throwable error = storageClient.write(state).blockingGet();
+    if (error == null) {
+      try {
+        onPersisted.accept(state);
+      } catch (Exception e) {
+        error = e;
+      }
+    }
+    if (error != null) {
+      fail(applied, error);
+      return;
+    }
+    Logging.logd("Persisted " + applied.size() + " store mutations in a single write");
+    for (PendingMutation<T> mutation : applied) {
+      mutation.emitter.onComplete();
+    }
+  }
+
+  private static <T> void fail(List<PendingMutation<T>> mutations, Throwable error) {
+    for (PendingMutation<T> mutation : mutations) {
+      signalError(mutation, error);
+    }
+  }
+
+  // Mutations are applied even if their caller stopped listening, but errors are only sent to
+  // callers still listening, RxJava reports the others as undeliverable
+  private static void signalError(PendingMutation<?> mutation, Throwable error) {
+    if (!mutation.emitter.isDisposed()) {
+      mutation.emitter.onError(error);
+    }
+  }
+
+  private static final class PendingMutation<T> {
+    final Function<T, T> mutation;
+    final CompletableEmitter emitter;
+
+    PendingMutation(Function<T, T> mutation, CompletableEmitter emitter) {
+      this.mutation = mutation;
+      this.emitter = emitter;
+    }
+  }
+}
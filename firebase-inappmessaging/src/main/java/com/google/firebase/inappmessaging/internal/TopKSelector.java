@@ -0,0 +1,83 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the {@code k} best of a stream of items, without sorting or holding on to the rest.
+ *
+ * <p>Items that compare equal keep the order in which they were offered, the same as a stable sort
+ * followed by taking the first {@code k}.
+ *
+ * @hide
+ */
+public class TopKSelector<T> {
+  private final int k;
+  private final Comparator<? super T> comparator;
+  // The worst retained item is at the head, so it is the one evicted by a better item
+  private final PriorityQueue<Ranked<T>> retained;
+  private int offered;
+
+  public TopKSelector(int k, Comparator<? super T> comparator) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, was " + k);
+    }
+    this.k = k;
+    this.comparator = comparator;
+    this.retained = new PriorityQueue<>(Math.min(k, 16), (a, b) -> compare(b, a));
+  }
+
+  /** Offers an item, retaining it only if it is among the {@code k} best seen so far. */
+  public void offer(T item) {
+    Ranked<T> ranked = new Ranked<>(item, offered++);
+    if (retained.size() < k) {
+      retained.add(ranked);
+    } else if (compare(ranked, retained.peek()) < 0) {
+      retained.poll();
+      retained.add(ranked);
+    }
+  }
+
+  /** Returns the retained items, best first. */
+  public List<T> getSelected() {
+    List<Ranked<T>> ranked = new ArrayList<>(retained);
+    Collections.sort(ranked, this::compare);
+    List<T> selected = new ArrayList<>(ranked.size());
+    for (Ranked<T> r : ranked) {
+      selected.add(r.item);
+    }
+    return selected;
+  }
+
+  private int compare(Ranked<T> a, Ranked<T> b) {
+    int result = comparator.compare(a.item, b.item);
+    return result != 0 ? result : Integer.compare(a.order, b.order);
+  }
+
+  private static final class Ranked<T> {
+    final T item;
+    final int order;
+
+    Ranked(T item, int order) {
+      this.item = item;
+      this.order = order;
+    }
+  }
+}
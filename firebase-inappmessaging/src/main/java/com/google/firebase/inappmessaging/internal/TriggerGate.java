@@ -0,0 +1,154 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import androidx.annotation.VisibleForTesting;
+import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+
+/**
+ * Stops triggers from entering the message pipeline while nothing could be shown, that is while no
+ * {@link com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplay} is attached or messages
+ * are suppressed. No campaigns are fetched, read or decoded for them.
+ *
+ * <p>The display is detached between activities, and the app foreground event fires before the
+ * next activity attaches it again. The last few triggers are therefore held back and released
+ * once the gate opens, as long as they are no older than {@link #HELD_TRIGGER_MAX_AGE_MILLIS}. The
+ * number of triggers held can be set, or holding disabled with 0, in the app's manifest:
+ *
+ * <pre>{@code
+ * <meta-data
+ *     android:name="firebase_inapp_messaging_held_trigger_count"
+ *     android:value="3" />
+ * }</pre>
+ *
+ * @hide
+ */
+@FirebaseAppScope
+public class TriggerGate {
+  @VisibleForTesting
+  static final String MANIFEST_METADATA_HELD_TRIGGER_COUNT =
+      "firebase_inapp_messaging_held_trigger_count";
+
+  public static final int DEFAULT_HELD_TRIGGER_COUNT = 3;
+  public static final long HELD_TRIGGER_MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private final int heldTriggerCount;
+  private final Clock clock;
+  private final ArrayDeque<HeldTrigger> heldTriggers = new ArrayDeque<>();
+  private final FlowableProcessor<List<String>> releasedTriggers =
+      PublishProcessor.<List<String>>create().toSerialized();
+
+  private boolean isDisplayAttached;
+  private boolean areMessagesSuppressed;
+
+  @Inject
+  TriggerGate(SharedPreferencesUtils sharedPreferencesUtils, Clock clock) {
+    this(
+        sharedPreferencesUtils.getIntManifestValue(
+            MANIFEST_METADATA_HELD_TRIGGER_COUNT, DEFAULT_HELD_TRIGGER_COUNT),
+        clock);
+  }
+
+  @VisibleForTesting
+  public TriggerGate(int heldTriggerCount, Clock clock) {
+    this.heldTriggerCount = Math.max(0, heldTriggerCount);
+    this.clock = clock;
+  }
+
+  /** Returns {@code triggers} with the triggers that arrive while the gate is closed held back. */
+  public Flowable<List<String>> apply(Flowable<List<String>> triggers) {
+    return Flowable.merge(triggers.filter(this::admit), releasedTriggers);
+  }
+
+  public void setDisplayAttached(boolean isDisplayAttached) {
+    List<List<String>> released;
+    synchronized (this) {
+      this.isDisplayAttached = isDisplayAttached;
+      released = releaseIfOpen();
+    }
+    release(released);
+  }
+
+  public void setMessagesSuppressed(boolean areMessagesSuppressed) {
+    List<List<String>> released;
+    synchronized (this) {
+      this.areMessagesSuppressed = areMessagesSuppressed;
+      released = releaseIfOpen();
+    }
+    release(released);
+  }
+
+  public synchronized boolean isOpen() {
+    return isDisplayAttached && !areMessagesSuppressed;
+  }
+
+  private synchronized boolean admit(List<String> trigger) {
+    if (isOpen()) {
+      return true;
+    }
+    if (heldTriggerCount == 0) {
+      Logging.logd("No display or messages suppressed, ignoring trigger: " + trigger);
+      return false;
+    }
+    Logging.logd("No display or messages suppressed, holding trigger: " + trigger);
+    if (heldTriggers.size() == heldTriggerCount) {
+      heldTriggers.poll();
+    }
+    heldTriggers.add(new HeldTrigger(trigger, clock.now()));
+    return false;
+  }
+
+  private List<List<String>> releaseIfOpen() {
+    List<List<String>> released = new ArrayList<>();
+    if (!isOpen()) {
+      return released;
+    }
+    long oldestMillis = clock.now() - HELD_TRIGGER_MAX_AGE_MILLIS;
+    for (HeldTrigger trigger : heldTriggers) {
+      if (trigger.heldAtMillis >= oldestMillis) {
+        released.add(trigger.trigger);
+      }
+    }
+    heldTriggers.clear();
+    return released;
+  }
+
+  // Emitted outside the lock, as downstream may run the pipeline synchronously
+  private void release(List<List<String>> released) {
+    for (List<String> trigger : released) {
+      Logging.logd("Releasing held trigger: " + trigger);
+      releasedTriggers.onNext(trigger);
+    }
+  }
+
+  private static final class HeldTrigger {
+    final List<String> trigger;
+    final long heldAtMillis;
+
+    HeldTrigger(List<String> trigger, long heldAtMillis) {
+      this.trigger = trigger;
+      this.heldAtMillis = heldAtMillis;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.google.firebase.inappmessaging.internal.AbtIntegrationHelper;
 import com.google.firebase.inappmessaging.internal.DisplayCallbacksFactory;
 import com.google.firebase.inappmessaging.internal.injection.modules.ApiClientModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.GrpcClientModule;
+import com.google.firebase.inappmessaging.internal.injection.modules.InAppMessageStreamModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.TransportClientModule;
 import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
 import dagger.BindsInstance;
@@ -34,7 +35,12 @@ import dagger.Component;
 @FirebaseAppScope
 @Component(
     dependencies = {UniversalComponent.class},
-    modules = {ApiClientModule.class, GrpcClientModule.class, TransportClientModule.class})
+    modules = {
+      ApiClientModule.class,
+      GrpcClientModule.class,
+      TransportClientModule.class,
+      InAppMessageStreamModule.class
+    })
 public interface AppComponent {
   FirebaseInAppMessaging providesFirebaseInAppMessaging();
 
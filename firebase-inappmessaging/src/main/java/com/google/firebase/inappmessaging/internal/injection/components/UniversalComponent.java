@@ -20,6 +20,7 @@ import com.google.firebase.annotations.concurrent.Blocking;
 import com.google.firebase.annotations.concurrent.Lightweight;
 import com.google.firebase.events.Subscriber;
 import com.google.firebase.inappmessaging.internal.AnalyticsEventsManager;
+import com.google.firebase.inappmessaging.internal.CacheMemoryManager;
 import com.google.firebase.inappmessaging.internal.CampaignCacheClient;
 import com.google.firebase.inappmessaging.internal.DeveloperListenerManager;
 import com.google.firebase.inappmessaging.internal.ImpressionStorageClient;
@@ -30,6 +31,7 @@ import com.google.firebase.inappmessaging.internal.Schedulers;
 import com.google.firebase.inappmessaging.internal.injection.modules.AnalyticsEventsModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.AppMeasurementModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ApplicationModule;
+import com.google.firebase.inappmessaging.internal.injection.modules.CacheMemoryModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ExecutorsModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.ForegroundFlowableModule;
 import com.google.firebase.inappmessaging.internal.injection.modules.GrpcChannelModule;
@@ -47,6 +49,7 @@ import com.google.firebase.inappmessaging.model.RateLimit;
 import dagger.Component;
 import io.grpc.Channel;
 import io.reactivex.flowables.ConnectableFlowable;
+import java.util.List;
 import java.util.concurrent.Executor;
 import javax.inject.Singleton;
 
@@ -69,7 +72,8 @@ import javax.inject.Singleton;
       SystemClockModule.class,
       RateLimitModule.class,
       AppMeasurementModule.class,
-      ExecutorsModule.class
+      ExecutorsModule.class,
+      CacheMemoryModule.class
     })
 public interface UniversalComponent {
   ProviderInstaller providerInstaller();
@@ -84,6 +88,9 @@ public interface UniversalComponent {
   @ProgrammaticTrigger
   ConnectableFlowable<String> programmaticContextualTriggerFlowable();
 
+  @ProgrammaticTrigger
+  ConnectableFlowable<List<String>> programmaticContextualBatchTriggerFlowable();
+
   @ProgrammaticTrigger
   ProgramaticContextualTriggers programmaticContextualTriggers();
 
@@ -106,6 +113,8 @@ public interface UniversalComponent {
 
   RateLimiterClient rateLimiterClient();
 
+  CacheMemoryManager cacheMemoryManager();
+
   Application application();
 
   @AppForeground
@@ -16,9 +16,11 @@ package com.google.firebase.inappmessaging.internal.injection.modules;
 
 import android.app.Application;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.annotations.concurrent.Blocking;
 import com.google.firebase.events.Subscriber;
 import com.google.firebase.inappmessaging.internal.ApiClient;
 import com.google.firebase.inappmessaging.internal.DataCollectionHelper;
+import com.google.firebase.inappmessaging.internal.DeferredInitializationHelper;
 import com.google.firebase.inappmessaging.internal.GrpcClient;
 import com.google.firebase.inappmessaging.internal.ProgramaticContextualTriggers;
 import com.google.firebase.inappmessaging.internal.ProviderInstaller;
@@ -29,6 +31,7 @@ import com.google.firebase.inappmessaging.internal.time.Clock;
 import com.google.firebase.installations.FirebaseInstallationsApi;
 import dagger.Module;
 import dagger.Provides;
+import java.util.concurrent.Executor;
 import javax.inject.Provider;
 
 /**
@@ -64,16 +67,25 @@ public class ApiClientModule {
   }
 
   @Provides
+  @FirebaseAppScope
   SharedPreferencesUtils providesSharedPreferencesUtils() {
     return new SharedPreferencesUtils(firebaseApp);
   }
 
   @Provides
+  @FirebaseAppScope
   DataCollectionHelper providesDataCollectionHelper(
       SharedPreferencesUtils sharedPreferencesUtils, Subscriber firebaseEventSubscriber) {
     return new DataCollectionHelper(firebaseApp, sharedPreferencesUtils, firebaseEventSubscriber);
   }
 
+  @Provides
+  @FirebaseAppScope
+  DeferredInitializationHelper providesDeferredInitializationHelper(
+      SharedPreferencesUtils sharedPreferencesUtils, @Blocking Executor blockingExecutor) {
+    return new DeferredInitializationHelper(sharedPreferencesUtils, blockingExecutor);
+  }
+
   @Provides
   TestDeviceHelper providesTestDeviceHelper(SharedPreferencesUtils sharedPreferencesUtils) {
     return new TestDeviceHelper(sharedPreferencesUtils);
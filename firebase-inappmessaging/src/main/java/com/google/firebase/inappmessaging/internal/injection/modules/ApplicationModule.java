@@ -16,6 +16,7 @@ package com.google.firebase.inappmessaging.internal.injection.modules;
 
 import android.app.Application;
 import com.google.firebase.annotations.concurrent.Background;
+import com.google.firebase.annotations.concurrent.Blocking;
 import com.google.firebase.inappmessaging.internal.DeveloperListenerManager;
 import dagger.Module;
 import dagger.Provides;
@@ -44,7 +45,7 @@ public class ApplicationModule {
   @Provides
   @Singleton
   public DeveloperListenerManager developerListenerManager(
-      @Background Executor backgroundExecutor) {
-    return new DeveloperListenerManager(backgroundExecutor);
+      @Background Executor backgroundExecutor, @Blocking Executor blockingExecutor) {
+    return new DeveloperListenerManager(backgroundExecutor, blockingExecutor);
   }
 }
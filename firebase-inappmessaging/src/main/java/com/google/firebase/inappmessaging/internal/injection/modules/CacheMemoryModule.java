@@ -0,0 +1,49 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal.injection.modules;
+
+import android.app.Application;
+import com.google.firebase.inappmessaging.internal.CacheMemoryManager;
+import com.google.firebase.inappmessaging.internal.CampaignCacheClient;
+import com.google.firebase.inappmessaging.internal.ImpressionStorageClient;
+import com.google.firebase.inappmessaging.internal.RateLimiterClient;
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Singleton;
+
+/**
+ * Bindings for the {@link CacheMemoryManager}, registered with the {@link Application} for memory
+ * trim callbacks
+ *
+ * @hide
+ */
+@Module
+public class CacheMemoryModule {
+
+  @Provides
+  @Singleton
+  public CacheMemoryManager providesCacheMemoryManager(
+      Application application,
+      CampaignCacheClient campaignCacheClient,
+      ImpressionStorageClient impressionStorageClient,
+      RateLimiterClient rateLimiterClient) {
+    CacheMemoryManager manager =
+        new CacheMemoryManager(campaignCacheClient, impressionStorageClient, rateLimiterClient);
+    application.registerComponentCallbacks(manager);
+
+    return manager;
+  }
+}
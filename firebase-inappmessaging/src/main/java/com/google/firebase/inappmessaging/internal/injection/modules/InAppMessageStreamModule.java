@@ -0,0 +1,95 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal.injection.modules;
+
+import com.google.firebase.annotations.concurrent.Blocking;
+import com.google.firebase.inappmessaging.internal.AbtIntegrationHelper;
+import com.google.firebase.inappmessaging.internal.AnalyticsEventsManager;
+import com.google.firebase.inappmessaging.internal.ApiClient;
+import com.google.firebase.inappmessaging.internal.CacheMemoryManager;
+import com.google.firebase.inappmessaging.internal.CampaignCacheClient;
+import com.google.firebase.inappmessaging.internal.DataCollectionHelper;
+import com.google.firebase.inappmessaging.internal.ImpressionStorageClient;
+import com.google.firebase.inappmessaging.internal.InAppMessageStreamManager;
+import com.google.firebase.inappmessaging.internal.RateLimiterClient;
+import com.google.firebase.inappmessaging.internal.Schedulers;
+import com.google.firebase.inappmessaging.internal.TestDeviceHelper;
+import com.google.firebase.inappmessaging.internal.TriggerGate;
+import com.google.firebase.inappmessaging.internal.injection.qualifiers.AppForeground;
+import com.google.firebase.inappmessaging.internal.injection.qualifiers.ProgrammaticTrigger;
+import com.google.firebase.inappmessaging.internal.injection.scopes.FirebaseAppScope;
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import com.google.firebase.inappmessaging.model.RateLimit;
+import com.google.firebase.installations.FirebaseInstallationsApi;
+import dagger.Module;
+import dagger.Provides;
+import io.reactivex.flowables.ConnectableFlowable;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Bindings for the {@link InAppMessageStreamManager} of a firebase app, registered with the shared
+ * {@link CacheMemoryManager} so its campaigns are dropped on memory pressure
+ *
+ * @hide
+ */
+@Module
+public class InAppMessageStreamModule {
+
+  @Provides
+  @FirebaseAppScope
+  public InAppMessageStreamManager providesInAppMessageStreamManager(
+      @AppForeground ConnectableFlowable<String> appForegroundEventFlowable,
+      @ProgrammaticTrigger ConnectableFlowable<String> programmaticTriggerEventFlowable,
+      @ProgrammaticTrigger ConnectableFlowable<List<String>> programmaticBatchTriggerEventFlowable,
+      CampaignCacheClient campaignCacheClient,
+      Clock clock,
+      ApiClient apiClient,
+      AnalyticsEventsManager analyticsEventsManager,
+      Schedulers schedulers,
+      ImpressionStorageClient impressionStorageClient,
+      RateLimiterClient rateLimiterClient,
+      @AppForeground RateLimit appForegroundRateLimit,
+      TestDeviceHelper testDeviceHelper,
+      FirebaseInstallationsApi firebaseInstallations,
+      DataCollectionHelper dataCollectionHelper,
+      AbtIntegrationHelper abtIntegrationHelper,
+      @Blocking Executor blockingExecutor,
+      TriggerGate triggerGate,
+      CacheMemoryManager cacheMemoryManager) {
+    InAppMessageStreamManager streamManager =
+        new InAppMessageStreamManager(
+            appForegroundEventFlowable,
+            programmaticTriggerEventFlowable,
+            programmaticBatchTriggerEventFlowable,
+            campaignCacheClient,
+            clock,
+            apiClient,
+            analyticsEventsManager,
+            schedulers,
+            impressionStorageClient,
+            rateLimiterClient,
+            appForegroundRateLimit,
+            testDeviceHelper,
+            firebaseInstallations,
+            dataCollectionHelper,
+            abtIntegrationHelper,
+            blockingExecutor,
+            triggerGate);
+    cacheMemoryManager.register(CacheMemoryManager.Tier.CAMPAIGNS, streamManager);
+
+    return streamManager;
+  }
+}
@@ -23,6 +23,7 @@ import dagger.Module;
 import dagger.Provides;
 import io.reactivex.Flowable;
 import io.reactivex.flowables.ConnectableFlowable;
+import java.util.List;
 import javax.inject.Singleton;
 
 /**
@@ -59,4 +60,18 @@ public class ProgrammaticContextualTriggerFlowableModule {
     // the app.
     return flowable;
   }
+
+  @Provides
+  @Singleton
+  @ProgrammaticTrigger
+  public ConnectableFlowable<List<String>> providesProgramaticContextualBatchTriggerStream() {
+
+    ConnectableFlowable<List<String>> flowable =
+        Flowable.<List<String>>create(
+                e -> triggers.setBatchListener((batch) -> e.onNext(batch)), BUFFER)
+            .publish();
+
+    flowable.connect();
+    return flowable;
+  }
 }
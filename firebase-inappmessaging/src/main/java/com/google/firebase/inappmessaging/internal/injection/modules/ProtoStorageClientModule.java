@@ -15,10 +15,19 @@
 package com.google.firebase.inappmessaging.internal.injection.modules;
 
 import android.app.Application;
+import android.os.Bundle;
+import androidx.annotation.VisibleForTesting;
+import com.google.firebase.inappmessaging.internal.FileStorageBackend;
+import com.google.firebase.inappmessaging.internal.InMemoryStorageBackend;
+import com.google.firebase.inappmessaging.internal.KeyValueStorageBackend;
+import com.google.firebase.inappmessaging.internal.Logging;
 import com.google.firebase.inappmessaging.internal.ProtoStorageClient;
+import com.google.firebase.inappmessaging.internal.SharedPreferencesUtils;
+import com.google.firebase.inappmessaging.internal.StorageBackend;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.CampaignCache;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.ImpressionStore;
 import com.google.firebase.inappmessaging.internal.injection.qualifiers.RateLimit;
+import com.google.firebase.inappmessaging.internal.time.Clock;
 import dagger.Module;
 import dagger.Provides;
 import javax.inject.Singleton;
@@ -26,6 +35,16 @@ import javax.inject.Singleton;
 /**
  * Bindings for proto storage client
  *
+ * <p>The impression store and rate limit store share one {@link StorageBackend}, picked through
+ * the app's manifest. Each file name below is the key of its store. The campaign cache is large and
+ * memory-mapped, so it always keeps its own file, whatever the manifest says.
+ *
+ * <pre>{@code
+ * <meta-data
+ *     android:name="firebase_inapp_messaging_storage_backend"
+ *     android:value="file|key_value|in_memory" />
+ * }</pre>
+ *
  * @hide
  */
 @Module
@@ -33,25 +52,57 @@ public class ProtoStorageClientModule {
   public static final String CAMPAIGN_CACHE_FILE = "fiam_eligible_campaigns_cache_file";
   public static final String IMPRESSIONS_STORE_FILE = "fiam_impressions_store_file";
   public static final String RATE_LIMIT_STORE_FILE = "rate_limit_store_file";
+  public static final String KEY_VALUE_STORE_FILE = "fiam_key_value_store_file";
+
+  /** One file per store, the default. */
+  public static final String FILE_BACKEND = "file";
+  /** All the stores in a single file. */
+  public static final String KEY_VALUE_BACKEND = "key_value";
+  /** Nothing is persisted. */
+  public static final String IN_MEMORY_BACKEND = "in_memory";
+
+  @VisibleForTesting
+  static final String MANIFEST_METADATA_STORAGE_BACKEND =
+      "firebase_inapp_messaging_storage_backend";
+
+  @Provides
+  @Singleton
+  public StorageBackend providesStorageBackend(Application application, Clock clock) {
+    Bundle metaData = SharedPreferencesUtils.readManifestMetaData(application);
+    String backend =
+        metaData == null ? null : metaData.getString(MANIFEST_METADATA_STORAGE_BACKEND);
+    if (KEY_VALUE_BACKEND.equals(backend)) {
+      // Stores kept in their own files before the switch are imported on first access
+      return new KeyValueStorageBackend(
+          application, KEY_VALUE_STORE_FILE, clock, new FileStorageBackend(application));
+    }
+    if (IN_MEMORY_BACKEND.equals(backend)) {
+      return new InMemoryStorageBackend(clock);
+    }
+    if (backend != null && !FILE_BACKEND.equals(backend)) {
+      Logging.logw("Unknown storage backend " + backend + ", using " + FILE_BACKEND);
+    }
+    return new FileStorageBackend(application);
+  }
 
   @Provides
   @Singleton
   @CampaignCache
   public ProtoStorageClient providesProtoStorageClientForCampaign(Application application) {
-    return new ProtoStorageClient(application, CAMPAIGN_CACHE_FILE);
+    return new ProtoStorageClient(new FileStorageBackend(application), CAMPAIGN_CACHE_FILE);
   }
 
   @Provides
   @Singleton
   @ImpressionStore
-  public ProtoStorageClient providesProtoStorageClientForImpressionStore(Application application) {
-    return new ProtoStorageClient(application, IMPRESSIONS_STORE_FILE);
+  public ProtoStorageClient providesProtoStorageClientForImpressionStore(StorageBackend backend) {
+    return new ProtoStorageClient(backend, IMPRESSIONS_STORE_FILE);
   }
 
   @Provides
   @Singleton
   @RateLimit
-  public ProtoStorageClient providesProtoStorageClientForLimiterStore(Application application) {
-    return new ProtoStorageClient(application, RATE_LIMIT_STORE_FILE);
+  public ProtoStorageClient providesProtoStorageClientForLimiterStore(StorageBackend backend) {
+    return new ProtoStorageClient(backend, RATE_LIMIT_STORE_FILE);
   }
 }
@@ -14,33 +14,47 @@
 
 package com.google.firebase.inappmessaging.internal.injection.modules;
 
+import com.google.firebase.annotations.concurrent.Background;
+import com.google.firebase.annotations.concurrent.Blocking;
+import com.google.firebase.concurrent.FirebaseExecutors;
 import dagger.Module;
 import dagger.Provides;
 import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
+import java.util.concurrent.Executor;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 /**
  * Bindings for rx schedulers
  *
+ * <p>The io and compute schedulers run on the shared Firebase executors rather than on rx's own
+ * thread pools, so the SDK does not add threads to the host app. Each is capped to a few
+ * concurrent tasks so a burst of work cannot monopolize the shared executors. The shared threads
+ * are not renamed, they belong to Firebase and to the other SDKs using them.
+ *
  * @hide
  */
 @Module
 public class SchedulerModule {
+  static final int IO_CONCURRENCY = 4;
+  static final int COMPUTE_CONCURRENCY = 2;
+
   @Provides
   @Singleton
   @Named("io")
-  public Scheduler providesIOScheduler() {
-    return Schedulers.io();
+  public Scheduler providesIOScheduler(@Blocking Executor blockingExecutor) {
+    return Schedulers.from(
+        FirebaseExecutors.newLimitedConcurrencyExecutor(blockingExecutor, IO_CONCURRENCY));
   }
 
   @Provides
   @Singleton
   @Named("compute")
-  public Scheduler providesComputeScheduler() {
-    return Schedulers.computation();
+  public Scheduler providesComputeScheduler(@Background Executor backgroundExecutor) {
+    return Schedulers.from(
+        FirebaseExecutors.newLimitedConcurrencyExecutor(backgroundExecutor, COMPUTE_CONCURRENCY));
   }
 
   @Provides
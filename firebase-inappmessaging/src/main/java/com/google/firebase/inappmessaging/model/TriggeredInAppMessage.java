@@ -16,12 +16,25 @@ package com.google.firebase.inappmessaging.model;
 
 /** @hide */
 public class TriggeredInAppMessage {
+  /** The priority of messages created without one, below any campaign priority. */
+  public static final int LOWEST_PRIORITY = Integer.MAX_VALUE;
+
   private InAppMessage inAppMessage;
   private String triggeringEvent;
+  private int priority;
 
   public TriggeredInAppMessage(InAppMessage inAppMessage, String triggeringEvent) {
+    this(inAppMessage, triggeringEvent, LOWEST_PRIORITY);
+  }
+
+  /**
+   * @param priority the campaign priority, where lower values rank higher, as in the campaign
+   *     proto
+   */
+  public TriggeredInAppMessage(InAppMessage inAppMessage, String triggeringEvent, int priority) {
     this.inAppMessage = inAppMessage;
     this.triggeringEvent = triggeringEvent;
+    this.priority = priority;
   }
 
   public InAppMessage getInAppMessage() {
@@ -31,4 +44,8 @@ public class TriggeredInAppMessage {
   public String getTriggeringEvent() {
     return triggeringEvent;
   }
+
+  public int getPriority() {
+    return priority;
+  }
 }
@@ -16,13 +16,16 @@ package com.google.firebase.inappmessaging;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.firebase.inappmessaging.CommonTypesProto.Trigger.ON_FOREGROUND;
+import static com.google.firebase.inappmessaging.testutil.Assert.expectThrows;
 import static com.google.firebase.inappmessaging.testutil.TestData.BANNER_MESSAGE_MODEL;
 import static com.google.firebase.inappmessaging.testutil.TestData.CAMPAIGN_ID_STRING;
 import static com.google.firebase.inappmessaging.testutil.TestData.CAMPAIGN_NAME_STRING;
 import static io.reactivex.BackpressureStrategy.BUFFER;
 import static io.reactivex.schedulers.Schedulers.trampoline;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,13 +44,18 @@ import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
 import com.google.firebase.inappmessaging.MessagesProto.Content;
 import com.google.firebase.inappmessaging.internal.CampaignCacheClient;
 import com.google.firebase.inappmessaging.internal.DataCollectionHelper;
+import com.google.firebase.inappmessaging.internal.DeferredInitializationHelper;
 import com.google.firebase.inappmessaging.internal.DeveloperListenerManager;
+import com.google.firebase.inappmessaging.internal.DisplayArbiter;
 import com.google.firebase.inappmessaging.internal.DisplayCallbacksFactory;
 import com.google.firebase.inappmessaging.internal.InAppMessageStreamManager;
+import com.google.firebase.inappmessaging.internal.IndexedCampaignCache;
 import com.google.firebase.inappmessaging.internal.InstallationIdResult;
 import com.google.firebase.inappmessaging.internal.ProgramaticContextualTriggers;
 import com.google.firebase.inappmessaging.internal.RateLimiterClient;
 import com.google.firebase.inappmessaging.internal.Schedulers;
+import com.google.firebase.inappmessaging.internal.TriggerGate;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
 import com.google.firebase.inappmessaging.model.TriggeredInAppMessage;
 import com.google.firebase.installations.FirebaseInstallationsApi;
 import com.google.firebase.installations.InstallationTokenResult;
@@ -57,10 +65,15 @@ import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCa
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.Maybe;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -147,6 +160,7 @@ public class FirebaseInAppMessagingTest {
 
   @Mock private FirebaseInstallationsApi firebaseInstallations;
   @Mock private Schedulers schedulers;
+  @Mock private Schedulers arbiterSchedulers;
   @Mock private InAppMessageStreamManager inAppMessageStreamManager;
   @Mock private FirebaseInAppMessagingDisplay firebaseInAppMessagingDisplay;
   @Mock private DataCollectionHelper dataCollectionHelper;
@@ -155,7 +169,9 @@ public class FirebaseInAppMessagingTest {
   @Mock private ProgramaticContextualTriggers programaticContextualTriggers;
 
   DeveloperListenerManager developerListenerManager =
-      Mockito.spy(new DeveloperListenerManager(TestOnlyExecutors.background()));
+      Mockito.spy(
+          new DeveloperListenerManager(
+              TestOnlyExecutors.background(), TestOnlyExecutors.blocking()));
 
   FirebaseApp firebaseApp1;
   FirebaseOptions options;
@@ -165,8 +181,10 @@ public class FirebaseInAppMessagingTest {
   @Mock private RateLimiterClient rateLimiterClient;
   @Mock private CampaignCacheClient campaignCacheClient;
   private FirebaseInAppMessaging firebaseInAppMessaging;
-  private FlowableEmitter<TriggeredInAppMessage> emitter;
-  private final Flowable<TriggeredInAppMessage> fiamStream =
+  private DisplayArbiter displayArbiter;
+  private TriggerGate triggerGate;
+  private FlowableEmitter<List<TriggeredInAppMessage>> emitter;
+  private final Flowable<List<TriggeredInAppMessage>> fiamStream =
       Flowable.create(e -> emitter = e, BUFFER);
 
   @Before
@@ -192,10 +210,17 @@ public class FirebaseInAppMessagingTest {
     when(schedulers.mainThread()).thenReturn(trampoline());
     when(schedulers.io()).thenReturn(trampoline());
     when(schedulers.computation()).thenReturn(trampoline());
+    // The arbiter schedules timeouts, which would block on the trampoline
+    when(arbiterSchedulers.mainThread()).thenReturn(new TestScheduler());
+    displayArbiter =
+        new DisplayArbiter(
+            arbiterSchedulers, new FakeClock(NOW), Flowable.<String>never().publish());
+    triggerGate = new TriggerGate(TriggerGate.DEFAULT_HELD_TRIGGER_COUNT, new FakeClock(NOW));
 
     when(inAppMessageStreamManager.createFirebaseInAppMessageStream()).thenReturn(fiamStream);
 
-    when(campaignCacheClient.get()).thenReturn(Maybe.just(campaignsResponse));
+    when(campaignCacheClient.get())
+        .thenReturn(Maybe.just(IndexedCampaignCache.of(campaignsResponse, NOW)));
 
     when(firebaseInstallations.getId()).thenReturn(Tasks.forResult(INSTALLATION_ID));
     when(firebaseInstallations.getToken(false))
@@ -215,6 +240,8 @@ public class FirebaseInAppMessagingTest {
             firebaseInstallations,
             displayCallbacksFactory,
             developerListenerManager,
+            displayArbiter,
+            triggerGate,
             TestOnlyExecutors.lite());
 
     developerListenerManager.removeAllListeners();
@@ -228,9 +255,31 @@ public class FirebaseInAppMessagingTest {
         .thenReturn(displayCallbacks);
 
     firebaseInAppMessaging.setMessageDisplayComponent(firebaseInAppMessagingDisplay);
-    emitter.onNext(new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, ON_FOREGROUND.name()));
+    emitter.onNext(
+        Collections.singletonList(
+            new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, ON_FOREGROUND.name())));
+
+    ArgumentCaptor<FirebaseInAppMessagingDisplayCallbacks> callbacks =
+        ArgumentCaptor.forClass(FirebaseInAppMessagingDisplayCallbacks.class);
+    verify(firebaseInAppMessagingDisplay)
+        .displayMessage(eq(BANNER_MESSAGE_MODEL), callbacks.capture());
+    callbacks.getValue().impressionDetected();
+    verify(displayCallbacks).impressionDetected();
+  }
+
+  @Test
+  public void stream_withSeveralMessages_displaysOneAtATime() {
+    when(displayCallbacksFactory.generateDisplayCallback(
+            BANNER_MESSAGE_MODEL, ON_FOREGROUND.name()))
+        .thenReturn(displayCallbacks);
+    firebaseInAppMessaging.setMessageDisplayComponent(firebaseInAppMessagingDisplay);
+    TriggeredInAppMessage message =
+        new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, ON_FOREGROUND.name(), 1);
 
-    verify(firebaseInAppMessagingDisplay).displayMessage(BANNER_MESSAGE_MODEL, displayCallbacks);
+    emitter.onNext(Collections.singletonList(message));
+    emitter.onNext(Collections.singletonList(message));
+
+    verify(firebaseInAppMessagingDisplay, times(1)).displayMessage(eq(BANNER_MESSAGE_MODEL), any());
   }
 
   @Test
@@ -238,7 +287,9 @@ public class FirebaseInAppMessagingTest {
     when(dataCollectionHelper.isAutomaticDataCollectionEnabled()).thenReturn(true);
     firebaseInAppMessaging.setMessageDisplayComponent(firebaseInAppMessagingDisplay);
     firebaseInAppMessaging.clearDisplayListener();
-    emitter.onNext(new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, ON_FOREGROUND.name()));
+    emitter.onNext(
+        Collections.singletonList(
+            new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, ON_FOREGROUND.name())));
 
     verify(firebaseInAppMessagingDisplay, times(0))
         .displayMessage(
@@ -247,6 +298,52 @@ public class FirebaseInAppMessagingTest {
                 BANNER_MESSAGE_MODEL, ON_FOREGROUND.name()));
   }
 
+  @Test
+  public void setDisplayComponent_opensTriggerGate() {
+    assertThat(triggerGate.isOpen()).isFalse();
+
+    firebaseInAppMessaging.setMessageDisplayComponent(firebaseInAppMessagingDisplay);
+    assertThat(triggerGate.isOpen()).isTrue();
+
+    firebaseInAppMessaging.setMessagesSuppressed(true);
+    assertThat(triggerGate.isOpen()).isFalse();
+
+    firebaseInAppMessaging.setMessagesSuppressed(false);
+    firebaseInAppMessaging.clearDisplayListener();
+    assertThat(triggerGate.isOpen()).isFalse();
+  }
+
+  @Test
+  public void triggerEvents_forwardsEventsAsOneBatch() {
+    firebaseInAppMessaging.triggerEvents(Arrays.asList(ANALYTICS_EVENT_NAME, "other_event"));
+
+    verify(programaticContextualTriggers)
+        .triggerEvents(Arrays.asList(ANALYTICS_EVENT_NAME, "other_event"));
+  }
+
+  @Test
+  public void triggerEvents_dropsRepeatedEvents() {
+    firebaseInAppMessaging.triggerEvents(
+        Arrays.asList(ANALYTICS_EVENT_NAME, "other_event", ANALYTICS_EVENT_NAME));
+
+    verify(programaticContextualTriggers)
+        .triggerEvents(Arrays.asList(ANALYTICS_EVENT_NAME, "other_event"));
+  }
+
+  @Test
+  public void triggerEvents_withNoEvents_triggersNothing() {
+    firebaseInAppMessaging.triggerEvents(Collections.emptyList());
+
+    verify(programaticContextualTriggers, never()).triggerEvents(any());
+  }
+
+  @Test
+  public void triggerEvents_withNullEvents_throws() {
+    expectThrows(NullPointerException.class, () -> firebaseInAppMessaging.triggerEvents(null));
+
+    verify(programaticContextualTriggers, never()).triggerEvents(any());
+  }
+
   @Test
   public void automaticDataCollectionEnabling_enablesInDataCollectionHelper() {
     firebaseInAppMessaging.setAutomaticDataCollectionEnabled(Boolean.TRUE);
@@ -361,6 +458,67 @@ public class FirebaseInAppMessagingTest {
     verifyListenerPresenceAndListenersCountMatch(null, false, 0);
   }
 
+  @Test
+  public void deferredInitialization_buildsPipelineOnFirstTrigger() {
+    InAppMessageStreamManager deferredStreamManager = mock(InAppMessageStreamManager.class);
+    when(deferredStreamManager.createFirebaseInAppMessageStream()).thenReturn(fiamStream);
+    DeferredInitializationHelper deferredInitializationHelper =
+        mock(DeferredInitializationHelper.class);
+    when(deferredInitializationHelper.isDeferredInitializationEnabled()).thenReturn(true);
+
+    FirebaseInAppMessaging deferredFiam =
+        new FirebaseInAppMessaging(
+            () -> deferredStreamManager,
+            programaticContextualTriggers,
+            dataCollectionHelper,
+            firebaseInstallations,
+            () -> displayCallbacksFactory,
+            developerListenerManager,
+            displayArbiter,
+            triggerGate,
+            TestOnlyExecutors.lite(),
+            deferredInitializationHelper);
+
+    assertThat(deferredFiam.isInitialized()).isFalse();
+    verify(deferredStreamManager, never()).createFirebaseInAppMessageStream();
+    verify(deferredInitializationHelper).runWhenIdle(any());
+
+    deferredFiam.triggerEvent(ANALYTICS_EVENT_NAME);
+    deferredFiam.triggerEvent(ANALYTICS_EVENT_NAME);
+
+    assertThat(deferredFiam.isInitialized()).isTrue();
+    verify(deferredStreamManager, times(1)).createFirebaseInAppMessageStream();
+    verify(programaticContextualTriggers, times(2)).triggerEvent(ANALYTICS_EVENT_NAME);
+  }
+
+  @Test
+  public void deferredInitialization_buildsPipelineWhenIdle() {
+    InAppMessageStreamManager deferredStreamManager = mock(InAppMessageStreamManager.class);
+    when(deferredStreamManager.createFirebaseInAppMessageStream()).thenReturn(fiamStream);
+    DeferredInitializationHelper deferredInitializationHelper =
+        mock(DeferredInitializationHelper.class);
+    when(deferredInitializationHelper.isDeferredInitializationEnabled()).thenReturn(true);
+    ArgumentCaptor<Runnable> idleTask = ArgumentCaptor.forClass(Runnable.class);
+
+    FirebaseInAppMessaging deferredFiam =
+        new FirebaseInAppMessaging(
+            () -> deferredStreamManager,
+            programaticContextualTriggers,
+            dataCollectionHelper,
+            firebaseInstallations,
+            () -> displayCallbacksFactory,
+            developerListenerManager,
+            displayArbiter,
+            triggerGate,
+            TestOnlyExecutors.lite(),
+            deferredInitializationHelper);
+    verify(deferredInitializationHelper).runWhenIdle(idleTask.capture());
+    idleTask.getValue().run();
+
+    assertThat(deferredFiam.isInitialized()).isTrue();
+    verify(deferredStreamManager, times(1)).createFirebaseInAppMessageStream();
+  }
+
   /**
    * Verifies the presence of the provided listener in the set of listeners inside
    * DeveloperListenerManager.
@@ -14,11 +14,15 @@
 
 package com.google.firebase.inappmessaging.internal;
 
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
+import com.google.firebase.abt.AbtException;
 import com.google.firebase.abt.FirebaseABTesting;
 import com.google.firebase.concurrent.TestOnlyExecutors;
+import com.google.firebase.inappmessaging.ExperimentPayloadProto;
 import com.google.firebase.inappmessaging.MessagesProto;
 import com.google.internal.firebase.inappmessaging.v1.CampaignProto;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
@@ -51,6 +55,21 @@ public class AbtIntegrationHelperTest {
                       CampaignProto.ExperimentalCampaignPayload.getDefaultInstance()))
           .build();
 
+  private static final ExperimentPayloadProto.ExperimentPayload EXPERIMENT =
+      ExperimentPayloadProto.ExperimentPayload.getDefaultInstance();
+
+  private static final FetchEligibleCampaignsResponse otherExperimentResponse =
+      FetchEligibleCampaignsResponse.newBuilder()
+          .addMessages(
+              CampaignProto.ThickContent.newBuilder()
+                  .setContent(MessagesProto.Content.getDefaultInstance())
+                  .setExperimentalPayload(
+                      CampaignProto.ExperimentalCampaignPayload.newBuilder()
+                          .setExperimentPayload(
+                              ExperimentPayloadProto.ExperimentPayload.newBuilder()
+                                  .setExperimentId("other_experiment"))))
+          .build();
+
   private static final FetchEligibleCampaignsResponse testExperimentResponse =
       FetchEligibleCampaignsResponse.newBuilder()
           .addMessages(
@@ -89,4 +108,65 @@ public class AbtIntegrationHelperTest {
     abtIntegrationHelper.updateRunningExperiments(testExperimentResponse);
     verifyNoInteractions(abTesting);
   }
+
+  @Test
+  public void updateRunningExperiments_sameExperiments_callsAbtOnce() throws Exception {
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse);
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse.toBuilder().build());
+
+    verify(abTesting, times(1)).validateRunningExperiments(Mockito.any());
+  }
+
+  @Test
+  public void updateRunningExperiments_changedExperiments_callsAbtAgain() throws Exception {
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse);
+    abtIntegrationHelper.updateRunningExperiments(otherExperimentResponse);
+
+    verify(abTesting, times(2)).validateRunningExperiments(Mockito.any());
+  }
+
+  @Test
+  public void updateRunningExperiments_afterAbtFailure_callsAbtAgain() throws Exception {
+    doThrow(new AbtException("no analytics"))
+        .doNothing()
+        .when(abTesting)
+        .validateRunningExperiments(Mockito.any());
+
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse);
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse);
+
+    verify(abTesting, times(2)).validateRunningExperiments(Mockito.any());
+  }
+
+  @Test
+  public void setExperimentActive_repeatedly_reportsOnce() throws Exception {
+    abtIntegrationHelper.setExperimentActive(EXPERIMENT);
+    abtIntegrationHelper.setExperimentActive(EXPERIMENT);
+
+    verify(abTesting, times(1)).reportActiveExperiment(Mockito.any());
+  }
+
+  @Test
+  public void setExperimentActive_afterExperimentStopsRunning_reportsAgain() throws Exception {
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse);
+    abtIntegrationHelper.setExperimentActive(EXPERIMENT);
+    abtIntegrationHelper.updateRunningExperiments(otherExperimentResponse);
+    abtIntegrationHelper.updateRunningExperiments(yesExperimentResponse);
+    abtIntegrationHelper.setExperimentActive(EXPERIMENT);
+
+    verify(abTesting, times(2)).reportActiveExperiment(Mockito.any());
+  }
+
+  @Test
+  public void setExperimentActive_afterAbtFailure_reportsAgain() throws Exception {
+    doThrow(new AbtException("no analytics"))
+        .doNothing()
+        .when(abTesting)
+        .reportActiveExperiment(Mockito.any());
+
+    abtIntegrationHelper.setExperimentActive(EXPERIMENT);
+    abtIntegrationHelper.setExperimentActive(EXPERIMENT);
+
+    verify(abTesting, times(2)).reportActiveExperiment(Mockito.any());
+  }
 }
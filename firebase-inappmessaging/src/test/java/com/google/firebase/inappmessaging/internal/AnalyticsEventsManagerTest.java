@@ -17,7 +17,10 @@ package com.google.firebase.inappmessaging.internal;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.firebase.inappmessaging.CommonTypesProto.Trigger.ON_FOREGROUND;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.util.Log;
@@ -30,6 +33,7 @@ import com.google.firebase.inappmessaging.MessagesProto.Content;
 import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
 import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import org.junit.Before;
@@ -191,6 +195,45 @@ public class AnalyticsEventsManagerTest {
     assertThat(eventNames).containsExactly(ANALYTICS_EVENT_1, event2, event3, event4);
   }
 
+  @Test
+  public void updateContextualTriggers_withRepeatedIdenticalFetches_registersEventNamesOnce() {
+    FetchEligibleCampaignsResponse campaignsResponse =
+        FetchEligibleCampaignsResponse.newBuilder()
+            .setExpirationEpochTimestampMillis(FUTURE)
+            .addMessages(ANALYTICS_EVENT_THICK_CONTENT_BUILDER)
+            .addMessages(FOREGROUND_THICK_CONTENT_BUILDER)
+            .build();
+
+    eventsManager.updateContextualTriggers(campaignsResponse);
+    eventsManager.updateContextualTriggers(campaignsResponse);
+    eventsManager.updateContextualTriggers(campaignsResponse.toBuilder().build());
+
+    verify(handle, times(1)).registerEventNames(anySet());
+    verify(handle).registerEventNames(Collections.singleton(ANALYTICS_EVENT_1));
+  }
+
+  @Test
+  public void updateContextualTriggers_whenEventNamesChange_registersNewEventNames() {
+    FetchEligibleCampaignsResponse campaignsResponse =
+        FetchEligibleCampaignsResponse.newBuilder()
+            .setExpirationEpochTimestampMillis(FUTURE)
+            .addMessages(ANALYTICS_EVENT_THICK_CONTENT_BUILDER)
+            .build();
+    FetchEligibleCampaignsResponse foregroundOnlyResponse =
+        FetchEligibleCampaignsResponse.newBuilder()
+            .setExpirationEpochTimestampMillis(FUTURE)
+            .addMessages(FOREGROUND_THICK_CONTENT_BUILDER)
+            .build();
+
+    eventsManager.updateContextualTriggers(campaignsResponse);
+    eventsManager.updateContextualTriggers(foregroundOnlyResponse);
+    eventsManager.updateContextualTriggers(foregroundOnlyResponse);
+
+    verify(handle, times(2)).registerEventNames(anySet());
+    verify(handle).registerEventNames(Collections.singleton(ANALYTICS_EVENT_1));
+    verify(handle).registerEventNames(Collections.emptySet());
+  }
+
   @Test
   public void updateContextualTriggers_logsWhenMoreThan50Events() {
 
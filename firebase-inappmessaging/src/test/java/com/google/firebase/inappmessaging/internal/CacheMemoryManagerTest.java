@@ -0,0 +1,173 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_BACKGROUND;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_COMPLETE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE;
+import static android.content.ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN;
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.firebase.inappmessaging.internal.CacheMemoryManager.Tier;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import com.google.firebase.inappmessaging.model.RateLimit;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpression;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpressionList;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CacheMemoryManagerTest {
+  private static final long NOW = 100;
+  private static final String CAMPAIGN_CACHE_KEY = "campaigns";
+  private static final String IMPRESSIONS_KEY = "impressions";
+  private static final String RATE_LIMITS_KEY = "rate_limits";
+  private static final FetchEligibleCampaignsResponse RESPONSE =
+      FetchEligibleCampaignsResponse.newBuilder()
+          .setExpirationEpochTimestampMillis(NOW + TimeUnit.DAYS.toMillis(1))
+          .build();
+  private static final CampaignImpression IMPRESSION =
+      CampaignImpression.newBuilder().setCampaignId("campaign_id").build();
+  private static final RateLimit RATE_LIMIT =
+      RateLimit.builder()
+          .setLimit(2)
+          .setLimiterKey("limiter_key")
+          .setTimeToLiveMillis(TimeUnit.DAYS.toMillis(1))
+          .build();
+
+  private StorageBackend backend;
+  private CampaignCacheClient campaignCacheClient;
+  private ImpressionStorageClient impressionStorageClient;
+  private RateLimiterClient rateLimiterClient;
+  private CacheMemoryManager cacheMemoryManager;
+
+  @Before
+  public void setup() {
+    FakeClock clock = new FakeClock(NOW);
+    backend = spy(new InMemoryStorageBackend(clock));
+    campaignCacheClient =
+        new CampaignCacheClient(new ProtoStorageClient(backend, CAMPAIGN_CACHE_KEY), clock);
+    impressionStorageClient =
+        new ImpressionStorageClient(new ProtoStorageClient(backend, IMPRESSIONS_KEY));
+    rateLimiterClient =
+        new RateLimiterClient(new ProtoStorageClient(backend, RATE_LIMITS_KEY), clock);
+    cacheMemoryManager =
+        new CacheMemoryManager(campaignCacheClient, impressionStorageClient, rateLimiterClient);
+
+    campaignCacheClient.put(RESPONSE).blockingAwait();
+    impressionStorageClient.storeImpression(IMPRESSION).blockingAwait();
+    rateLimiterClient.increment(RATE_LIMIT).blockingAwait();
+  }
+
+  @Test
+  public void getTierToTrim_followsTrimLevel() {
+    assertThat(CacheMemoryManager.getTierToTrim(TRIM_MEMORY_RUNNING_MODERATE)).isNull();
+    assertThat(CacheMemoryManager.getTierToTrim(TRIM_MEMORY_RUNNING_LOW))
+        .isEqualTo(Tier.CAMPAIGNS);
+    assertThat(CacheMemoryManager.getTierToTrim(TRIM_MEMORY_RUNNING_CRITICAL))
+        .isEqualTo(Tier.STORES);
+    assertThat(CacheMemoryManager.getTierToTrim(TRIM_MEMORY_UI_HIDDEN)).isEqualTo(Tier.CAMPAIGNS);
+    assertThat(CacheMemoryManager.getTierToTrim(TRIM_MEMORY_BACKGROUND)).isEqualTo(Tier.STORES);
+    assertThat(CacheMemoryManager.getTierToTrim(TRIM_MEMORY_COMPLETE)).isEqualTo(Tier.STORES);
+  }
+
+  @Test
+  public void getFootprint_reportsCachedBytes() {
+    CacheMemoryManager.Footprint footprint = cacheMemoryManager.getFootprint();
+
+    assertThat(footprint.getCampaignBytes()).isGreaterThan(0L);
+    assertThat(footprint.getStoreBytes()).isGreaterThan(0L);
+    assertThat(footprint.getTotalBytes())
+        .isEqualTo(footprint.getCampaignBytes() + footprint.getStoreBytes());
+    assertThat(footprint.getTrimCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void onTrimMemory_runningModerate_keepsCaches() {
+    long totalBytes = cacheMemoryManager.getFootprint().getTotalBytes();
+
+    cacheMemoryManager.onTrimMemory(TRIM_MEMORY_RUNNING_MODERATE);
+
+    assertThat(cacheMemoryManager.getFootprint().getTotalBytes()).isEqualTo(totalBytes);
+    assertThat(cacheMemoryManager.getFootprint().getTrimCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void onTrimMemory_uiHidden_dropsCampaignsOnly() {
+    long storeBytes = cacheMemoryManager.getFootprint().getStoreBytes();
+
+    cacheMemoryManager.onTrimMemory(TRIM_MEMORY_UI_HIDDEN);
+
+    CacheMemoryManager.Footprint footprint = cacheMemoryManager.getFootprint();
+    assertThat(footprint.getCampaignBytes()).isEqualTo(0L);
+    assertThat(footprint.getStoreBytes()).isEqualTo(storeBytes);
+    assertThat(footprint.getTrimCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void onTrimMemory_background_dropsAllCaches() {
+    cacheMemoryManager.onTrimMemory(TRIM_MEMORY_BACKGROUND);
+
+    assertThat(cacheMemoryManager.getFootprint().getTotalBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void onLowMemory_dropsAllCaches() {
+    cacheMemoryManager.onLowMemory();
+
+    assertThat(cacheMemoryManager.getFootprint().getTotalBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void unregister_stopsTrimmingCache() {
+    cacheMemoryManager.unregister(campaignCacheClient);
+
+    cacheMemoryManager.onTrimMemory(TRIM_MEMORY_COMPLETE);
+
+    assertThat(campaignCacheClient.getCachedBytes()).isGreaterThan(0L);
+    assertThat(cacheMemoryManager.getFootprint().getTotalBytes()).isEqualTo(0L);
+  }
+
+  @Test
+  public void trim_thenRead_reloadsFromStorage() throws IOException {
+    clearInvocations(backend);
+    cacheMemoryManager.onTrimMemory(TRIM_MEMORY_COMPLETE);
+
+    assertThat(campaignCacheClient.get().blockingGet().getExpirationEpochTimestampMillis())
+        .isEqualTo(RESPONSE.getExpirationEpochTimestampMillis());
+    assertThat(impressionStorageClient.getAllImpressions().blockingGet())
+        .isEqualTo(CampaignImpressionList.newBuilder().addAlreadySeenCampaigns(IMPRESSION).build());
+    assertThat(rateLimiterClient.isRateLimited(RATE_LIMIT).blockingGet()).isFalse();
+    verify(backend, times(1)).map(CAMPAIGN_CACHE_KEY);
+    verify(backend, times(1)).read(IMPRESSIONS_KEY);
+    verify(backend, times(1)).read(RATE_LIMITS_KEY);
+    assertThat(cacheMemoryManager.getFootprint().getCampaignBytes()).isGreaterThan(0L);
+    assertThat(cacheMemoryManager.getFootprint().getStoreBytes()).isGreaterThan(0L);
+  }
+}
@@ -16,21 +16,27 @@ package com.google.firebase.inappmessaging.internal;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
-import android.app.Application;
-import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.inappmessaging.CommonTypesProto.Trigger;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.firebase.inappmessaging.MessagesProto.BannerMessage;
+import com.google.firebase.inappmessaging.MessagesProto.Content;
+import com.google.firebase.inappmessaging.internal.ProtoStorageClient.TimestampedMessage;
 import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
-import com.google.protobuf.Parser;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.observers.TestObserver;
-import io.reactivex.subscribers.TestSubscriber;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -49,21 +55,48 @@ public class CampaignCacheClientTest {
       FetchEligibleCampaignsResponse.newBuilder().setExpirationEpochTimestampMillis(FUTURE).build();
 
   private final FetchEligibleCampaignsResponse fetchEligibleCampaignsResponse1 =
-      FetchEligibleCampaignsResponse.newBuilder().setExpirationEpochTimestampMillis(FUTURE).build();
+      FetchEligibleCampaignsResponse.newBuilder()
+          .setExpirationEpochTimestampMillis(FUTURE + 1)
+          .build();
 
   private final FetchEligibleCampaignsResponse expiredCampaignResponse =
       FetchEligibleCampaignsResponse.newBuilder().setExpirationEpochTimestampMillis(PAST).build();
 
   CampaignCacheClient campaignCacheClient;
-  TestObserver<FetchEligibleCampaignsResponse> storageWriteObserver;
-  Maybe<FetchEligibleCampaignsResponse> fakeRead;
+  Maybe<ByteBuffer> fakeMap;
   Completable fakeWrite;
   Boolean wasWritten;
   @Mock private ProtoStorageClient storageClient;
 
-  private static List<Object> getPlainValues(
-      TestSubscriber<FetchEligibleCampaignsResponse> subscriber) {
-    return subscriber.getEvents().get(0);
+  private static Maybe<ByteBuffer> mapped(
+      FetchEligibleCampaignsResponse response, long writtenAtMillis) {
+    return Maybe.just(ByteBuffer.wrap(IndexedCampaignCache.encode(response, writtenAtMillis)));
+  }
+
+  private static FetchEligibleCampaignsResponse withNonDisplayableCampaign(
+      FetchEligibleCampaignsResponse response) {
+    return response.toBuilder().addMessages(ThickContent.getDefaultInstance()).build();
+  }
+
+  private static FetchEligibleCampaignsResponse withEndedCampaign(
+      FetchEligibleCampaignsResponse response) {
+    ThickContent ended =
+        ThickContent.newBuilder()
+            .setVanillaPayload(
+                VanillaCampaignPayload.newBuilder()
+                    .setCampaignId("ended")
+                    .setCampaignStartTimeMillis(PAST)
+                    .setCampaignEndTimeMillis(NOW))
+            .setContent(Content.newBuilder().setBanner(BannerMessage.getDefaultInstance()))
+            .addTriggeringConditions(
+                TriggeringCondition.newBuilder().setFiamTrigger(Trigger.ON_FOREGROUND))
+            .build();
+    return response.toBuilder().addMessages(ended).build();
+  }
+
+  private static Long getExpiration(TestObserver<IndexedCampaignCache> observer) {
+    observer.assertValueCount(1);
+    return observer.values().get(0).getExpirationEpochTimestampMillis();
   }
 
   @Before
@@ -71,119 +104,209 @@ public class CampaignCacheClientTest {
     initMocks(this);
     wasWritten = false;
 
-    campaignCacheClient =
-        new CampaignCacheClient(
-            storageClient,
-            (Application) ApplicationProvider.getApplicationContext(),
-            new FakeClock(NOW));
+    campaignCacheClient = new CampaignCacheClient(storageClient, new FakeClock(NOW));
 
-    storageWriteObserver = TestObserver.create();
-    fakeRead = Maybe.fromCallable(() -> fetchEligibleCampaignsResponse1);
+    fakeMap = mapped(fetchEligibleCampaignsResponse1, NOW);
     fakeWrite = Completable.fromCallable(() -> wasWritten = true);
   }
 
   @Test
   public void put_noErrors_writesToStorage() {
-    when(storageClient.write(fetchEligibleCampaignsResponse2)).thenReturn(fakeWrite);
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
 
     campaignCacheClient.put(fetchEligibleCampaignsResponse2).subscribe();
 
     assertThat(wasWritten).isTrue();
   }
 
+  @Test
+  public void put_noErrors_writesIndexedResponse() {
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+
+    campaignCacheClient.put(fetchEligibleCampaignsResponse2).subscribe();
+
+    verify(storageClient).write(IndexedCampaignCache.encode(fetchEligibleCampaignsResponse2, NOW));
+  }
+
   @Test
   public void put_noErrors_cachesInMemory() {
-    when(storageClient.write(fetchEligibleCampaignsResponse2)).thenReturn(fakeWrite);
-    when(storageClient.read(any(Parser.class)))
-        .thenReturn(Maybe.just(fetchEligibleCampaignsResponse1));
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+    when(storageClient.map()).thenReturn(fakeMap);
 
     campaignCacheClient.put(fetchEligibleCampaignsResponse2).subscribe();
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
 
-    assertThat(getPlainValues(subscriber)).containsExactly(fetchEligibleCampaignsResponse2);
+    assertThat(getExpiration(campaignCacheClient.get().test())).isEqualTo(FUTURE);
   }
 
   @Test
-  public void put_writeErrors_notifiesError() {
-    when(storageClient.write(fetchEligibleCampaignsResponse2))
-        .thenReturn(Completable.error(new IOException()));
+  public void put_withUnusableCampaign_writesTrimmedResponse() {
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+    FetchEligibleCampaignsResponse response =
+        withNonDisplayableCampaign(fetchEligibleCampaignsResponse2);
 
-    TestSubscriber<Object> subscriber =
-        campaignCacheClient.put(fetchEligibleCampaignsResponse2).toFlowable().test();
+    campaignCacheClient.put(response).subscribe();
 
-    subscriber.assertError(IOException.class);
+    verify(storageClient).write(IndexedCampaignCache.encode(fetchEligibleCampaignsResponse2, NOW));
   }
 
   @Test
-  public void put_writeErrors_doesNotSetInMemoryCache() {
-    when(storageClient.write(fetchEligibleCampaignsResponse1))
-        .thenReturn(Completable.error(new IOException()));
-    when(storageClient.read(FetchEligibleCampaignsResponse.parser())).thenReturn(fakeRead);
+  public void put_withEndedCampaign_dropsIt() {
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+
+    campaignCacheClient.put(withEndedCampaign(fetchEligibleCampaignsResponse2)).subscribe();
 
+    verify(storageClient).write(IndexedCampaignCache.encode(fetchEligibleCampaignsResponse2, NOW));
+  }
+
+  @Test
+  public void put_fromTestDevice_keepsEndedCampaign() {
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+    FetchEligibleCampaignsResponse response = withEndedCampaign(fetchEligibleCampaignsResponse2);
+
+    campaignCacheClient.put(response, /* isTestDevice= */ true).subscribe();
+
+    verify(storageClient).write(IndexedCampaignCache.encode(response, NOW));
+  }
+
+  @Test
+  public void put_withUnusableCampaign_recordsTrimMetrics() {
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+    FetchEligibleCampaignsResponse response =
+        withNonDisplayableCampaign(fetchEligibleCampaignsResponse2);
+
+    campaignCacheClient.put(response).subscribe();
     campaignCacheClient.put(fetchEligibleCampaignsResponse1).subscribe();
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
 
-    assertThat(getPlainValues(subscriber)).containsExactly(fetchEligibleCampaignsResponse1);
+    CampaignCacheClient.TrimMetrics metrics = campaignCacheClient.getTrimMetrics();
+    assertThat(metrics.getCachedResponseCount()).isEqualTo(2);
+    assertThat(metrics.getDroppedCampaignCount()).isEqualTo(1);
+    assertThat(metrics.getSavedBytes())
+        .isEqualTo(
+            response.getSerializedSize() - fetchEligibleCampaignsResponse2.getSerializedSize());
+    assertThat(metrics.getLastCachedBytes())
+        .isEqualTo(IndexedCampaignCache.encode(fetchEligibleCampaignsResponse1, NOW).length);
+  }
+
+  @Test
+  public void put_writeErrors_doesNotRecordTrimMetrics() {
+    when(storageClient.write(any(byte[].class))).thenReturn(Completable.error(new IOException()));
+
+    campaignCacheClient.put(withNonDisplayableCampaign(fetchEligibleCampaignsResponse2)).test();
+
+    assertThat(campaignCacheClient.getTrimMetrics().getCachedResponseCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void put_writeErrors_notifiesError() {
+    when(storageClient.write(any(byte[].class))).thenReturn(Completable.error(new IOException()));
+
+    TestObserver<Void> observer = campaignCacheClient.put(fetchEligibleCampaignsResponse2).test();
+
+    observer.assertError(IOException.class);
   }
 
   @Test
-  public void get_noInMemoryCache_fetchesFromStorage() {
-    when(storageClient.read(FetchEligibleCampaignsResponse.parser()))
-        .thenReturn(Maybe.just(fetchEligibleCampaignsResponse2));
+  public void put_writeErrors_doesNotSetInMemoryCache() {
+    when(storageClient.write(any(byte[].class))).thenReturn(Completable.error(new IOException()));
+    when(storageClient.map()).thenReturn(fakeMap);
+
+    campaignCacheClient.put(fetchEligibleCampaignsResponse2).subscribe();
 
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
+    assertThat(getExpiration(campaignCacheClient.get().test())).isEqualTo(FUTURE + 1);
+  }
+
+  @Test
+  public void get_noInMemoryCache_mapsStorage() {
+    when(storageClient.map()).thenReturn(mapped(fetchEligibleCampaignsResponse2, NOW));
 
-    assertThat(getPlainValues(subscriber)).containsExactly(fetchEligibleCampaignsResponse2);
+    assertThat(getExpiration(campaignCacheClient.get().test())).isEqualTo(FUTURE);
   }
 
   @Test
   public void get_withInMemoryCache_returnInMemValue() {
-    when(storageClient.write(fetchEligibleCampaignsResponse2)).thenReturn(fakeWrite);
-    when(storageClient.read(FetchEligibleCampaignsResponse.parser())).thenReturn(fakeRead);
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+    when(storageClient.map()).thenReturn(fakeMap);
 
     campaignCacheClient.put(fetchEligibleCampaignsResponse2).subscribe();
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
 
-    assertThat(getPlainValues(subscriber)).containsExactly(fetchEligibleCampaignsResponse2);
+    assertThat(getExpiration(campaignCacheClient.get().test())).isEqualTo(FUTURE);
+  }
+
+  @Test
+  public void get_withInMemoryCache_doesNotReadStorage() {
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+
+    campaignCacheClient.put(fetchEligibleCampaignsResponse2).subscribe();
+    campaignCacheClient.get().test();
+
+    verify(storageClient, never()).map();
+    verify(storageClient, never()).readTimestamped(any());
   }
 
   @Test
   public void get_whenInMemCacheExpired_isEmpty() {
-    when(storageClient.write(expiredCampaignResponse)).thenReturn(fakeWrite);
-    when(storageClient.read(FetchEligibleCampaignsResponse.parser())).thenReturn(fakeRead);
+    when(storageClient.write(any(byte[].class))).thenReturn(fakeWrite);
+    when(storageClient.map()).thenReturn(fakeMap);
 
     campaignCacheClient.put(expiredCampaignResponse).subscribe();
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
 
-    subscriber.assertNoValues();
+    campaignCacheClient.get().test().assertNoValues();
   }
 
   @Test
   public void get_whenStorageCacheExpired_isEmpty() {
-    when(storageClient.read(FetchEligibleCampaignsResponse.parser()))
-        .thenReturn(Maybe.just(expiredCampaignResponse));
+    when(storageClient.map()).thenReturn(mapped(expiredCampaignResponse, NOW));
 
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
+    campaignCacheClient.get().test().assertNoValues();
+  }
 
-    subscriber.assertNoValues();
+  @Test
+  public void get_withoutTtl_isValidForADayAfterWrite() {
+    when(storageClient.map())
+        .thenReturn(
+            mapped(
+                FetchEligibleCampaignsResponse.getDefaultInstance(),
+                NOW - TimeUnit.DAYS.toMillis(1) + 1));
+
+    campaignCacheClient.get().test().assertValueCount(1);
   }
 
   @Test
-  public void get_whenBothCachesAreEmpty_isEmpty() {
-    when(storageClient.read(FetchEligibleCampaignsResponse.parser()))
-        .thenReturn(Maybe.error(new FileNotFoundException()));
+  public void get_withoutTtl_isEmptyADayAfterWrite() {
+    when(storageClient.map())
+        .thenReturn(
+            mapped(
+                FetchEligibleCampaignsResponse.getDefaultInstance(),
+                NOW - TimeUnit.DAYS.toMillis(1)));
+
+    campaignCacheClient.get().test().assertNoValues();
+  }
+
+  @Test
+  public void get_withCorruptIndex_isEmpty() {
+    when(storageClient.map())
+        .thenReturn(Maybe.just(ByteBuffer.wrap(new byte[] {IndexedCampaignCache.FORMAT_MARKER})));
 
-    TestSubscriber<FetchEligibleCampaignsResponse> subscriber =
-        campaignCacheClient.get().toFlowable().test();
+    TestObserver<IndexedCampaignCache> observer = campaignCacheClient.get().test();
 
-    subscriber.assertNoValues();
+    observer.assertNoErrors();
+    observer.assertNoValues();
   }
 
-  interface CampaignResponseParser extends Parser<FetchEligibleCampaignsResponse> {}
+  @Test
+  public void get_withCacheWrittenBeforeIndexing_readsResponse() {
+    when(storageClient.map())
+        .thenReturn(Maybe.just(ByteBuffer.wrap(fetchEligibleCampaignsResponse2.toByteArray())));
+    when(storageClient.readTimestamped(FetchEligibleCampaignsResponse.parser()))
+        .thenReturn(Maybe.just(new TimestampedMessage<>(fetchEligibleCampaignsResponse2, NOW)));
+
+    assertThat(getExpiration(campaignCacheClient.get().test())).isEqualTo(FUTURE);
+  }
+
+  @Test
+  public void get_whenBothCachesAreEmpty_isEmpty() {
+    when(storageClient.map()).thenReturn(Maybe.error(new FileNotFoundException()));
+
+    campaignCacheClient.get().test().assertNoValues();
+  }
 }
@@ -0,0 +1,152 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.firebase.inappmessaging.CommonTypesProto.Event;
+import com.google.firebase.inappmessaging.CommonTypesProto.Trigger;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.firebase.inappmessaging.MessagesProto.BannerMessage;
+import com.google.firebase.inappmessaging.MessagesProto.Content;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CampaignResponseTrimmerTest {
+  private static final long NOW = 100;
+
+  private static final ThickContent USABLE =
+      ThickContent.newBuilder()
+          .setVanillaPayload(
+              VanillaCampaignPayload.newBuilder()
+                  .setCampaignId("usable")
+                  .setCampaignStartTimeMillis(NOW - 10)
+                  .setCampaignEndTimeMillis(NOW + 10))
+          .setContent(Content.newBuilder().setBanner(BannerMessage.getDefaultInstance()))
+          .addTriggeringConditions(
+              TriggeringCondition.newBuilder().setFiamTrigger(Trigger.ON_FOREGROUND))
+          .build();
+
+  @Test
+  public void trim_withUsableCampaigns_returnsResponse() {
+    FetchEligibleCampaignsResponse response = responseOf(USABLE, USABLE);
+
+    assertThat(CampaignResponseTrimmer.trim(response, NOW, false)).isSameInstanceAs(response);
+  }
+
+  @Test
+  public void trim_dropsNonDisplayableCampaign() {
+    ThickContent noContent = USABLE.toBuilder().clearContent().build();
+
+    assertThat(CampaignResponseTrimmer.trim(responseOf(noContent, USABLE), NOW, false))
+        .isEqualTo(responseOf(USABLE));
+  }
+
+  @Test
+  public void trim_dropsEndedCampaign() {
+    ThickContent ended =
+        USABLE.toBuilder()
+            .setVanillaPayload(USABLE.getVanillaPayload().toBuilder().setCampaignEndTimeMillis(NOW))
+            .build();
+
+    assertThat(CampaignResponseTrimmer.trim(responseOf(USABLE, ended), NOW, false))
+        .isEqualTo(responseOf(USABLE));
+  }
+
+  @Test
+  public void trim_forTestDevice_keepsEndedCampaign() {
+    ThickContent ended =
+        USABLE.toBuilder()
+            .setVanillaPayload(USABLE.getVanillaPayload().toBuilder().setCampaignEndTimeMillis(NOW))
+            .build();
+    FetchEligibleCampaignsResponse response = responseOf(USABLE, ended);
+
+    assertThat(CampaignResponseTrimmer.trim(response, NOW, true)).isSameInstanceAs(response);
+  }
+
+  @Test
+  public void trim_keepsCampaignThatHasNotStarted() {
+    ThickContent upcoming =
+        USABLE.toBuilder()
+            .setVanillaPayload(
+                USABLE.getVanillaPayload().toBuilder().setCampaignStartTimeMillis(NOW + 5))
+            .build();
+    FetchEligibleCampaignsResponse response = responseOf(upcoming);
+
+    assertThat(CampaignResponseTrimmer.trim(response, NOW, false)).isSameInstanceAs(response);
+  }
+
+  @Test
+  public void trim_dropsCampaignWithoutFireableTrigger() {
+    ThickContent unknownTrigger =
+        USABLE.toBuilder()
+            .clearTriggeringConditions()
+            .addTriggeringConditions(
+                TriggeringCondition.newBuilder().setFiamTrigger(Trigger.UNKNOWN_TRIGGER))
+            .addTriggeringConditions(
+                TriggeringCondition.newBuilder().setEvent(Event.getDefaultInstance()))
+            .build();
+    ThickContent analyticsTrigger =
+        USABLE.toBuilder()
+            .clearTriggeringConditions()
+            .addTriggeringConditions(
+                TriggeringCondition.newBuilder().setEvent(Event.newBuilder().setName("event")))
+            .build();
+    FetchEligibleCampaignsResponse response = responseOf(unknownTrigger, analyticsTrigger);
+
+    assertThat(CampaignResponseTrimmer.trim(response, NOW, false))
+        .isEqualTo(responseOf(analyticsTrigger));
+  }
+
+  @Test
+  public void trim_keepsEndedTestCampaignWithoutTriggers() {
+    ThickContent testCampaign =
+        USABLE.toBuilder()
+            .setIsTestCampaign(true)
+            .clearTriggeringConditions()
+            .setVanillaPayload(USABLE.getVanillaPayload().toBuilder().setCampaignEndTimeMillis(0))
+            .build();
+    FetchEligibleCampaignsResponse response = responseOf(testCampaign);
+
+    assertThat(CampaignResponseTrimmer.trim(response, NOW, false)).isSameInstanceAs(response);
+  }
+
+  @Test
+  public void trim_keepsResponseFields() {
+    FetchEligibleCampaignsResponse response =
+        responseOf(USABLE, USABLE.toBuilder().clearContent().build())
+            .toBuilder()
+            .setExpirationEpochTimestampMillis(NOW + 1000)
+            .build();
+
+    assertThat(
+            CampaignResponseTrimmer.trim(response, NOW, false).getExpirationEpochTimestampMillis())
+        .isEqualTo(NOW + 1000);
+  }
+
+  private static FetchEligibleCampaignsResponse responseOf(ThickContent... campaigns) {
+    FetchEligibleCampaignsResponse.Builder response = FetchEligibleCampaignsResponse.newBuilder();
+    for (ThickContent campaign : campaigns) {
+      response.addMessages(campaign);
+    }
+    return response.build();
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ExperimentalCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CampaignScheduleTest {
+  private static final ThickContent EARLY = vanilla("early", 100, 200);
+  private static final ThickContent LATE = experiment("late", 150, 300);
+  private static final ThickContent NO_PAYLOAD = ThickContent.getDefaultInstance();
+
+  private final CampaignSchedule schedule =
+      new CampaignSchedule(
+          FetchEligibleCampaignsResponse.newBuilder()
+              .addMessages(LATE)
+              .addMessages(NO_PAYLOAD)
+              .addMessages(EARLY)
+              .build());
+
+  @Test
+  public void getActiveCampaigns_excludesBoundariesLikeIsActive() {
+    assertThat(schedule.getActiveCampaigns(100)).isEmpty();
+    assertThat(schedule.getActiveCampaigns(101)).containsExactly(EARLY);
+    assertThat(schedule.getActiveCampaigns(199)).containsExactly(LATE, EARLY).inOrder();
+    assertThat(schedule.getActiveCampaigns(200)).containsExactly(LATE);
+    assertThat(schedule.getActiveCampaigns(300)).isEmpty();
+  }
+
+  @Test
+  public void getActiveCampaigns_matchesIsActiveAt() {
+    for (long now = 0; now < 400; now++) {
+      for (ThickContent content : new ThickContent[] {EARLY, LATE, NO_PAYLOAD}) {
+        assertThat(schedule.getActiveCampaigns(now).contains(content))
+            .isEqualTo(CampaignSchedule.isActiveAt(content, now));
+      }
+    }
+  }
+
+  @Test
+  public void getActiveCampaigns_reusesActiveSetUntilBoundary() {
+    assertThat(schedule.getActiveCampaigns(160)).isSameInstanceAs(schedule.getActiveCampaigns(199));
+    assertThat(schedule.getActiveCampaigns(160))
+        .isNotSameInstanceAs(schedule.getActiveCampaigns(200));
+  }
+
+  @Test
+  public void getActiveCampaigns_clockMovingBackwards_recomputes() {
+    assertThat(schedule.getActiveCampaigns(250)).containsExactly(LATE);
+    assertThat(schedule.getActiveCampaigns(120)).containsExactly(EARLY);
+  }
+
+  @Test
+  public void getNextBoundaryMillis_returnsNextActivationOrExpiry() {
+    assertThat(schedule.getNextBoundaryMillis(0)).isEqualTo(101L);
+    assertThat(schedule.getNextBoundaryMillis(101)).isEqualTo(151L);
+    assertThat(schedule.getNextBoundaryMillis(151)).isEqualTo(200L);
+    assertThat(schedule.getNextBoundaryMillis(200)).isEqualTo(300L);
+    assertThat(schedule.getNextBoundaryMillis(300)).isEqualTo(CampaignSchedule.NO_BOUNDARY);
+  }
+
+  @Test
+  public void isFor_matchesOnlyItsOwnResponse() {
+    FetchEligibleCampaignsResponse response =
+        FetchEligibleCampaignsResponse.newBuilder().addMessages(EARLY).build();
+    CampaignSchedule responseSchedule = new CampaignSchedule(response);
+
+    assertThat(responseSchedule.isFor(response)).isTrue();
+    assertThat(responseSchedule.isFor(response.toBuilder().build())).isFalse();
+    assertThat(responseSchedule.isFor(response.toBuilder().addMessages(LATE).build())).isFalse();
+  }
+
+  private static ThickContent vanilla(String id, long start, long end) {
+    return ThickContent.newBuilder()
+        .setVanillaPayload(
+            VanillaCampaignPayload.newBuilder()
+                .setCampaignId(id)
+                .setCampaignStartTimeMillis(start)
+                .setCampaignEndTimeMillis(end))
+        .build();
+  }
+
+  private static ThickContent experiment(String id, long start, long end) {
+    return ThickContent.newBuilder()
+        .setExperimentalPayload(
+            ExperimentalCampaignPayload.newBuilder()
+                .setCampaignId(id)
+                .setCampaignStartTimeMillis(start)
+                .setCampaignEndTimeMillis(end))
+        .build();
+  }
+}
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.SharedPreferences;
 import com.google.firebase.DataCollectionDefaultChange;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.events.Event;
@@ -28,9 +29,11 @@ import com.google.firebase.events.Subscriber;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
@@ -206,6 +209,112 @@ public final class DataCollectionHelperTest {
     assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isTrue();
   }
 
+  @Test
+  public void isAutomaticDataCollectionEnabled_cachesResolvedValue() {
+    when(sharedPreferencesUtils.isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES))
+        .thenReturn(false);
+    when(sharedPreferencesUtils.isManifestSet(
+            DataCollectionHelper.MANIFEST_METADATA_AUTO_INIT_ENABLED))
+        .thenReturn(true);
+    when(sharedPreferencesUtils.getBooleanManifestValue(
+            DataCollectionHelper.MANIFEST_METADATA_AUTO_INIT_ENABLED, true))
+        .thenReturn(false);
+    when(firebaseApp.isDataCollectionDefaultEnabled()).thenReturn(true);
+
+    dataCollectionHelper =
+        new DataCollectionHelper(firebaseApp, sharedPreferencesUtils, subscriber);
+
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isFalse();
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isFalse();
+    verify(sharedPreferencesUtils, times(1))
+        .isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES);
+    verify(sharedPreferencesUtils, times(1))
+        .getBooleanManifestValue(DataCollectionHelper.MANIFEST_METADATA_AUTO_INIT_ENABLED, true);
+  }
+
+  @Test
+  public void setAutomaticDataCollectionEnabled_invalidatesCachedValue() {
+    when(sharedPreferencesUtils.isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES))
+        .thenReturn(false);
+    when(sharedPreferencesUtils.isManifestSet(
+            DataCollectionHelper.MANIFEST_METADATA_AUTO_INIT_ENABLED))
+        .thenReturn(false);
+    when(firebaseApp.isDataCollectionDefaultEnabled()).thenReturn(true);
+
+    dataCollectionHelper =
+        new DataCollectionHelper(firebaseApp, sharedPreferencesUtils, subscriber);
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isTrue();
+
+    when(sharedPreferencesUtils.isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES))
+        .thenReturn(true);
+    when(sharedPreferencesUtils.getBooleanPreference(
+            DataCollectionHelper.AUTO_INIT_PREFERENCES, true))
+        .thenReturn(false);
+    dataCollectionHelper.setAutomaticDataCollectionEnabled(false);
+
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isFalse();
+  }
+
+  @Test
+  public void isAutomaticDataCollectionEnabled_changedWhileResolving_isNotCached() {
+    when(sharedPreferencesUtils.isManifestSet(
+            DataCollectionHelper.MANIFEST_METADATA_AUTO_INIT_ENABLED))
+        .thenReturn(false);
+    when(sharedPreferencesUtils.getBooleanPreference(
+            DataCollectionHelper.AUTO_INIT_PREFERENCES, true))
+        .thenReturn(false);
+    when(firebaseApp.isDataCollectionDefaultEnabled()).thenReturn(true);
+    AtomicInteger resolutions = new AtomicInteger();
+    when(sharedPreferencesUtils.isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES))
+        .thenAnswer(
+            invocation -> {
+              if (resolutions.incrementAndGet() > 1) {
+                return true;
+              }
+              // Disabled right after the first resolution read the preference
+              dataCollectionHelper.setAutomaticDataCollectionEnabled(false);
+              return false;
+            });
+
+    dataCollectionHelper =
+        new DataCollectionHelper(firebaseApp, sharedPreferencesUtils, subscriber);
+
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isTrue();
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isFalse();
+  }
+
+  @Test
+  public void isAutomaticDataCollectionEnabled_invalidatesOnPreferenceChange() {
+    when(sharedPreferencesUtils.isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES))
+        .thenReturn(false);
+    when(sharedPreferencesUtils.isManifestSet(
+            DataCollectionHelper.MANIFEST_METADATA_AUTO_INIT_ENABLED))
+        .thenReturn(false);
+    when(firebaseApp.isDataCollectionDefaultEnabled()).thenReturn(true);
+    ArgumentCaptor<SharedPreferences.OnSharedPreferenceChangeListener> listenerCaptor =
+        ArgumentCaptor.forClass(SharedPreferences.OnSharedPreferenceChangeListener.class);
+
+    dataCollectionHelper =
+        new DataCollectionHelper(firebaseApp, sharedPreferencesUtils, subscriber);
+    verify(sharedPreferencesUtils)
+        .registerOnSharedPreferenceChangeListener(listenerCaptor.capture());
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isTrue();
+
+    // Another instance wrote the preference
+    when(sharedPreferencesUtils.isPreferenceSet(DataCollectionHelper.AUTO_INIT_PREFERENCES))
+        .thenReturn(true);
+    when(sharedPreferencesUtils.getBooleanPreference(
+            DataCollectionHelper.AUTO_INIT_PREFERENCES, true))
+        .thenReturn(false);
+    listenerCaptor.getValue().onSharedPreferenceChanged(null, "unrelated_key");
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isTrue();
+
+    listenerCaptor
+        .getValue()
+        .onSharedPreferenceChanged(null, DataCollectionHelper.AUTO_INIT_PREFERENCES);
+    assertThat(dataCollectionHelper.isAutomaticDataCollectionEnabled()).isFalse();
+  }
+
   private class TestFirebaseEventSubscriber implements Subscriber {
     private List<EventHandler<DataCollectionDefaultChange>> dataCollectionHandlers;
 
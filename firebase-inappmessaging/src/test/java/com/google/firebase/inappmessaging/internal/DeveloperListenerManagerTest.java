@@ -14,8 +14,12 @@
 
 package com.google.firebase.inappmessaging.internal;
 
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.inappmessaging.internal.DeveloperListenerManager.SLOW_LISTENER_THRESHOLD_NANOS;
+import static com.google.firebase.inappmessaging.testutil.Assert.expectThrows;
 import static com.google.firebase.inappmessaging.testutil.TestData.BANNER_MESSAGE_MODEL;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -26,7 +30,13 @@ import com.google.firebase.inappmessaging.FirebaseInAppMessagingDismissListener;
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayCallbacks;
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayErrorListener;
 import com.google.firebase.inappmessaging.FirebaseInAppMessagingImpressionListener;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -47,12 +57,14 @@ public class DeveloperListenerManagerTest {
   @Mock FirebaseInAppMessagingDisplayErrorListener errorListener;
   @Mock FirebaseInAppMessagingDisplayErrorListener secondErrorListener;
   @Mock Executor devExecutor;
+  Executor directExecutor = Runnable::run;
   DeveloperListenerManager developerListenerManager;
 
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
-    developerListenerManager = new DeveloperListenerManager(TestOnlyExecutors.background());
+    developerListenerManager =
+        new DeveloperListenerManager(TestOnlyExecutors.background(), TestOnlyExecutors.blocking());
   }
 
   @Test
@@ -181,4 +193,111 @@ public class DeveloperListenerManagerTest {
             FirebaseInAppMessagingDisplayCallbacks.InAppMessagingErrorReason
                 .UNSPECIFIED_RENDER_ERROR);
   }
+
+  @Test
+  public void notifies_multipleListenersOnSameExecutor_withSingleSubmission() {
+    developerListenerManager.addImpressionListener(impressionListener, devExecutor);
+    developerListenerManager.addImpressionListener(secondImpressionListener, devExecutor);
+    developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL);
+
+    verify(devExecutor, times(1)).execute(any());
+  }
+
+  @Test
+  public void notifies_remainingListenersInBatch_andRethrows_whenOneThrows() {
+    IllegalStateException failure = new IllegalStateException("boom");
+    doThrow(failure).when(impressionListener).impressionDetected(BANNER_MESSAGE_MODEL);
+    developerListenerManager.addImpressionListener(impressionListener, directExecutor);
+    developerListenerManager.addImpressionListener(secondImpressionListener, directExecutor);
+
+    IllegalStateException thrown =
+        expectThrows(
+            IllegalStateException.class,
+            () -> developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL));
+
+    assertThat(thrown).isSameInstanceAs(failure);
+    verify(impressionListener, times(1)).impressionDetected(BANNER_MESSAGE_MODEL);
+    verify(secondImpressionListener, times(1)).impressionDetected(BANNER_MESSAGE_MODEL);
+    assertThat(developerListenerManager.getListenerMetrics(impressionListener).getInvocationCount())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void slowListener_isRecordedAndDispatchedSeparately() {
+    AtomicInteger submissions = new AtomicInteger();
+    Executor countingExecutor =
+        runnable -> {
+          submissions.incrementAndGet();
+          runnable.run();
+        };
+    FirebaseInAppMessagingImpressionListener slowListener =
+        inAppMessage -> sleep(TimeUnit.NANOSECONDS.toMillis(SLOW_LISTENER_THRESHOLD_NANOS));
+    developerListenerManager.addImpressionListener(slowListener, countingExecutor);
+    developerListenerManager.addImpressionListener(impressionListener, countingExecutor);
+
+    developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL);
+    assertThat(submissions.get()).isEqualTo(1);
+
+    developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL);
+    assertThat(submissions.get()).isEqualTo(3);
+
+    DeveloperListenerManager.ListenerMetrics slowMetrics =
+        developerListenerManager.getListenerMetrics(slowListener);
+    assertThat(slowMetrics.getInvocationCount()).isEqualTo(2);
+    assertThat(slowMetrics.getSlowInvocationCount()).isEqualTo(2);
+    assertThat(slowMetrics.getMaxLatencyNanos()).isAtLeast(SLOW_LISTENER_THRESHOLD_NANOS);
+    DeveloperListenerManager.ListenerMetrics fastMetrics =
+        developerListenerManager.getListenerMetrics(impressionListener);
+    assertThat(fastMetrics.getInvocationCount()).isEqualTo(2);
+    assertThat(fastMetrics.getSlowInvocationCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void slowListener_withoutExecutor_doesNotHoldUpFastListeners()
+      throws InterruptedException {
+    ExecutorService blockingExecutor = Executors.newSingleThreadExecutor();
+    // Listeners on the background executor run on the dispatching thread
+    developerListenerManager = new DeveloperListenerManager(directExecutor, blockingExecutor);
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicReference<Thread> slowThread = new AtomicReference<>();
+    AtomicInteger slowInvocations = new AtomicInteger();
+    FirebaseInAppMessagingImpressionListener slowListener =
+        inAppMessage -> {
+          if (slowInvocations.incrementAndGet() == 1) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(SLOW_LISTENER_THRESHOLD_NANOS));
+            return;
+          }
+          slowThread.set(Thread.currentThread());
+          blocked.countDown();
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+    developerListenerManager.addImpressionListener(slowListener);
+    developerListenerManager.addImpressionListener(impressionListener);
+    developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL);
+
+    try {
+      developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL);
+      developerListenerManager.impressionDetected(BANNER_MESSAGE_MODEL);
+
+      assertThat(blocked.await(1, TimeUnit.SECONDS)).isTrue();
+      assertThat(slowThread.get()).isNotSameInstanceAs(Thread.currentThread());
+      verify(impressionListener, times(3)).impressionDetected(BANNER_MESSAGE_MODEL);
+    } finally {
+      release.countDown();
+      blockingExecutor.shutdown();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
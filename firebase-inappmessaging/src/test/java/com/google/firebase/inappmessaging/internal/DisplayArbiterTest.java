@@ -0,0 +1,240 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.inappmessaging.testutil.TestData.BANNER_MESSAGE_MODEL;
+import static com.google.firebase.inappmessaging.testutil.TestData.BANNER_TEST_MESSAGE_MODEL;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayCallbacks;
+import com.google.firebase.inappmessaging.FirebaseInAppMessagingDisplayCallbacks.InAppMessagingDismissType;
+import com.google.firebase.inappmessaging.model.TriggeredInAppMessage;
+import io.reactivex.flowables.ConnectableFlowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DisplayArbiterTest {
+  private static final String EVENT = "event";
+
+  private final TriggeredInAppMessage priorityOne =
+      new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, EVENT, 1);
+  private final TriggeredInAppMessage priorityTwo =
+      new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, EVENT, 2);
+  private final TriggeredInAppMessage priorityThree =
+      new TriggeredInAppMessage(BANNER_MESSAGE_MODEL, EVENT, 3);
+  private final TriggeredInAppMessage testMessage =
+      new TriggeredInAppMessage(BANNER_TEST_MESSAGE_MODEL, EVENT, 5);
+
+  @Mock private Schedulers schedulers;
+  @Mock private FirebaseInAppMessagingDisplayCallbacks callbacks;
+
+  private final TestScheduler mainThread = new TestScheduler();
+  private final PublishProcessor<String> foregroundEvents = PublishProcessor.create();
+  private final List<TriggeredInAppMessage> displayed = new ArrayList<>();
+  private boolean hasDisplay = true;
+  private DisplayArbiter arbiter;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    when(schedulers.mainThread()).thenReturn(mainThread);
+    ConnectableFlowable<String> foregroundFlowable = foregroundEvents.publish();
+    foregroundFlowable.connect();
+    arbiter =
+        new DisplayArbiter(
+            schedulers, () -> mainThread.now(TimeUnit.MILLISECONDS), foregroundFlowable);
+    arbiter.start(
+        message -> {
+          if (hasDisplay) {
+            displayed.add(message);
+          }
+          return hasDisplay;
+        });
+  }
+
+  @Test
+  public void enqueue_displaysOneAtATimeInPriorityOrder() {
+    arbiter.enqueue(Collections.singletonList(priorityThree));
+    arbiter.enqueue(Collections.singletonList(priorityTwo));
+    arbiter.enqueue(Collections.singletonList(priorityOne));
+
+    assertThat(displayed).containsExactly(priorityThree);
+
+    dismiss(priorityThree);
+    dismiss(priorityOne);
+
+    assertThat(displayed).containsExactly(priorityThree, priorityOne, priorityTwo).inOrder();
+  }
+
+  @Test
+  public void enqueue_severalMessagesForOneTrigger_displaysBestFirst() {
+    arbiter.enqueue(Arrays.asList(priorityTwo, priorityOne));
+
+    assertThat(displayed).containsExactly(priorityOne);
+    assertThat(arbiter.getPendingCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void enqueue_waitsForCooldownAfterDismiss() {
+    arbiter.setCooldownMillis(1000);
+    arbiter.enqueue(Arrays.asList(priorityOne, priorityTwo));
+
+    arbiter
+        .trackCallbacks(priorityOne, callbacks)
+        .messageDismissed(InAppMessagingDismissType.CLICK);
+    mainThread.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+    assertThat(displayed).containsExactly(priorityOne);
+
+    mainThread.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+    assertThat(displayed).containsExactly(priorityOne, priorityTwo).inOrder();
+  }
+
+  @Test
+  public void enqueue_afterSessionCap_dropsUntilNextForeground() {
+    arbiter.setMaxMessagesPerSession(1);
+    arbiter.enqueue(Collections.singletonList(priorityOne));
+    dismiss(priorityOne);
+
+    arbiter.enqueue(Collections.singletonList(priorityTwo));
+    mainThread.triggerActions();
+    assertThat(displayed).containsExactly(priorityOne);
+
+    foregroundEvents.onNext(InAppMessageStreamManager.ON_FOREGROUND);
+    mainThread.triggerActions();
+    arbiter.enqueue(Collections.singletonList(priorityThree));
+    assertThat(displayed).containsExactly(priorityOne, priorityThree).inOrder();
+  }
+
+  @Test
+  public void foreground_whileMessageOnScreen_waitsForItToFinish() {
+    arbiter.enqueue(Collections.singletonList(priorityOne));
+    arbiter.trackCallbacks(priorityOne, callbacks).impressionDetected();
+
+    foregroundEvents.onNext(InAppMessageStreamManager.ON_FOREGROUND);
+    mainThread.triggerActions();
+    arbiter.enqueue(Collections.singletonList(priorityTwo));
+
+    assertThat(displayed).containsExactly(priorityOne);
+    assertThat(arbiter.isShowing()).isTrue();
+
+    dismiss(priorityOne);
+
+    assertThat(displayed).containsExactly(priorityOne, priorityTwo).inOrder();
+  }
+
+  @Test
+  public void foreground_beforeImpression_keepsImpressionTimeout() {
+    arbiter.enqueue(Collections.singletonList(priorityOne));
+
+    foregroundEvents.onNext(InAppMessageStreamManager.ON_FOREGROUND);
+    mainThread.triggerActions();
+    arbiter.enqueue(Collections.singletonList(priorityTwo));
+    assertThat(displayed).containsExactly(priorityOne);
+
+    mainThread.advanceTimeBy(DisplayArbiter.IMPRESSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+    assertThat(displayed).containsExactly(priorityOne, priorityTwo).inOrder();
+  }
+
+  @Test
+  public void enqueue_testMessage_skipsQueueAndSessionCap() {
+    arbiter.setMaxMessagesPerSession(1);
+    arbiter.enqueue(Collections.singletonList(priorityThree));
+    arbiter.enqueue(Arrays.asList(priorityOne, testMessage));
+
+    dismiss(priorityThree);
+
+    assertThat(displayed).containsExactly(priorityThree, testMessage).inOrder();
+  }
+
+  @Test
+  public void enqueue_whenQueueFull_evictsWorstWaitingMessage() {
+    arbiter.setMaxPendingMessages(1);
+    arbiter.enqueue(Collections.singletonList(priorityOne));
+    arbiter.enqueue(Collections.singletonList(priorityThree));
+    arbiter.enqueue(Collections.singletonList(priorityTwo));
+
+    dismiss(priorityOne);
+    dismiss(priorityTwo);
+
+    assertThat(displayed).containsExactly(priorityOne, priorityTwo).inOrder();
+    assertThat(arbiter.getPendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void enqueue_displayNeverShowsMessage_movesOnAfterTimeout() {
+    arbiter.enqueue(Arrays.asList(priorityOne, priorityTwo));
+
+    mainThread.advanceTimeBy(DisplayArbiter.IMPRESSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+    assertThat(displayed).containsExactly(priorityOne, priorityTwo).inOrder();
+  }
+
+  @Test
+  public void enqueue_afterImpression_waitsForDismissWithoutTimeout() {
+    arbiter.enqueue(Arrays.asList(priorityOne, priorityTwo));
+    arbiter.trackCallbacks(priorityOne, callbacks).impressionDetected();
+
+    mainThread.advanceTimeBy(10 * DisplayArbiter.IMPRESSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+    assertThat(displayed).containsExactly(priorityOne);
+    assertThat(arbiter.isShowing()).isTrue();
+    verify(callbacks).impressionDetected();
+  }
+
+  @Test
+  public void enqueue_withoutDisplay_dropsMessages() {
+    hasDisplay = false;
+    arbiter.enqueue(Arrays.asList(priorityOne, priorityTwo));
+
+    assertThat(arbiter.isShowing()).isFalse();
+    assertThat(arbiter.getPendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void trackCallbacks_displayError_freesDisplay() {
+    arbiter.enqueue(Arrays.asList(priorityOne, priorityTwo));
+
+    arbiter
+        .trackCallbacks(priorityOne, callbacks)
+        .displayErrorEncountered(
+            FirebaseInAppMessagingDisplayCallbacks.InAppMessagingErrorReason.IMAGE_FETCH_ERROR);
+    mainThread.triggerActions();
+
+    assertThat(displayed).containsExactly(priorityOne, priorityTwo).inOrder();
+  }
+
+  private void dismiss(TriggeredInAppMessage message) {
+    arbiter.trackCallbacks(message, callbacks).messageDismissed(InAppMessagingDismissType.CLICK);
+    mainThread.triggerActions();
+  }
+}
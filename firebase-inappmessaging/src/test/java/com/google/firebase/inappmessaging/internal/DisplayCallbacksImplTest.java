@@ -221,7 +221,8 @@ public class DisplayCallbacksImplTest {
     when(inAppMessageStreamManager.createFirebaseInAppMessageStream()).thenReturn(fiamStream);
     when(impressionStorageClient.storeImpression(any(CampaignImpression.class)))
         .thenReturn(fakeImpressionCompletable);
-    when(campaignCacheClient.get()).thenReturn(Maybe.just(campaignsResponse));
+    when(campaignCacheClient.get())
+        .thenReturn(Maybe.just(IndexedCampaignCache.of(campaignsResponse, NOW)));
     when(rateLimiterClient.increment(appForegroundRateLimit)).thenReturn(fakeRateLimitCompletable);
 
     when(firebaseInstallations.getId()).thenReturn(Tasks.forResult(INSTALLATION_ID));
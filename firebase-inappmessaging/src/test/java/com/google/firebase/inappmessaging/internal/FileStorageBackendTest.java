@@ -0,0 +1,127 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.inappmessaging.testutil.Assert.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+import android.app.Application;
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class FileStorageBackendTest {
+  private static final String KEY = "file";
+
+  private Application application;
+  private FileStorageBackend backend;
+
+  @Before
+  public void setup() {
+    application = spy((Application) ApplicationProvider.getApplicationContext());
+    backend = new FileStorageBackend(application);
+  }
+
+  @Test
+  public void read_afterWrite_returnsBytes() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+
+    assertThat(backend.read(KEY)).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void write_storesRecordInFileNamedAfterKey() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+
+    File file = new File(application.getFilesDir(), KEY);
+    assertThat(file.length()).isEqualTo(3);
+    assertThat(backend.lastModified(KEY)).isEqualTo(file.lastModified());
+  }
+
+  @Test
+  public void read_withoutFile_isNull() throws IOException {
+    assertThat(backend.read("missing_file")).isNull();
+  }
+
+  @Test
+  public void write_onFailure_keepsPreviousRecord() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+    doThrow(new FileNotFoundException())
+        .when(application)
+        .openFileOutput(KEY + ".tmp", Context.MODE_PRIVATE);
+
+    assertThrows(FileNotFoundException.class, () -> backend.write(KEY, new byte[] {4}));
+
+    assertThat(backend.read(KEY)).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void readPrevious_afterWrites_returnsReplacedBytes() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+    assertThat(backend.readPrevious(KEY)).isNull();
+
+    backend.write(KEY, new byte[] {4});
+
+    assertThat(backend.readPrevious(KEY)).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void readPrevious_afterFailedWrite_returnsRecordBeforeCurrent() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+    backend.write(KEY, new byte[] {4});
+    doThrow(new FileNotFoundException())
+        .when(application)
+        .openFileOutput(KEY + ".tmp", Context.MODE_PRIVATE);
+
+    assertThrows(FileNotFoundException.class, () -> backend.write(KEY, new byte[] {5}));
+
+    assertThat(backend.read(KEY)).isEqualTo(new byte[] {4});
+    assertThat(backend.readPrevious(KEY)).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void map_afterWrite_returnsBytes() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+
+    assertThat(backend.map(KEY)).isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void map_whenFileIsReplaced_keepsPreviousContents() throws IOException {
+    backend.write(KEY, new byte[] {1, 2, 3});
+    ByteBuffer mapped = backend.map(KEY);
+    backend.write(KEY, new byte[] {4});
+
+    assertThat(mapped).isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+    assertThat(backend.map(KEY)).isEqualTo(ByteBuffer.wrap(new byte[] {4}));
+  }
+
+  @Test
+  public void map_withoutFile_isNull() throws IOException {
+    assertThat(backend.map("missing_file")).isNull();
+  }
+}
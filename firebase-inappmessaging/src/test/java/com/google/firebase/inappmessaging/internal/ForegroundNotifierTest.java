@@ -66,4 +66,16 @@ public class ForegroundNotifierTest {
     foregroundNotifier.onActivityResumed(null); // 2
     assertThat(subscriber.getEvents().get(0)).hasSize(2);
   }
+
+  @Test
+  public void notifier_lateSubscriber_receivesLatestForegroundEvent() {
+    ForegroundNotifier notifier = new ForegroundNotifier();
+    ConnectableFlowable<String> foregroundFlowable = notifier.foregroundFlowable();
+    foregroundFlowable.connect();
+    notifier.onActivityResumed(null);
+
+    TestSubscriber<String> lateSubscriber = foregroundFlowable.test();
+
+    lateSubscriber.assertValue(ON_FOREGROUND);
+  }
 }
@@ -21,6 +21,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
 import com.google.internal.firebase.inappmessaging.v1.CampaignProto;
 import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpression;
@@ -31,7 +32,14 @@ import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.subscribers.TestSubscriber;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -213,6 +221,32 @@ public class ImpressionStorageClientTest {
     subscriber.assertError(IOException.class);
   }
 
+  @Test
+  public void warmUp_noErrors_laterReadsUseMemory() {
+    AtomicInteger reads = new AtomicInteger();
+    when(storageClient.read(any(Parser.class)))
+        .thenReturn(
+            Maybe.fromCallable(
+                () -> {
+                  reads.incrementAndGet();
+                  return campaignImpressionList;
+                }));
+
+    impressionStorageClient.warmUp().subscribe();
+    TestSubscriber<CampaignImpressionList> subscriber =
+        impressionStorageClient.getAllImpressions().toFlowable().test();
+
+    assertThat(reads.get()).isEqualTo(1);
+    assertThat(getPlainValues(subscriber)).containsExactly(campaignImpressionList);
+  }
+
+  @Test
+  public void warmUp_readError_completes() {
+    when(storageClient.read(any(Parser.class))).thenReturn(Maybe.error(new IOException()));
+
+    impressionStorageClient.warmUp().test().assertComplete();
+  }
+
   @Test
   public void isImpressed_ifCampaignImpressed_isTrue() {
     TestSubscriber<Boolean> subscriber =
@@ -313,4 +347,44 @@ public class ImpressionStorageClientTest {
         impressionStorageClient.isImpressed(vanillaCampaign).toFlowable().test();
     assertThat(subscriber2.getEvents().get(0)).containsExactly(true);
   }
+
+  @Test
+  public void storeImpression_fromConcurrentThreads_losesNoImpression() throws Exception {
+    StorageBackend backend = new InMemoryStorageBackend(new FakeClock(0));
+    ImpressionStorageClient client =
+        new ImpressionStorageClient(new ProtoStorageClient(backend, "impressions"));
+    int threadCount = 8;
+    int impressionsPerThread = 50;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> stores = new ArrayList<>();
+    for (int thread = 0; thread < threadCount; thread++) {
+      String prefix = "thread_" + thread + "_";
+      stores.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < impressionsPerThread; i++) {
+                  client
+                      .storeImpression(
+                          CampaignImpression.newBuilder().setCampaignId(prefix + i).build())
+                      .blockingAwait();
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> store : stores) {
+      store.get(10, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    CampaignImpressionList persisted =
+        new ImpressionStorageClient(new ProtoStorageClient(backend, "impressions"))
+            .getAllImpressions()
+            .blockingGet();
+    assertThat(persisted.getAlreadySeenCampaignsCount())
+        .isEqualTo(threadCount * impressionsPerThread);
+    assertThat(client.getAllImpressions().blockingGet()).isEqualTo(persisted);
+  }
 }
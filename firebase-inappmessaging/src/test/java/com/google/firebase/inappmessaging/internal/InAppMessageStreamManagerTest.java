@@ -26,12 +26,14 @@ import static com.google.firebase.inappmessaging.testutil.TestProtos.BANNER_MESS
 import static io.reactivex.BackpressureStrategy.BUFFER;
 import static io.reactivex.schedulers.Schedulers.trampoline;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import androidx.annotation.NonNull;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.concurrent.TestOnlyExecutors;
@@ -58,7 +60,9 @@ import io.reactivex.FlowableEmitter;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.reactivex.flowables.ConnectableFlowable;
+import io.reactivex.subjects.CompletableSubject;
 import io.reactivex.subscribers.TestSubscriber;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -181,16 +185,20 @@ public class InAppMessageStreamManagerTest {
   @Captor private ArgumentCaptor<InstallationIdResult> installationIdResultArgumentCaptor;
   @Captor private ArgumentCaptor<CampaignImpressionList> campaignImpressionListArgumentCaptor;
 
+  private CacheMemoryManager cacheMemoryManager;
+  private InAppMessageStreamManager streamManager;
   private FlowableEmitter<String> appForegroundEmitter;
-  private TestSubscriber<TriggeredInAppMessage> subscriber;
+  private TestSubscriber<List<TriggeredInAppMessage>> subscriber;
   private FlowableEmitter<String> analyticsEmitter;
   private FlowableEmitter<String> programmaticTriggerEmitter;
+  private FlowableEmitter<List<String>> programmaticBatchTriggerEmitter;
+  private ConnectableFlowable<String> appForegroundEventFlowable;
+  private ConnectableFlowable<String> programmaticTriggerFlowable;
+  private ConnectableFlowable<List<String>> programmaticBatchTriggerFlowable;
 
   private static List<TriggeredInAppMessage> getPlainValues(
-      TestSubscriber<TriggeredInAppMessage> subscriber) {
-    return subscriber.getEvents().get(0).stream()
-        .map(obj -> (TriggeredInAppMessage) obj)
-        .collect(Collectors.toList());
+      TestSubscriber<List<TriggeredInAppMessage>> subscriber) {
+    return subscriber.values().stream().flatMap(List::stream).collect(Collectors.toList());
   }
 
   private void assertExpectedGetFiamsCall() {
@@ -202,7 +210,7 @@ public class InAppMessageStreamManagerTest {
   }
 
   private static void assertExpectedMessageTriggered(
-      TestSubscriber<TriggeredInAppMessage> subscriber, TriggeredInAppMessage message) {
+      TestSubscriber<List<TriggeredInAppMessage>> subscriber, TriggeredInAppMessage message) {
     List<TriggeredInAppMessage> values = getPlainValues(subscriber);
     assertThat(values.size()).isEqualTo(1);
     TriggeredInAppMessage actual = values.get(0);
@@ -210,10 +218,37 @@ public class InAppMessageStreamManagerTest {
     assertThat(actual.getTriggeringEvent()).isEqualTo(message.getTriggeringEvent());
   }
 
+  private static TriggerGate openTriggerGate() {
+    TriggerGate triggerGate = new TriggerGate(0, new FakeClock(NOW));
+    triggerGate.setDisplayAttached(true);
+    return triggerGate;
+  }
+
+  private InAppMessageStreamManager newStreamManager() {
+    return new InAppMessageStreamManager(
+        appForegroundEventFlowable,
+        programmaticTriggerFlowable,
+        programmaticBatchTriggerFlowable,
+        campaignCacheClient,
+        new FakeClock(NOW),
+        mockApiClient,
+        analyticsEventsManager,
+        schedulers,
+        impressionStorageClient,
+        rateLimiterClient,
+        appForegroundRateLimit,
+        testDeviceHelper,
+        firebaseInstallations,
+        dataCollectionHelper,
+        abtIntegrationHelper,
+        TestOnlyExecutors.blocking(),
+        openTriggerGate());
+  }
+
   @Before
   public void setup() {
     MockitoAnnotations.initMocks(this);
-    ConnectableFlowable<String> appForegroundEventFlowable =
+    appForegroundEventFlowable =
         Flowable.<String>create(e -> appForegroundEmitter = e, BUFFER).publish();
     appForegroundEventFlowable.connect();
 
@@ -222,27 +257,20 @@ public class InAppMessageStreamManagerTest {
     analyticsEventsFlowable.connect();
     when(analyticsEventsManager.getAnalyticsEventsFlowable()).thenReturn(analyticsEventsFlowable);
 
-    ConnectableFlowable<String> programmaticTriggerFlowable =
+    programmaticTriggerFlowable =
         Flowable.<String>create(e -> programmaticTriggerEmitter = e, BUFFER).publish();
     programmaticTriggerFlowable.connect();
 
-    InAppMessageStreamManager streamManager =
-        new InAppMessageStreamManager(
-            appForegroundEventFlowable,
-            programmaticTriggerFlowable,
-            campaignCacheClient,
-            new FakeClock(NOW),
-            mockApiClient,
-            analyticsEventsManager,
-            schedulers,
-            impressionStorageClient,
-            rateLimiterClient,
-            appForegroundRateLimit,
-            testDeviceHelper,
-            firebaseInstallations,
-            dataCollectionHelper,
-            abtIntegrationHelper,
-            TestOnlyExecutors.blocking());
+    programmaticBatchTriggerFlowable =
+        Flowable.<List<String>>create(e -> programmaticBatchTriggerEmitter = e, BUFFER).publish();
+    programmaticBatchTriggerFlowable.connect();
+
+    when(impressionStorageClient.warmUp()).thenReturn(Completable.complete());
+    when(rateLimiterClient.warmUp()).thenReturn(Completable.complete());
+
+    cacheMemoryManager =
+        new CacheMemoryManager(campaignCacheClient, impressionStorageClient, rateLimiterClient);
+    streamManager = newStreamManager();
     subscriber = streamManager.createFirebaseInAppMessageStream().test();
     when(application.getApplicationContext()).thenReturn(application);
     when(dataCollectionHelper.isAutomaticDataCollectionEnabled()).thenReturn(true);
@@ -250,7 +278,7 @@ public class InAppMessageStreamManagerTest {
         .thenReturn(Completable.complete());
     when(rateLimiterClient.isRateLimited(appForegroundRateLimit)).thenReturn(Single.just(false));
     when(campaignCacheClient.get()).thenReturn(Maybe.empty());
-    when(campaignCacheClient.put(any(FetchEligibleCampaignsResponse.class)))
+    when(campaignCacheClient.put(any(FetchEligibleCampaignsResponse.class), anyBoolean()))
         .thenReturn(Completable.complete());
     when(impressionStorageClient.isImpressed(any(ThickContent.class)))
         .thenReturn(Single.just(false));
@@ -274,6 +302,50 @@ public class InAppMessageStreamManagerTest {
     assertExpectedMessageTriggered(subscriber, onForegroundTriggered);
   }
 
+  @Test
+  public void stream_sameResponse_reusesCampaignSchedule() throws InterruptedException {
+    when(mockApiClient.getFiams(any(), any())).thenReturn(campaignsResponse);
+
+    appForegroundEmitter.onNext(ON_FOREGROUND_EVENT_NAME);
+    waitForBlockingExecutor();
+    CampaignSchedule firstSchedule = streamManager.getCurrentCampaignSchedule();
+    analyticsEmitter.onNext(ANALYTICS_EVENT_NAME);
+    waitForBlockingExecutor();
+
+    assertThat(firstSchedule).isNotNull();
+    assertThat(streamManager.getCurrentCampaignSchedule()).isSameInstanceAs(firstSchedule);
+  }
+
+  @Test
+  public void stream_newResponse_buildsCampaignScheduleForIt() throws InterruptedException {
+    // Every fetch returns a new, equal response, which is not compared to the last one
+    when(mockApiClient.getFiams(any(), any()))
+        .thenAnswer(invocation -> campaignsResponse.toBuilder().build());
+
+    appForegroundEmitter.onNext(ON_FOREGROUND_EVENT_NAME);
+    waitForBlockingExecutor();
+    CampaignSchedule firstSchedule = streamManager.getCurrentCampaignSchedule();
+    analyticsEmitter.onNext(ANALYTICS_EVENT_NAME);
+    waitForBlockingExecutor();
+
+    assertThat(firstSchedule).isNotNull();
+    assertThat(streamManager.getCurrentCampaignSchedule()).isNotSameInstanceAs(firstSchedule);
+  }
+
+  @Test
+  public void trimMemory_dropsCampaignsOfLastTrigger() throws InterruptedException {
+    cacheMemoryManager.register(CacheMemoryManager.Tier.CAMPAIGNS, streamManager);
+    when(mockApiClient.getFiams(any(), any())).thenReturn(campaignsResponse);
+    appForegroundEmitter.onNext(ON_FOREGROUND_EVENT_NAME);
+    waitForBlockingExecutor();
+    assertThat(cacheMemoryManager.getFootprint().getCampaignBytes()).isGreaterThan(0L);
+
+    cacheMemoryManager.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+
+    assertThat(cacheMemoryManager.getFootprint().getCampaignBytes()).isEqualTo(0L);
+    verify(campaignCacheClient).trimMemory();
+  }
+
   @Test
   public void stream_onAppOpen_dataCollectionDisabled_doesNotFetch() throws InterruptedException {
     when(dataCollectionHelper.isAutomaticDataCollectionEnabled()).thenReturn(false);
@@ -283,7 +355,8 @@ public class InAppMessageStreamManagerTest {
 
     subscriber.assertNoValues();
     verify(mockApiClient, times(0)).getFiams(any(), any());
-    verify(campaignCacheClient, times(1)).put(InAppMessageStreamManager.cacheExpiringResponse());
+    verify(campaignCacheClient, times(1))
+        .put(InAppMessageStreamManager.cacheExpiringResponse(), false);
   }
 
   @Test
@@ -294,7 +367,8 @@ public class InAppMessageStreamManagerTest {
     waitForBlockingExecutor();
 
     verify(mockApiClient, times(0)).getFiams(any(), any());
-    verify(campaignCacheClient, times(1)).put(InAppMessageStreamManager.cacheExpiringResponse());
+    verify(campaignCacheClient, times(1))
+        .put(InAppMessageStreamManager.cacheExpiringResponse(), false);
   }
 
   @Test
@@ -328,7 +402,8 @@ public class InAppMessageStreamManagerTest {
     waitForBlockingExecutor();
 
     verify(mockApiClient, times(0)).getFiams(any(), any());
-    verify(campaignCacheClient, times(1)).put(InAppMessageStreamManager.cacheExpiringResponse());
+    verify(campaignCacheClient, times(1))
+        .put(InAppMessageStreamManager.cacheExpiringResponse(), false);
   }
 
   @Test
@@ -359,6 +434,45 @@ public class InAppMessageStreamManagerTest {
     assertExpectedMessageTriggered(subscriber, onAnalyticsTriggered);
   }
 
+  @Test
+  public void stream_onProgrammaticBatchTrigger_notifiesSubscriberOnce()
+      throws InterruptedException {
+    when(mockApiClient.getFiams(
+            installationIdResultArgumentCaptor.capture(),
+            campaignImpressionListArgumentCaptor.capture()))
+        .thenReturn(campaignsResponse);
+
+    programmaticBatchTriggerEmitter.onNext(Arrays.asList("some_other_event", ANALYTICS_EVENT_NAME));
+    waitForBlockingExecutor();
+
+    assertExpectedGetFiamsCall();
+    assertExpectedMessageTriggered(subscriber, onAnalyticsTriggered);
+  }
+
+  @Test
+  public void createStream_warmsUpImpressionAndRateLimitStores() {
+    verify(impressionStorageClient).warmUp();
+    verify(rateLimiterClient).warmUp();
+    verify(campaignCacheClient, never()).get();
+  }
+
+  @Test
+  public void stream_beforeStoresWarmUp_waitsForWarmUp() throws InterruptedException {
+    CompletableSubject impressionsLoaded = CompletableSubject.create();
+    when(impressionStorageClient.warmUp()).thenReturn(impressionsLoaded);
+    TestSubscriber<List<TriggeredInAppMessage>> warmingUpSubscriber =
+        newStreamManager().createFirebaseInAppMessageStream().test();
+    when(mockApiClient.getFiams(any(), any())).thenReturn(campaignsResponse);
+
+    analyticsEmitter.onNext(ANALYTICS_EVENT_NAME);
+    waitForBlockingExecutor();
+    warmingUpSubscriber.assertNoValues();
+
+    impressionsLoaded.onComplete();
+    waitForBlockingExecutor();
+    assertExpectedMessageTriggered(warmingUpSubscriber, onAnalyticsTriggered);
+  }
+
   @Test
   public void stream_onAppOpen_remainsOpen() throws InterruptedException {
     when(mockApiClient.getFiams(
@@ -662,7 +776,8 @@ public class InAppMessageStreamManagerTest {
 
   @Test
   public void stream_onCacheHit_notifiesCachedValue() throws InterruptedException {
-    when(campaignCacheClient.get()).thenReturn(Maybe.just(campaignsResponse));
+    when(campaignCacheClient.get())
+        .thenReturn(Maybe.just(IndexedCampaignCache.of(campaignsResponse, NOW)));
 
     appForegroundEmitter.onNext(ON_FOREGROUND_EVENT_NAME);
     waitForBlockingExecutor();
@@ -681,7 +796,7 @@ public class InAppMessageStreamManagerTest {
     waitForBlockingExecutor();
 
     assertExpectedGetFiamsCall();
-    verify(campaignCacheClient).put(campaignsResponse);
+    verify(campaignCacheClient).put(campaignsResponse, false);
   }
 
   @Test
@@ -709,7 +824,7 @@ public class InAppMessageStreamManagerTest {
     waitForBlockingExecutor();
 
     assertExpectedGetFiamsCall();
-    verify(campaignCacheClient, times(0)).put(campaignsResponse);
+    verify(campaignCacheClient, times(0)).put(campaignsResponse, false);
   }
 
   @Test
@@ -724,7 +839,7 @@ public class InAppMessageStreamManagerTest {
     waitForBlockingExecutor();
 
     assertExpectedGetFiamsCall();
-    verify(campaignCacheClient, times(0)).put(any());
+    verify(campaignCacheClient, times(0)).put(any(), anyBoolean());
   }
 
   @Test
@@ -739,7 +854,7 @@ public class InAppMessageStreamManagerTest {
     waitForBlockingExecutor();
 
     assertExpectedGetFiamsCall();
-    verify(campaignCacheClient, times(0)).put(any());
+    verify(campaignCacheClient, times(0)).put(any(), anyBoolean());
   }
 
   @Test
@@ -777,7 +892,7 @@ public class InAppMessageStreamManagerTest {
 
   @Test
   public void stream_onCacheWriteFailure_AbsorbsError() throws InterruptedException {
-    when(campaignCacheClient.put(any(FetchEligibleCampaignsResponse.class)))
+    when(campaignCacheClient.put(any(FetchEligibleCampaignsResponse.class), anyBoolean()))
         .thenReturn(Completable.error(new NullPointerException()));
     when(mockApiClient.getFiams(
             installationIdResultArgumentCaptor.capture(),
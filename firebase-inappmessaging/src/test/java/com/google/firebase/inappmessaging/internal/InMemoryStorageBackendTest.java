@@ -0,0 +1,75 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InMemoryStorageBackendTest {
+  private static final long NOW = 100;
+
+  private final InMemoryStorageBackend backend = new InMemoryStorageBackend(new FakeClock(NOW));
+
+  @Test
+  public void read_afterWrite_returnsBytes() {
+    backend.write("a", new byte[] {1, 2, 3});
+
+    assertThat(backend.read("a")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(backend.lastModified("a")).isEqualTo(NOW);
+  }
+
+  @Test
+  public void read_withoutRecord_isNull() {
+    assertThat(backend.read("a")).isNull();
+    assertThat(backend.map("a")).isNull();
+    assertThat(backend.lastModified("a")).isEqualTo(0);
+  }
+
+  @Test
+  public void write_copiesBytes() {
+    byte[] bytes = {1, 2, 3};
+
+    backend.write("a", bytes);
+    bytes[0] = 9;
+
+    assertThat(backend.read("a")).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void readPrevious_afterWrites_returnsReplacedBytes() {
+    backend.write("a", new byte[] {1, 2, 3});
+    assertThat(backend.readPrevious("a")).isNull();
+
+    backend.write("a", new byte[] {4});
+
+    assertThat(backend.readPrevious("a")).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void map_whenRecordIsReplaced_keepsPreviousContents() {
+    backend.write("a", new byte[] {1, 2, 3});
+    ByteBuffer mapped = backend.map("a");
+    backend.write("a", new byte[] {4});
+
+    assertThat(mapped.isReadOnly()).isTrue();
+    assertThat(mapped).isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
+}
@@ -0,0 +1,157 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.inappmessaging.CommonTypesProto.Trigger.ON_FOREGROUND;
+
+import com.google.firebase.inappmessaging.CommonTypesProto.Event;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class IndexedCampaignCacheTest {
+  private static final String FOREGROUND = InAppMessageStreamManager.ON_FOREGROUND;
+  private static final List<String> PURCHASE = Collections.singletonList("purchase");
+
+  private static final ThickContent ON_PURCHASE = campaign("purchase", 100, 200, "purchase");
+  private static final ThickContent ON_OPEN = foregroundCampaign("open", 150, 300);
+  private static final ThickContent LATER_ON_PURCHASE = campaign("later", 250, 400, "purchase");
+  private static final ThickContent TEST_CAMPAIGN =
+      ThickContent.newBuilder(campaign("test", 0, 0, "purchase")).setIsTestCampaign(true).build();
+  private static final ThickContent NO_PAYLOAD = ThickContent.getDefaultInstance();
+
+  private final FetchEligibleCampaignsResponse response =
+      FetchEligibleCampaignsResponse.newBuilder()
+          .addMessages(ON_PURCHASE)
+          .addMessages(ON_OPEN)
+          .addMessages(LATER_ON_PURCHASE)
+          .addMessages(TEST_CAMPAIGN)
+          .addMessages(NO_PAYLOAD)
+          .setExpirationEpochTimestampMillis(1000)
+          .build();
+
+  private final IndexedCampaignCache cache = IndexedCampaignCache.of(response, 42);
+
+  @Test
+  public void decode_readsHeader() {
+    assertThat(cache.getWrittenAtMillis()).isEqualTo(42L);
+    assertThat(cache.getExpirationEpochTimestampMillis()).isEqualTo(1000L);
+    assertThat(cache.getCampaignCount()).isEqualTo(5);
+  }
+
+  @Test
+  public void getTriggeredCampaigns_returnsActiveTriggeredCampaignsInOrder() {
+    assertThat(cache.getTriggeredCampaigns(PURCHASE, 150, false)).containsExactly(ON_PURCHASE);
+    assertThat(cache.getTriggeredCampaigns(PURCHASE, 300, false))
+        .containsExactly(LATER_ON_PURCHASE);
+    assertThat(cache.getTriggeredCampaigns(Arrays.asList("purchase", FOREGROUND), 160, false))
+        .containsExactly(ON_PURCHASE, ON_OPEN)
+        .inOrder();
+  }
+
+  @Test
+  public void getTriggeredCampaigns_matchesContainsTriggeringCondition() {
+    for (String event : Arrays.asList("purchase", FOREGROUND, "", "UNKNOWN_TRIGGER", "other")) {
+      for (long now = 0; now < 450; now += 10) {
+        List<ThickContent> expected =
+            new ArrayList<>(new CampaignSchedule(response).getActiveCampaigns(now));
+        expected.removeIf(
+            content -> !InAppMessageStreamManager.containsTriggeringCondition(event, content));
+
+        assertThat(cache.getTriggeredCampaigns(Collections.singletonList(event), now, false))
+            .containsExactlyElementsIn(expected)
+            .inOrder();
+      }
+    }
+  }
+
+  @Test
+  public void getTriggeredCampaigns_includingInactive_returnsTestCampaignsOnForeground() {
+    assertThat(cache.getTriggeredCampaigns(Collections.singletonList(FOREGROUND), 0, true))
+        .containsExactly(ON_OPEN, TEST_CAMPAIGN)
+        .inOrder();
+  }
+
+  @Test
+  public void getTriggeredCampaigns_parsesEachCampaignOnce() {
+    ThickContent first = cache.getTriggeredCampaigns(PURCHASE, 150, false).get(0);
+
+    assertThat(cache.getTriggeredCampaigns(PURCHASE, 160, false).get(0)).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void getNextBoundaryMillis_returnsNextActivationOrExpiry() {
+    assertThat(cache.getNextBoundaryMillis(1)).isEqualTo(101L);
+    assertThat(cache.getNextBoundaryMillis(101)).isEqualTo(151L);
+    assertThat(cache.getNextBoundaryMillis(300)).isEqualTo(400L);
+    assertThat(cache.getNextBoundaryMillis(400)).isEqualTo(CampaignSchedule.NO_BOUNDARY);
+  }
+
+  @Test
+  public void decode_withTruncatedBuffer_returnsNull() {
+    byte[] encoded = IndexedCampaignCache.encode(response, 42);
+
+    for (int length = 0; length < encoded.length; length++) {
+      IndexedCampaignCache truncated =
+          IndexedCampaignCache.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, length)));
+      assertThat(truncated).isNull();
+    }
+  }
+
+  @Test
+  public void decode_withLegacyProto_returnsNull() {
+    ByteBuffer legacy = ByteBuffer.wrap(response.toByteArray());
+
+    assertThat(IndexedCampaignCache.isIndexed(legacy)).isFalse();
+    assertThat(IndexedCampaignCache.decode(legacy)).isNull();
+  }
+
+  private static ThickContent campaign(String id, long start, long end, String event) {
+    return ThickContent.newBuilder()
+        .setVanillaPayload(
+            VanillaCampaignPayload.newBuilder()
+                .setCampaignId(id)
+                .setCampaignStartTimeMillis(start)
+                .setCampaignEndTimeMillis(end))
+        .addTriggeringConditions(
+            TriggeringCondition.newBuilder().setEvent(Event.newBuilder().setName(event)))
+        .build();
+  }
+
+  private static ThickContent foregroundCampaign(String id, long start, long end) {
+    return ThickContent.newBuilder()
+        .setVanillaPayload(
+            VanillaCampaignPayload.newBuilder()
+                .setCampaignId(id)
+                .setCampaignStartTimeMillis(start)
+                .setCampaignEndTimeMillis(end))
+        .addTriggeringConditions(TriggeringCondition.newBuilder().setFiamTrigger(ON_FOREGROUND))
+        .build();
+  }
+}
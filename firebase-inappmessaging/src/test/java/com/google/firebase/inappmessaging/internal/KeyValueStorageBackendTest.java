@@ -0,0 +1,162 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.app.Application;
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class KeyValueStorageBackendTest {
+  private static final String FILE_NAME = "key_value_store";
+  private static final long NOW = 100;
+
+  private Application application;
+  private KeyValueStorageBackend backend;
+
+  @Before
+  public void setup() {
+    application = ApplicationProvider.getApplicationContext();
+    backend = new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW));
+  }
+
+  @Test
+  public void read_afterWrite_returnsBytes() throws IOException {
+    backend.write("a", new byte[] {1, 2, 3});
+
+    assertThat(backend.read("a")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(backend.map("a")).isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+    assertThat(backend.lastModified("a")).isEqualTo(NOW);
+  }
+
+  @Test
+  public void read_withoutRecord_isNull() {
+    assertThat(backend.read("a")).isNull();
+    assertThat(backend.map("a")).isNull();
+  }
+
+  @Test
+  public void read_fromNewInstance_returnsEveryRecordOfTheFile() throws IOException {
+    backend.write("a", new byte[] {1, 2, 3});
+    backend.write("b", new byte[] {4});
+    backend.write("a", new byte[] {5, 6});
+
+    KeyValueStorageBackend reopened =
+        new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW));
+
+    assertThat(reopened.read("a")).isEqualTo(new byte[] {5, 6});
+    assertThat(reopened.read("b")).isEqualTo(new byte[] {4});
+    assertThat(reopened.lastModified("b")).isEqualTo(NOW);
+  }
+
+  @Test
+  public void map_whenRecordIsReplaced_keepsPreviousContents() throws IOException {
+    backend.write("a", new byte[] {1, 2, 3});
+    ByteBuffer mapped = backend.map("a");
+    backend.write("a", new byte[] {4});
+
+    assertThat(mapped).isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void readPrevious_fromNewInstance_returnsRecordsOfReplacedFile() throws IOException {
+    backend.write("a", new byte[] {1, 2, 3});
+    backend.write("a", new byte[] {4});
+
+    KeyValueStorageBackend reopened =
+        new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW));
+
+    assertThat(backend.readPrevious("a")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(reopened.readPrevious("a")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(reopened.readPrevious("b")).isNull();
+  }
+
+  @Test
+  public void read_withCorruptFile_isNull() throws IOException {
+    try (FileOutputStream output = application.openFileOutput(FILE_NAME, Context.MODE_PRIVATE)) {
+      output.write(new byte[] {0, 0, 0, 1, 0, 1, 'a', 0, 0});
+    }
+
+    assertThat(backend.read("a")).isNull();
+  }
+
+  @Test
+  public void read_withCorruptFile_returnsRecordsOfReplacedFile() throws IOException {
+    backend.write("a", new byte[] {1, 2, 3});
+    backend.write("a", new byte[] {4});
+    try (FileOutputStream output = application.openFileOutput(FILE_NAME, Context.MODE_PRIVATE)) {
+      output.write(new byte[] {0, 0, 0, 1, 0, 1, 'a', 0, 0});
+    }
+
+    KeyValueStorageBackend reopened =
+        new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW));
+
+    assertThat(reopened.read("a")).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void read_withOnlyReplacedFile_returnsItsRecords() throws IOException {
+    backend.write("a", new byte[] {1, 2, 3});
+    backend.write("a", new byte[] {4});
+    // As left by a write that died between moving the file aside and replacing it
+    assertThat(new File(application.getFilesDir(), FILE_NAME).delete()).isTrue();
+
+    KeyValueStorageBackend reopened =
+        new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW));
+
+    assertThat(reopened.read("a")).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test
+  public void read_withLegacyRecord_importsIt() throws IOException {
+    InMemoryStorageBackend legacyBackend = new InMemoryStorageBackend(new FakeClock(NOW - 1));
+    legacyBackend.write("a", new byte[] {1, 2, 3});
+    backend = new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW), legacyBackend);
+
+    assertThat(backend.read("a")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(backend.lastModified("a")).isEqualTo(NOW - 1);
+    assertThat(backend.read("b")).isNull();
+  }
+
+  @Test
+  public void write_afterImport_writesLegacyRecordsToFile() throws IOException {
+    InMemoryStorageBackend legacyBackend = new InMemoryStorageBackend(new FakeClock(NOW));
+    legacyBackend.write("a", new byte[] {1, 2, 3});
+    legacyBackend.write("b", new byte[] {4});
+    backend = new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW), legacyBackend);
+    backend.read("a");
+
+    backend.write("b", new byte[] {5});
+    KeyValueStorageBackend reopened =
+        new KeyValueStorageBackend(application, FILE_NAME, new FakeClock(NOW));
+
+    assertThat(reopened.read("a")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(reopened.read("b")).isEqualTo(new byte[] {5});
+    assertThat(backend.readPrevious("b")).isEqualTo(new byte[] {4});
+  }
+}
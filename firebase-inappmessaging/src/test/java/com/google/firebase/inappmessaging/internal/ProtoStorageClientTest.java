@@ -15,22 +15,27 @@
 package com.google.firebase.inappmessaging.internal;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import android.app.Application;
-import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.inappmessaging.internal.ProtoStorageClient.TimestampedMessage;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
 import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
-import com.google.protobuf.InvalidProtocolBufferException;
-import com.google.protobuf.Parser;
 import io.reactivex.observers.TestObserver;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,27 +48,24 @@ import org.robolectric.annotation.Config;
 public class ProtoStorageClientTest {
   private static final String FILE_NAME = "file";
   private final FetchEligibleCampaignsResponse response =
-      FetchEligibleCampaignsResponse.getDefaultInstance();
+      FetchEligibleCampaignsResponse.newBuilder().setExpirationEpochTimestampMillis(42).build();
+  private final FetchEligibleCampaignsResponse response2 =
+      FetchEligibleCampaignsResponse.newBuilder().setExpirationEpochTimestampMillis(43).build();
   private ProtoStorageClient protoStorageClient;
-  @Mock private Application application;
-  @Mock private FileOutputStream fileOutputStream;
-  @Mock private FileInputStream fileInputStream;
-  @Mock private Parser<FetchEligibleCampaignsResponse> parser;
+  @Mock private StorageBackend backend;
 
   @Before
   public void setup() throws IOException {
     initMocks(this);
-    protoStorageClient = new ProtoStorageClient(application, FILE_NAME);
-    when(application.openFileOutput(FILE_NAME, Context.MODE_PRIVATE)).thenReturn(fileOutputStream);
-    when(application.openFileInput(FILE_NAME)).thenReturn(fileInputStream);
-    when(parser.parseFrom(fileInputStream)).thenReturn(response);
+    protoStorageClient = new ProtoStorageClient(backend, FILE_NAME);
+    when(backend.read(FILE_NAME)).thenReturn(response.toByteArray());
   }
 
   @Test
   public void write_noFailure_writesBytes() throws IOException {
     protoStorageClient.write(response).subscribe();
 
-    verify(fileOutputStream).write(response.toByteArray());
+    verify(backend).write(FILE_NAME, RecordHeader.wrap(response.toByteArray()));
   }
 
   @Test
@@ -75,102 +77,342 @@ public class ProtoStorageClientTest {
 
   @Test
   public void write_onFailure_notfiedError() throws IOException {
-    when(application.openFileOutput(FILE_NAME, Context.MODE_PRIVATE))
-        .thenThrow(new FileNotFoundException());
+    doThrow(new IOException()).when(backend).write(eq(FILE_NAME), any(byte[].class));
 
     TestObserver<Void> subscriber = protoStorageClient.write(response).test();
 
-    subscriber.assertError(FileNotFoundException.class);
+    subscriber.assertError(IOException.class);
   }
 
   @Test
-  public void write_noFailure_closesStream() throws IOException {
-    protoStorageClient.write(response).subscribe();
+  public void read_afterWrite_returnsMessage() {
+    ProtoStorageClient memoryStorageClient =
+        new ProtoStorageClient(new InMemoryStorageBackend(new FakeClock(0)), FILE_NAME);
+
+    memoryStorageClient.write(response).blockingAwait();
 
-    verify(fileOutputStream).close();
+    assertThat(memoryStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response);
   }
 
   @Test
-  public void write_withFailureOpeningFile_doesNotCloseStream() throws IOException {
-    when(application.openFileOutput(FILE_NAME, Context.MODE_PRIVATE))
-        .thenThrow(new FileNotFoundException());
+  public void read_noFailure_readsBytes() {
+    TestObserver<FetchEligibleCampaignsResponse> subscriber =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
 
-    protoStorageClient.write(response).subscribe();
+    assertThat(subscriber.getEvents().get(0)).containsExactly(response);
+  }
 
-    verify(fileOutputStream, times(0)).close();
+  @Test
+  public void read_onFailure_propagatesException() throws IOException {
+    when(backend.read(FILE_NAME)).thenThrow(new NullPointerException());
+
+    TestObserver<FetchEligibleCampaignsResponse> subscriber =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
+
+    subscriber.assertError(NullPointerException.class);
   }
 
   @Test
-  public void write_withFailureWriting_closesStream() throws IOException {
-    doThrow(new IOException()).when(fileOutputStream).write(response.toByteArray());
+  public void read_withoutRecord_isEmpty() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(null);
 
-    protoStorageClient.write(response).subscribe();
+    TestObserver<FetchEligibleCampaignsResponse> subscriber =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
 
-    verify(fileOutputStream).close();
+    subscriber.assertNoErrors();
+    subscriber.assertNoValues();
   }
 
   @Test
-  public void read_noFailure_readsBytes() {
+  public void read_onParsingException_absorbsError() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(new byte[] {(byte) 0xff});
+
     TestObserver<FetchEligibleCampaignsResponse> subscriber =
-        protoStorageClient.read(parser).test();
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
+
+    subscriber.assertNoErrors();
+    subscriber.assertNoValues();
+  }
+
+  @Test
+  public void read_afterRead_readsBackendOnce() throws IOException {
+    protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response);
+    verify(backend, times(1)).read(FILE_NAME);
+  }
+
+  @Test
+  public void read_afterWrite_returnsWrittenMessageWithoutReadingBackend() throws IOException {
+    protoStorageClient.write(response2).blockingAwait();
+
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response2);
+    verify(backend, never()).read(FILE_NAME);
+  }
+
+  @Test
+  public void read_afterRead_returnsSameMessage() {
+    FetchEligibleCampaignsResponse first =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isSameInstanceAs(first);
+  }
+
+  @Test
+  public void read_afterWrite_returnsWrittenInstance() {
+    protoStorageClient.write(response2).blockingAwait();
+
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isSameInstanceAs(response2);
+  }
+
+  @Test
+  public void read_withCorruptRecord_readsPreviousVersionOnce() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(corrupt(RecordHeader.wrap(response2.toByteArray())));
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(response.toByteArray()));
+
+    protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response);
+    verify(backend, times(1)).readPrevious(FILE_NAME);
+  }
+
+  @Test
+  public void read_afterFailedWrite_returnsPreviousMessage() throws IOException {
+    protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+    doThrow(new IOException()).when(backend).write(eq(FILE_NAME), any(byte[].class));
+
+    protoStorageClient.write(response2).test().assertError(IOException.class);
+
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response);
+  }
+
+  @Test
+  public void read_afterWriteBytes_readsBackendAgain() throws IOException {
+    protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+    protoStorageClient.write(new byte[] {1, 2, 3}).blockingAwait();
+
+    protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+
+    verify(backend, times(2)).read(FILE_NAME);
+  }
+
+  @Test
+  public void read_duringWrite_returnsPreviousMessageWithoutWaiting() throws Exception {
+    protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+    CountDownLatch writeStarted = new CountDownLatch(1);
+    CountDownLatch finishWrite = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              writeStarted.countDown();
+              finishWrite.await();
+              return null;
+            })
+        .when(backend)
+        .write(eq(FILE_NAME), any(byte[].class));
+    Thread writer = new Thread(() -> protoStorageClient.write(response2).blockingAwait());
+    writer.start();
+    writeStarted.await();
+
+    FetchEligibleCampaignsResponse read =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet();
+    finishWrite.countDown();
+    writer.join();
+
+    assertThat(read).isEqualTo(response);
+    assertThat(protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response2);
+  }
+
+  @Test
+  public void read_withCorruptRecord_readsPreviousVersion() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(corrupt(RecordHeader.wrap(response2.toByteArray())));
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(response.toByteArray()));
+
+    TestObserver<FetchEligibleCampaignsResponse> subscriber =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
 
     assertThat(subscriber.getEvents().get(0)).containsExactly(response);
   }
 
   @Test
-  public void read_onFailure_propagatesException() throws IOException {
-    when(application.openFileInput(FILE_NAME)).thenThrow(new NullPointerException());
+  public void read_withTruncatedRecord_readsPreviousVersion() throws IOException {
+    byte[] record = RecordHeader.wrap(response2.toByteArray());
+    when(backend.read(FILE_NAME)).thenReturn(Arrays.copyOf(record, record.length - 1));
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(response.toByteArray()));
 
     TestObserver<FetchEligibleCampaignsResponse> subscriber =
-        protoStorageClient.read(parser).test();
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
 
-    subscriber.assertError(NullPointerException.class);
+    assertThat(subscriber.getEvents().get(0)).containsExactly(response);
   }
 
   @Test
-  public void read_onFileNotFound_absorbsError() throws IOException {
-    when(application.openFileInput(FILE_NAME)).thenThrow(new FileNotFoundException());
+  public void read_withCorruptRecordAndPreviousVersion_isEmpty() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(corrupt(RecordHeader.wrap(response2.toByteArray())));
+    when(backend.readPrevious(FILE_NAME))
+        .thenReturn(corrupt(RecordHeader.wrap(response.toByteArray())));
 
     TestObserver<FetchEligibleCampaignsResponse> subscriber =
-        protoStorageClient.read(parser).test();
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
 
     subscriber.assertNoErrors();
     subscriber.assertNoValues();
   }
 
   @Test
-  public void read_onParsingException_absorbsError() throws IOException {
-    when(parser.parseFrom(fileInputStream)).thenThrow(new InvalidProtocolBufferException(""));
+  public void read_withEmptyRecord_readsPreviousVersion() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(new byte[0]);
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(response.toByteArray()));
+
+    TestObserver<FetchEligibleCampaignsResponse> subscriber =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
+
+    assertThat(subscriber.getEvents().get(0)).containsExactly(response);
+  }
+
+  @Test
+  public void read_withEmptyRecordAndNoPreviousVersion_readsEmptyMessage() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(new byte[0]);
 
     TestObserver<FetchEligibleCampaignsResponse> subscriber =
-        protoStorageClient.read(parser).test();
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
+
+    assertThat(subscriber.getEvents().get(0))
+        .containsExactly(FetchEligibleCampaignsResponse.getDefaultInstance());
+  }
+
+  @Test
+  public void read_withoutRecord_returnsPreviousVersion() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(null);
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(response.toByteArray()));
+
+    TestObserver<FetchEligibleCampaignsResponse> subscriber =
+        protoStorageClient.read(FetchEligibleCampaignsResponse.parser()).test();
+
+    assertThat(subscriber.getEvents().get(0)).containsExactly(response);
+  }
+
+  @Test
+  public void read_withOnlyBackupFile_returnsPreviousVersion() {
+    Application application = ApplicationProvider.getApplicationContext();
+    ProtoStorageClient fileStorageClient =
+        new ProtoStorageClient(new FileStorageBackend(application), FILE_NAME);
+    fileStorageClient.write(response).blockingAwait();
+    fileStorageClient.write(response2).blockingAwait();
+    // As left by a write that died between moving the record to its backup and replacing it
+    assertThat(new File(application.getFilesDir(), FILE_NAME).delete()).isTrue();
+
+    ProtoStorageClient reopened =
+        new ProtoStorageClient(new FileStorageBackend(application), FILE_NAME);
+
+    assertThat(reopened.read(FetchEligibleCampaignsResponse.parser()).blockingGet())
+        .isEqualTo(response);
+  }
+
+  @Test
+  public void readTimestamped_afterTimestampedWrite_returnsMessageAndTimestamp() {
+    ProtoStorageClient memoryStorageClient =
+        new ProtoStorageClient(new InMemoryStorageBackend(new FakeClock(0)), FILE_NAME);
+
+    memoryStorageClient.write(response, 1234L).blockingAwait();
+    TimestampedMessage<FetchEligibleCampaignsResponse> read =
+        memoryStorageClient.readTimestamped(FetchEligibleCampaignsResponse.parser()).blockingGet();
+
+    assertThat(read.getMessage()).isEqualTo(response);
+    assertThat(read.getWrittenAtMillis()).isEqualTo(1234L);
+  }
+
+  @Test
+  public void readTimestamped_afterWriteWithoutTimestamp_usesBackendModificationTime() {
+    when(backend.lastModified(FILE_NAME)).thenReturn(5678L);
+
+    TimestampedMessage<FetchEligibleCampaignsResponse> read =
+        protoStorageClient.readTimestamped(FetchEligibleCampaignsResponse.parser()).blockingGet();
+
+    assertThat(read.getMessage()).isEqualTo(response);
+    assertThat(read.getWrittenAtMillis()).isEqualTo(5678L);
+  }
+
+  @Test
+  public void readTimestamped_withTruncatedHeader_isEmpty() throws IOException {
+    when(backend.read(FILE_NAME)).thenReturn(new byte[] {0, 1, 2});
+
+    TestObserver<TimestampedMessage<FetchEligibleCampaignsResponse>> subscriber =
+        protoStorageClient.readTimestamped(FetchEligibleCampaignsResponse.parser()).test();
 
     subscriber.assertNoErrors();
     subscriber.assertNoValues();
   }
 
   @Test
-  public void read_noFailure_closesStream() throws IOException {
-    protoStorageClient.read(parser).subscribe();
+  public void writeBytes_noFailure_writesToBackend() throws IOException {
+    protoStorageClient.write(new byte[] {1, 2, 3}).blockingAwait();
+
+    verify(backend).write(FILE_NAME, RecordHeader.wrap(new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void map_withRecord_returnsPayload() throws IOException {
+    when(backend.map(FILE_NAME))
+        .thenReturn(ByteBuffer.wrap(RecordHeader.wrap(new byte[] {1, 2, 3})).asReadOnlyBuffer());
+
+    assertThat(protoStorageClient.map().blockingGet())
+        .isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void map_withTruncatedRecord_returnsPreviousPayload() throws IOException {
+    byte[] record = RecordHeader.wrap(new byte[] {4, 5, 6});
+    when(backend.map(FILE_NAME))
+        .thenReturn(ByteBuffer.wrap(Arrays.copyOf(record, record.length - 1)).asReadOnlyBuffer());
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(new byte[] {1, 2, 3}));
+
+    assertThat(protoStorageClient.map().blockingGet())
+        .isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void map_withEmptyRecord_returnsPreviousPayload() throws IOException {
+    when(backend.map(FILE_NAME)).thenReturn(ByteBuffer.allocate(0).asReadOnlyBuffer());
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(new byte[] {1, 2, 3}));
 
-    verify(fileInputStream).close();
+    assertThat(protoStorageClient.map().blockingGet())
+        .isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
   }
 
   @Test
-  public void read_withFailureOpeningFile_doesNotCloseStream() throws IOException {
-    when(application.openFileInput(FILE_NAME)).thenThrow(new FileNotFoundException());
+  public void map_withoutRecord_returnsPreviousPayload() throws IOException {
+    when(backend.readPrevious(FILE_NAME)).thenReturn(RecordHeader.wrap(new byte[] {1, 2, 3}));
+
+    assertThat(protoStorageClient.map().blockingGet())
+        .isEqualTo(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
 
-    protoStorageClient.read(parser).subscribe();
+  @Test
+  public void map_withRecordWithoutHeader_returnsBackendView() throws IOException {
+    ByteBuffer view = ByteBuffer.wrap(new byte[] {1, 2, 3}).asReadOnlyBuffer();
+    when(backend.map(FILE_NAME)).thenReturn(view);
 
-    verify(fileInputStream, times(0)).close();
+    assertThat(protoStorageClient.map().blockingGet()).isSameInstanceAs(view);
   }
 
   @Test
-  public void read_withFailureReading_closesStream() throws IOException {
-    doThrow(new InvalidProtocolBufferException("")).when(parser).parseFrom(fileInputStream);
+  public void map_withoutRecord_isEmpty() {
+    TestObserver<ByteBuffer> subscriber = protoStorageClient.map().test();
 
-    protoStorageClient.read(parser).subscribe();
+    subscriber.assertNoErrors();
+    subscriber.assertNoValues();
+  }
 
-    verify(fileInputStream).close();
+  private static byte[] corrupt(byte[] record) {
+    record[record.length - 1] ^= 1;
+    return record;
   }
 }
@@ -122,4 +122,19 @@ public class ProxyAnalyticsConnectorTest {
     verify(mockConnector, never()).registerAnalyticsConnectorListener("fiam", listener);
     verify(mockHandle, never()).registerEventNames(Collections.singleton("hello"));
   }
+
+  @Test
+  public void registerEventNames_beforeConnectorLoads_shouldPropagateOnlyLatestEventNames() {
+    TestDeferred<AnalyticsConnector> testDeferred = new TestDeferred<>();
+    ProxyAnalyticsConnector proxy = new ProxyAnalyticsConnector(testDeferred);
+    AnalyticsConnectorListener listener = (i, bundle) -> {};
+
+    AnalyticsConnectorHandle handle = proxy.registerAnalyticsConnectorListener("fiam", listener);
+    handle.registerEventNames(Collections.singleton("hello"));
+    handle.registerEventNames(Collections.singleton("world"));
+    testDeferred.provide(mockConnector);
+
+    verify(mockHandle, times(1)).registerEventNames(Collections.singleton("world"));
+    verify(mockHandle, never()).registerEventNames(Collections.singleton("hello"));
+  }
 }
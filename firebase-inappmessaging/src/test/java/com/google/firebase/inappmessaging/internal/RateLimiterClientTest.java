@@ -28,8 +28,16 @@ import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.observers.TestObserver;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -210,6 +218,30 @@ public class RateLimiterClientTest {
     testObserver.assertError(IOException.class);
   }
 
+  @Test
+  public void warmUp_noErrors_laterChecksUseMemory() {
+    AtomicInteger reads = new AtomicInteger();
+    when(storageClient.read(any(Parser.class)))
+        .thenReturn(
+            Maybe.fromCallable(
+                () -> {
+                  reads.incrementAndGet();
+                  return storedRateLimit;
+                }));
+
+    rateLimiterClient.warmUp().subscribe();
+    rateLimiterClient.isRateLimited(rateLimit).test();
+
+    assertThat(reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void warmUp_readError_completes() {
+    when(storageClient.read(any(Parser.class))).thenReturn(Maybe.error(new IOException()));
+
+    rateLimiterClient.warmUp().test().assertComplete();
+  }
+
   @Test
   public void isRateLimited_ifRateLimited_isTrue() {
     rateLimiterClient.increment(rateLimit).subscribe();
@@ -262,4 +294,39 @@ public class RateLimiterClientTest {
 
     testObserver.assertError(IOException.class);
   }
+
+  @Test
+  public void increment_fromConcurrentThreads_countsEveryIncrement() throws Exception {
+    StorageBackend backend = new InMemoryStorageBackend(new FakeClock(0));
+    RateLimiterClient client =
+        new RateLimiterClient(new ProtoStorageClient(backend, "rate_limits"), new FakeClock(NOW));
+    int threadCount = 8;
+    int incrementsPerThread = 50;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    List<Future<?>> increments = new ArrayList<>();
+    for (int thread = 0; thread < threadCount; thread++) {
+      increments.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < incrementsPerThread; i++) {
+                  client.increment(rateLimit).blockingAwait();
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> increment : increments) {
+      increment.get(10, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    RateLimitProto.RateLimit persisted =
+        new ProtoStorageClient(backend, "rate_limits")
+            .read(RateLimitProto.RateLimit.parser())
+            .blockingGet();
+    assertThat(persisted.getLimitsOrThrow(LIMITER_KEY).getValue())
+        .isEqualTo((long) threadCount * incrementsPerThread);
+  }
 }
@@ -0,0 +1,93 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RecordHeaderTest {
+  private static final byte[] PAYLOAD = {8, 42, 16, 7};
+
+  @Test
+  public void unwrap_afterWrap_returnsPayload() {
+    byte[] record = RecordHeader.wrap(PAYLOAD);
+
+    assertThat(record).hasLength(RecordHeader.HEADER_BYTES + PAYLOAD.length);
+    assertThat(RecordHeader.unwrap(ByteBuffer.wrap(record), true))
+        .isEqualTo(ByteBuffer.wrap(PAYLOAD));
+  }
+
+  @Test
+  public void unwrap_withEmptyPayload_returnsEmptyBuffer() {
+    ByteBuffer payload = RecordHeader.unwrap(ByteBuffer.wrap(RecordHeader.wrap(new byte[0])), true);
+
+    assertThat(payload.remaining()).isEqualTo(0);
+  }
+
+  @Test
+  public void unwrap_withDirectBuffer_verifiesChecksum() {
+    byte[] record = RecordHeader.wrap(PAYLOAD);
+    ByteBuffer direct = ByteBuffer.allocateDirect(record.length);
+    direct.put(record).flip();
+
+    assertThat(RecordHeader.unwrap(direct, true)).isEqualTo(ByteBuffer.wrap(PAYLOAD));
+  }
+
+  @Test
+  public void unwrap_withCorruptPayload_isNull() {
+    byte[] record = RecordHeader.wrap(PAYLOAD);
+    record[record.length - 1] ^= 1;
+
+    assertThat(RecordHeader.unwrap(ByteBuffer.wrap(record), true)).isNull();
+  }
+
+  @Test
+  public void unwrap_withCorruptPayloadWithoutVerifyingChecksum_returnsPayload() {
+    byte[] record = RecordHeader.wrap(PAYLOAD);
+    record[record.length - 1] ^= 1;
+
+    assertThat(RecordHeader.unwrap(ByteBuffer.wrap(record), false)).isNotNull();
+  }
+
+  @Test
+  public void unwrap_withTruncatedRecord_isNull() {
+    byte[] record = RecordHeader.wrap(PAYLOAD);
+
+    assertThat(RecordHeader.unwrap(ByteBuffer.wrap(record, 0, record.length - 1), false)).isNull();
+    assertThat(RecordHeader.unwrap(ByteBuffer.wrap(Arrays.copyOf(record, 6)), false)).isNull();
+  }
+
+  @Test
+  public void unwrap_withNewerFormatVersion_isNull() {
+    byte[] record = RecordHeader.wrap(PAYLOAD);
+    record[4] = RecordHeader.FORMAT_VERSION + 1;
+
+    assertThat(RecordHeader.unwrap(ByteBuffer.wrap(record), false)).isNull();
+  }
+
+  @Test
+  public void unwrap_withoutHeader_returnsRecord() {
+    ByteBuffer record = ByteBuffer.wrap(PAYLOAD);
+
+    assertThat(RecordHeader.unwrap(record, true)).isSameInstanceAs(record);
+  }
+}
@@ -172,4 +172,22 @@ public class SharedPreferencesUtilsTest {
     verify(editor).remove(TEST_PREFERENCE);
     verify(editor, times(2)).apply();
   }
+
+  @Test
+  public void getBooleanManifestValue_readsManifestOnce() throws Exception {
+    Bundle metaData = createNewBundle();
+    metaData.putBoolean(TEST_MANIFEST_PREFERENCE, false);
+    ApplicationInfo appInfo = new ApplicationInfo();
+    appInfo.metaData = metaData;
+    when(packageManager.getApplicationInfo(packageName, PackageManager.GET_META_DATA))
+        .thenReturn(appInfo);
+
+    assertThat(sharedPreferencesUtils.isManifestSet(TEST_MANIFEST_PREFERENCE)).isTrue();
+    assertThat(sharedPreferencesUtils.getBooleanManifestValue(TEST_MANIFEST_PREFERENCE, true))
+        .isFalse();
+    assertThat(sharedPreferencesUtils.isManifestSet(TEST_PREFERENCE)).isFalse();
+
+    verify(packageManager, times(1))
+        .getApplicationInfo(packageName, PackageManager.GET_META_DATA);
+  }
 }
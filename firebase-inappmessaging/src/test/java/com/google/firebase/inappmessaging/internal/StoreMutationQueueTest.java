@@ -0,0 +1,139 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import com.google.firebase.inappmessaging.internal.RateLimitProto.Counter;
+import com.google.firebase.inappmessaging.internal.RateLimitProto.RateLimit;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class StoreMutationQueueTest {
+  private static final String KEY = "key";
+
+  @Mock private ProtoStorageClient storageClient;
+  private final AtomicReference<RateLimit> state =
+      new AtomicReference<>(RateLimit.getDefaultInstance());
+  private StoreMutationQueue<RateLimit> queue;
+
+  @Before
+  public void setup() {
+    initMocks(this);
+    when(storageClient.write(any(RateLimit.class))).thenReturn(Completable.complete());
+    queue = new StoreMutationQueue<>(storageClient, Single.fromCallable(state::get), state::set);
+  }
+
+  @Test
+  public void submit_appliesMutationAndPersistsResult() {
+    queue.submit(limits -> increment(limits, 1)).test().assertComplete();
+
+    verify(storageClient).write(increment(RateLimit.getDefaultInstance(), 1));
+    assertThat(state.get().getLimitsOrThrow(KEY).getValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void submit_duringWrite_appliesMutationsInOrderInOneWrite() throws Exception {
+    CountDownLatch writeStarted = new CountDownLatch(1);
+    CountDownLatch finishWrite = new CountDownLatch(1);
+    when(storageClient.write(any(RateLimit.class)))
+        .thenReturn(
+            Completable.fromAction(
+                () -> {
+                  writeStarted.countDown();
+                  finishWrite.await();
+                }))
+        .thenReturn(Completable.complete());
+    Thread writer = new Thread(() -> queue.submit(limits -> increment(limits, 1)).blockingAwait());
+    writer.start();
+    writeStarted.await();
+
+    TestObserver<Void> second = queue.submit(limits -> increment(limits, 10)).test();
+    TestObserver<Void> third =
+        queue.submit(limits -> withCounter(limits, counter(limits) * 2)).test();
+    second.assertNotComplete();
+    finishWrite.countDown();
+    writer.join();
+
+    ArgumentCaptor<RateLimit> written = ArgumentCaptor.forClass(RateLimit.class);
+    verify(storageClient, times(2)).write(written.capture());
+    assertThat(written.getAllValues().get(1).getLimitsOrThrow(KEY).getValue()).isEqualTo(22);
+    second.assertComplete();
+    third.assertComplete();
+  }
+
+  @Test
+  public void submit_whenMutationThrows_failsOnlyThatMutation() {
+    TestObserver<Void> failed =
+        queue
+            .submit(
+                limits -> {
+                  throw new IllegalStateException();
+                })
+            .test();
+    queue.submit(limits -> increment(limits, 1)).test().assertComplete();
+
+    failed.assertError(IllegalStateException.class);
+    assertThat(state.get().getLimitsOrThrow(KEY).getValue()).isEqualTo(1);
+  }
+
+  @Test
+  public void submit_whenWriteFails_keepsStateAndNotifiesError() {
+    when(storageClient.write(any(RateLimit.class)))
+        .thenReturn(Completable.error(new IOException()));
+
+    queue.submit(limits -> increment(limits, 1)).test().assertError(IOException.class);
+
+    assertThat(state.get()).isEqualTo(RateLimit.getDefaultInstance());
+  }
+
+  @Test
+  public void submit_whenStateCanNotBeRead_notifiesError() {
+    queue = new StoreMutationQueue<>(storageClient, Single.error(new IOException()), state::set);
+
+    queue.submit(limits -> increment(limits, 1)).test().assertError(IOException.class);
+  }
+
+  private static RateLimit increment(RateLimit limits, long by) {
+    return withCounter(limits, counter(limits) + by);
+  }
+
+  private static RateLimit withCounter(RateLimit limits, long value) {
+    return limits.toBuilder().putLimits(KEY, Counter.newBuilder().setValue(value).build()).build();
+  }
+
+  private static long counter(RateLimit limits) {
+    return limits.getLimitsOrDefault(KEY, Counter.getDefaultInstance()).getValue();
+  }
+}
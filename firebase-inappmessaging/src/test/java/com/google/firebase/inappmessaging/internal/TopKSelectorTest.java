@@ -0,0 +1,82 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.inappmessaging.testutil.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TopKSelectorTest {
+  // Compares by the leading digit only, so items with the same digit tie
+  private static final Comparator<String> BY_RANK = Comparator.comparing(s -> s.charAt(0));
+
+  @Test
+  public void getSelected_withKOfOne_returnsFirstBest() {
+    TopKSelector<String> selector = new TopKSelector<>(1, BY_RANK);
+    for (String item : Arrays.asList("3a", "1a", "2a", "1b")) {
+      selector.offer(item);
+    }
+
+    assertThat(selector.getSelected()).containsExactly("1a");
+  }
+
+  @Test
+  public void getSelected_matchesStableSortPrefix() {
+    Random random = new Random(42);
+    for (int k = 1; k <= 8; k++) {
+      List<String> items = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        items.add(random.nextInt(5) + "-" + i);
+      }
+      TopKSelector<String> selector = new TopKSelector<>(k, BY_RANK);
+      for (String item : items) {
+        selector.offer(item);
+      }
+
+      List<String> sorted = new ArrayList<>(items);
+      Collections.sort(sorted, BY_RANK);
+      assertThat(selector.getSelected()).containsExactlyElementsIn(sorted.subList(0, k)).inOrder();
+    }
+  }
+
+  @Test
+  public void getSelected_withFewerItemsThanK_returnsAllSorted() {
+    TopKSelector<String> selector = new TopKSelector<>(5, BY_RANK);
+    selector.offer("2a");
+    selector.offer("1a");
+
+    assertThat(selector.getSelected()).containsExactly("1a", "2a").inOrder();
+  }
+
+  @Test
+  public void getSelected_withNoItems_isEmpty() {
+    assertThat(new TopKSelector<>(3, BY_RANK).getSelected()).isEmpty();
+  }
+
+  @Test
+  public void constructor_withKBelowOne_throws() {
+    assertThrows(IllegalArgumentException.class, () -> new TopKSelector<>(0, BY_RANK));
+  }
+}
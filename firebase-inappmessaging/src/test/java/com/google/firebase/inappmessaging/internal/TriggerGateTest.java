@@ -0,0 +1,120 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal;
+
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TriggerGateTest {
+  private static final List<String> A = Collections.singletonList("a");
+  private static final List<String> B = Collections.singletonList("b");
+  private static final List<String> C = Collections.singletonList("c");
+
+  private final AtomicLong now = new AtomicLong(1000);
+  private final PublishProcessor<List<String>> triggers = PublishProcessor.create();
+  private TriggerGate triggerGate;
+  private TestSubscriber<List<String>> subscriber;
+
+  @Before
+  public void setup() {
+    triggerGate = new TriggerGate(2, now::get);
+    subscriber = triggerGate.apply(triggers).test();
+  }
+
+  @Test
+  public void apply_whenOpen_passesTriggers() {
+    triggerGate.setDisplayAttached(true);
+
+    triggers.onNext(A);
+
+    subscriber.assertValues(A);
+  }
+
+  @Test
+  public void apply_withoutDisplay_holdsTriggersUntilAttached() {
+    triggers.onNext(A);
+    subscriber.assertNoValues();
+
+    triggerGate.setDisplayAttached(true);
+
+    subscriber.assertValues(A);
+  }
+
+  @Test
+  public void apply_whileSuppressed_holdsTriggersUntilLifted() {
+    triggerGate.setDisplayAttached(true);
+    triggerGate.setMessagesSuppressed(true);
+
+    triggers.onNext(A);
+    subscriber.assertNoValues();
+
+    triggerGate.setMessagesSuppressed(false);
+    subscriber.assertValues(A);
+  }
+
+  @Test
+  public void apply_keepsOnlyLastHeldTriggers() {
+    triggers.onNext(A);
+    triggers.onNext(B);
+    triggers.onNext(C);
+
+    triggerGate.setDisplayAttached(true);
+
+    subscriber.assertValues(B, C);
+  }
+
+  @Test
+  public void apply_dropsHeldTriggersOlderThanMaxAge() {
+    triggers.onNext(A);
+    now.addAndGet(TriggerGate.HELD_TRIGGER_MAX_AGE_MILLIS);
+    triggers.onNext(B);
+    now.addAndGet(1);
+
+    triggerGate.setDisplayAttached(true);
+
+    subscriber.assertValues(B);
+  }
+
+  @Test
+  public void apply_releasesHeldTriggersOnce() {
+    triggers.onNext(A);
+    triggerGate.setDisplayAttached(true);
+    triggerGate.setDisplayAttached(false);
+    triggerGate.setDisplayAttached(true);
+
+    subscriber.assertValues(A);
+  }
+
+  @Test
+  public void apply_withHoldingDisabled_dropsTriggers() {
+    TriggerGate nonHoldingGate = new TriggerGate(0, now::get);
+    TestSubscriber<List<String>> nonHoldingSubscriber = nonHoldingGate.apply(triggers).test();
+
+    triggers.onNext(A);
+    nonHoldingGate.setDisplayAttached(true);
+
+    nonHoldingSubscriber.assertNoValues();
+  }
+}
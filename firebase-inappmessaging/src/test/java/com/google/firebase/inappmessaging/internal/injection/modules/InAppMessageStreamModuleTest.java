@@ -0,0 +1,73 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal.injection.modules;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.google.firebase.inappmessaging.internal.AbtIntegrationHelper;
+import com.google.firebase.inappmessaging.internal.AnalyticsEventsManager;
+import com.google.firebase.inappmessaging.internal.ApiClient;
+import com.google.firebase.inappmessaging.internal.CacheMemoryManager;
+import com.google.firebase.inappmessaging.internal.CampaignCacheClient;
+import com.google.firebase.inappmessaging.internal.DataCollectionHelper;
+import com.google.firebase.inappmessaging.internal.ImpressionStorageClient;
+import com.google.firebase.inappmessaging.internal.InAppMessageStreamManager;
+import com.google.firebase.inappmessaging.internal.RateLimiterClient;
+import com.google.firebase.inappmessaging.internal.Schedulers;
+import com.google.firebase.inappmessaging.internal.TestDeviceHelper;
+import com.google.firebase.inappmessaging.internal.TriggerGate;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import com.google.firebase.inappmessaging.model.RateLimit;
+import com.google.firebase.installations.FirebaseInstallationsApi;
+import io.reactivex.flowables.ConnectableFlowable;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class InAppMessageStreamModuleTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void providesInAppMessageStreamManager_registersItForCampaignTrims() {
+    CacheMemoryManager cacheMemoryManager = mock(CacheMemoryManager.class);
+
+    InAppMessageStreamManager streamManager =
+        new InAppMessageStreamModule()
+            .providesInAppMessageStreamManager(
+                mock(ConnectableFlowable.class),
+                mock(ConnectableFlowable.class),
+                mock(ConnectableFlowable.class),
+                mock(CampaignCacheClient.class),
+                new FakeClock(0),
+                mock(ApiClient.class),
+                mock(AnalyticsEventsManager.class),
+                mock(Schedulers.class),
+                mock(ImpressionStorageClient.class),
+                mock(RateLimiterClient.class),
+                mock(RateLimit.class),
+                mock(TestDeviceHelper.class),
+                mock(FirebaseInstallationsApi.class),
+                mock(DataCollectionHelper.class),
+                mock(AbtIntegrationHelper.class),
+                mock(Executor.class),
+                mock(TriggerGate.class),
+                cacheMemoryManager);
+
+    verify(cacheMemoryManager).register(CacheMemoryManager.Tier.CAMPAIGNS, streamManager);
+  }
+}
@@ -0,0 +1,131 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal.injection.modules;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.firebase.inappmessaging.internal.FileStorageBackend;
+import com.google.firebase.inappmessaging.internal.InMemoryStorageBackend;
+import com.google.firebase.inappmessaging.internal.KeyValueStorageBackend;
+import com.google.firebase.inappmessaging.internal.StorageBackend;
+import com.google.firebase.inappmessaging.internal.time.FakeClock;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ProtoStorageClientModuleTest {
+  private static final String PACKAGE_NAME = "package.name";
+
+  @Mock private Application application;
+  @Mock private PackageManager packageManager;
+
+  private final ProtoStorageClientModule module = new ProtoStorageClientModule();
+  private final Bundle metaData = new Bundle();
+
+  @Before
+  public void setUp() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    ApplicationInfo appInfo = new ApplicationInfo();
+    appInfo.metaData = metaData;
+    when(application.getPackageName()).thenReturn(PACKAGE_NAME);
+    when(application.getPackageManager()).thenReturn(packageManager);
+    when(packageManager.getApplicationInfo(PACKAGE_NAME, PackageManager.GET_META_DATA))
+        .thenReturn(appInfo);
+  }
+
+  @Test
+  public void providesStorageBackend_byDefault_isFileBackend() {
+    assertThat(module.providesStorageBackend(application, new FakeClock(0)))
+        .isInstanceOf(FileStorageBackend.class);
+  }
+
+  @Test
+  public void providesStorageBackend_withKeyValueInManifest_isKeyValueBackend() {
+    metaData.putString(
+        ProtoStorageClientModule.MANIFEST_METADATA_STORAGE_BACKEND,
+        ProtoStorageClientModule.KEY_VALUE_BACKEND);
+
+    assertThat(module.providesStorageBackend(application, new FakeClock(0)))
+        .isInstanceOf(KeyValueStorageBackend.class);
+  }
+
+  @Test
+  public void providesStorageBackend_switchingToKeyValue_keepsRecordsOfFileBackend()
+      throws IOException {
+    Application realApplication = spy((Application) ApplicationProvider.getApplicationContext());
+    doReturn(PACKAGE_NAME).when(realApplication).getPackageName();
+    doReturn(packageManager).when(realApplication).getPackageManager();
+    new FileStorageBackend(realApplication)
+        .write(ProtoStorageClientModule.IMPRESSIONS_STORE_FILE, new byte[] {1, 2, 3});
+    metaData.putString(
+        ProtoStorageClientModule.MANIFEST_METADATA_STORAGE_BACKEND,
+        ProtoStorageClientModule.KEY_VALUE_BACKEND);
+
+    StorageBackend backend = module.providesStorageBackend(realApplication, new FakeClock(0));
+
+    assertThat(backend.read(ProtoStorageClientModule.IMPRESSIONS_STORE_FILE))
+        .isEqualTo(new byte[] {1, 2, 3});
+    assertThat(backend.read(ProtoStorageClientModule.RATE_LIMIT_STORE_FILE)).isNull();
+  }
+
+  @Test
+  public void providesStorageBackend_withInMemoryInManifest_isInMemoryBackend() {
+    metaData.putString(
+        ProtoStorageClientModule.MANIFEST_METADATA_STORAGE_BACKEND,
+        ProtoStorageClientModule.IN_MEMORY_BACKEND);
+
+    assertThat(module.providesStorageBackend(application, new FakeClock(0)))
+        .isInstanceOf(InMemoryStorageBackend.class);
+  }
+
+  @Test
+  public void providesStorageBackend_withUnknownBackend_isFileBackend() {
+    metaData.putString(ProtoStorageClientModule.MANIFEST_METADATA_STORAGE_BACKEND, "sqlite");
+
+    assertThat(module.providesStorageBackend(application, new FakeClock(0)))
+        .isInstanceOf(FileStorageBackend.class);
+  }
+
+  @Test
+  public void providesProtoStorageClientForCampaign_writesItsOwnFile() {
+    Application realApplication = ApplicationProvider.getApplicationContext();
+
+    module
+        .providesProtoStorageClientForCampaign(realApplication)
+        .write(new byte[] {1, 2, 3})
+        .blockingAwait();
+
+    assertThat(
+            realApplication
+                .getFileStreamPath(ProtoStorageClientModule.CAMPAIGN_CACHE_FILE)
+                .exists())
+        .isTrue();
+  }
+}
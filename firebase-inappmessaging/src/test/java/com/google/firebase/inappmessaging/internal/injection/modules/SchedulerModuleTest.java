@@ -0,0 +1,107 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.internal.injection.modules;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SchedulerModuleTest {
+  private static final int TASKS = 20;
+
+  private final AtomicInteger threadsCreated = new AtomicInteger();
+  private final SchedulerModule schedulerModule = new SchedulerModule();
+  private ExecutorService firebaseExecutor;
+
+  @Before
+  public void setup() {
+    firebaseExecutor =
+        Executors.newCachedThreadPool(
+            r -> new Thread(r, "Firebase Thread #" + threadsCreated.getAndIncrement()));
+  }
+
+  @After
+  public void tearDown() {
+    firebaseExecutor.shutdownNow();
+  }
+
+  @Test
+  public void ioScheduler_boundsConcurrencyOnFirebaseExecutor() throws InterruptedException {
+    int maxConcurrency =
+        runConcurrently(schedulerModule.providesIOScheduler(firebaseExecutor), new ArrayList<>());
+
+    assertThat(maxConcurrency).isAtMost(SchedulerModule.IO_CONCURRENCY);
+    assertThat(threadsCreated.get()).isAtMost(SchedulerModule.IO_CONCURRENCY);
+  }
+
+  @Test
+  public void computeScheduler_boundsConcurrencyOnFirebaseExecutor() throws InterruptedException {
+    int maxConcurrency =
+        runConcurrently(
+            schedulerModule.providesComputeScheduler(firebaseExecutor), new ArrayList<>());
+
+    assertThat(maxConcurrency).isAtMost(SchedulerModule.COMPUTE_CONCURRENCY);
+    assertThat(threadsCreated.get()).isAtMost(SchedulerModule.COMPUTE_CONCURRENCY);
+  }
+
+  @Test
+  public void ioScheduler_leavesSharedThreadNamesUntouched() throws InterruptedException {
+    List<String> threadNames = new ArrayList<>();
+
+    runConcurrently(schedulerModule.providesIOScheduler(firebaseExecutor), threadNames);
+
+    assertThat(threadNames).hasSize(TASKS);
+    for (String name : threadNames) {
+      assertThat(name).startsWith("Firebase Thread #");
+    }
+  }
+
+  /** Runs {@link #TASKS} slow tasks on {@code scheduler} and returns the peak concurrency. */
+  private static int runConcurrently(Scheduler scheduler, List<String> threadNames)
+      throws InterruptedException {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(TASKS);
+    for (int i = 0; i < TASKS; i++) {
+      Completable.fromAction(
+              () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                synchronized (threadNames) {
+                  threadNames.add(Thread.currentThread().getName());
+                }
+                Thread.sleep(10);
+                running.decrementAndGet();
+              })
+          .subscribeOn(scheduler)
+          .subscribe(done::countDown);
+    }
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    return peak.get();
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.firebase.inappmessaging.MessagesProto;
+import com.google.firebase.inappmessaging.internal.InAppMessageStreamManager;
+import com.google.firebase.inappmessaging.testutil.EventStreamGenerator.TimedEvent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class CampaignGeneratorTest {
+  private static final long NOW = 1_700_000_000_000L;
+
+  @Test
+  public void generateResponse_isDeterministic() {
+    FetchEligibleCampaignsResponse first = new CampaignGenerator(7, NOW).generateResponse(200);
+    FetchEligibleCampaignsResponse second = new CampaignGenerator(7, NOW).generateResponse(200);
+
+    assertThat(first).isEqualTo(second);
+    assertThat(new CampaignGenerator(8, NOW).generateResponse(200)).isNotEqualTo(first);
+  }
+
+  @Test
+  public void generateResponse_coversMessageTypesAndPayloads() {
+    FetchEligibleCampaignsResponse response = new CampaignGenerator(7, NOW).generateResponse(200);
+
+    Set<MessagesProto.Content.MessageDetailsCase> messageTypes =
+        EnumSet.noneOf(MessagesProto.Content.MessageDetailsCase.class);
+    Set<ThickContent.PayloadCase> payloads = EnumSet.noneOf(ThickContent.PayloadCase.class);
+    int active = 0;
+    for (ThickContent content : response.getMessagesList()) {
+      messageTypes.add(content.getContent().getMessageDetailsCase());
+      payloads.add(content.getPayloadCase());
+      long start =
+          content.hasVanillaPayload()
+              ? content.getVanillaPayload().getCampaignStartTimeMillis()
+              : content.getExperimentalPayload().getCampaignStartTimeMillis();
+      long end =
+          content.hasVanillaPayload()
+              ? content.getVanillaPayload().getCampaignEndTimeMillis()
+              : content.getExperimentalPayload().getCampaignEndTimeMillis();
+      if (start < NOW && NOW < end) {
+        active++;
+      }
+    }
+
+    assertThat(response.getMessagesCount()).isEqualTo(200);
+    assertThat(messageTypes)
+        .containsExactly(
+            MessagesProto.Content.MessageDetailsCase.BANNER,
+            MessagesProto.Content.MessageDetailsCase.MODAL,
+            MessagesProto.Content.MessageDetailsCase.IMAGE_ONLY,
+            MessagesProto.Content.MessageDetailsCase.CARD);
+    assertThat(payloads)
+        .containsExactly(
+            ThickContent.PayloadCase.VANILLA_PAYLOAD, ThickContent.PayloadCase.EXPERIMENTAL_PAYLOAD);
+    assertThat(active).isGreaterThan(100);
+    assertThat(active).isLessThan(200);
+  }
+
+  @Test
+  public void generateResponseOfSize_reachesRequestedSize() {
+    FetchEligibleCampaignsResponse response =
+        new CampaignGenerator(7, NOW).generateResponseOfSize(64 * 1024);
+
+    assertThat(response.getSerializedSize()).isAtLeast(64 * 1024);
+    assertThat(response.getSerializedSize()).isLessThan(66 * 1024);
+  }
+
+  @Test
+  public void eventStream_isDeterministicAndOrdered() {
+    List<TimedEvent> events = new EventStreamGenerator(7).generate(20);
+    List<TimedEvent> again = new EventStreamGenerator(7).generate(20);
+
+    assertThat(events.toString()).isEqualTo(again.toString());
+    assertThat(events.get(0).name).isEqualTo(InAppMessageStreamManager.ON_FOREGROUND);
+    long foregrounds = 0;
+    for (int i = 0; i < events.size(); i++) {
+      if (events.get(i).name.equals(InAppMessageStreamManager.ON_FOREGROUND)) {
+        foregrounds++;
+      }
+      if (i > 0) {
+        assertThat(events.get(i).offsetMillis).isAtLeast(events.get(i - 1).offsetMillis);
+      }
+    }
+    assertThat(foregrounds).isEqualTo(20);
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.testutil;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.firebase.inappmessaging.testutil.Assert.expectThrows;
+
+import com.google.firebase.inappmessaging.testutil.FakeSdkServingServer.Reply;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsRequest;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.InAppMessagingSdkServingGrpc;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.InAppMessagingSdkServingGrpc.InAppMessagingSdkServingBlockingStub;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class FakeSdkServingServerTest {
+  private static final FetchEligibleCampaignsRequest REQUEST =
+      FetchEligibleCampaignsRequest.newBuilder().setProjectNumber("123").build();
+
+  private final FetchEligibleCampaignsResponse response =
+      new CampaignGenerator(42, 1000).generateResponse(3);
+  private final AtomicLong now = new AtomicLong(1000);
+
+  private FakeSdkServingServer server;
+  private ManagedChannel channel;
+  private InAppMessagingSdkServingBlockingStub stub;
+
+  @Before
+  public void setup() throws Exception {
+    server = new FakeSdkServingServer(42).start();
+    channel = server.newChannel();
+    stub = InAppMessagingSdkServingGrpc.newBlockingStub(channel);
+  }
+
+  @After
+  public void tearDown() {
+    channel.shutdownNow();
+    server.close();
+  }
+
+  @Test
+  public void fetch_scriptedRepliesAreUsedBeforeBehavior() {
+    server
+        .setBehavior(FakeSdkServingServer.respondingWith(response))
+        .enqueue(Reply.respond(FetchEligibleCampaignsResponse.getDefaultInstance()));
+
+    assertThat(stub.fetchEligibleCampaigns(REQUEST))
+        .isEqualTo(FetchEligibleCampaignsResponse.getDefaultInstance());
+    assertThat(stub.fetchEligibleCampaigns(REQUEST)).isEqualTo(response);
+    assertThat(server.getFetchCount()).isEqualTo(2);
+    assertThat(server.getRequests()).containsExactly(REQUEST, REQUEST);
+  }
+
+  @Test
+  public void fetch_withErrorReply_failsWithStatus() {
+    server.enqueue(Reply.error(Status.UNAVAILABLE));
+
+    StatusRuntimeException e =
+        expectThrows(StatusRuntimeException.class, () -> stub.fetchEligibleCampaigns(REQUEST));
+
+    assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+  }
+
+  @Test
+  public void fetch_withHangingReply_exceedsDeadline() {
+    server.enqueue(Reply.hang());
+
+    StatusRuntimeException e =
+        expectThrows(
+            StatusRuntimeException.class,
+            () ->
+                stub.withDeadlineAfter(100, TimeUnit.MILLISECONDS)
+                    .fetchEligibleCampaigns(REQUEST));
+
+    assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+  }
+
+  @Test
+  public void fetch_withReplyLatency_delaysResponse() {
+    server.enqueue(Reply.respond(response).after(200));
+
+    long start = System.nanoTime();
+    stub.fetchEligibleCampaigns(REQUEST);
+
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isAtLeast(200L);
+  }
+
+  @Test
+  public void fetch_expiringAfter_setsExpirationRelativeToClock() {
+    server.setBehavior(FakeSdkServingServer.expiringAfter(response, now::get, 5000));
+
+    assertThat(stub.fetchEligibleCampaigns(REQUEST).getExpirationEpochTimestampMillis())
+        .isEqualTo(6000);
+    now.addAndGet(1000);
+    assertThat(stub.fetchEligibleCampaigns(REQUEST).getExpirationEpochTimestampMillis())
+        .isEqualTo(7000);
+  }
+}
@@ -0,0 +1,360 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.testutil;
+
+import com.google.firebase.inappmessaging.CommonTypesProto.Event;
+import com.google.firebase.inappmessaging.CommonTypesProto.Priority;
+import com.google.firebase.inappmessaging.CommonTypesProto.Trigger;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggerParam;
+import com.google.firebase.inappmessaging.CommonTypesProto.TriggeringCondition;
+import com.google.firebase.inappmessaging.ExperimentPayloadProto.ExperimentLite;
+import com.google.firebase.inappmessaging.ExperimentPayloadProto.ExperimentPayload;
+import com.google.firebase.inappmessaging.MessagesProto;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ExperimentalCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.ThickContent;
+import com.google.internal.firebase.inappmessaging.v1.CampaignProto.VanillaCampaignPayload;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpression;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.CampaignImpressionList;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates production-shaped {@link FetchEligibleCampaignsResponse}s for benchmarks and soak
+ * tests.
+ *
+ * <p>Output is fully determined by the seed, the clock and the settings, so two generators built
+ * the same way produce identical protos. Responses mix all four message types, vanilla campaigns
+ * and experiments, test campaigns, data bundles, analytics triggers with parameters, app
+ * foreground triggers and campaigns that are active, expired or not started yet.
+ *
+ * <p>Analytics event names are {@code event_0} to {@code event_<n-1>}, see {@link
+ * #eventName(int)}. Lower indices are more popular, both as campaign triggers and in {@link
+ * EventStreamGenerator}.
+ */
+public class CampaignGenerator {
+  public static final int DEFAULT_EVENT_POOL_SIZE = 50;
+
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz      ";
+
+  private final Random random;
+  private final long nowMillis;
+  private int eventPoolSize = DEFAULT_EVENT_POOL_SIZE;
+  private double experimentRatio = 0.2;
+  private double testCampaignRatio = 0.02;
+  private double foregroundTriggerRatio = 0.3;
+  private double expiredRatio = 0.1;
+  private double upcomingRatio = 0.1;
+  private int campaignIndex;
+
+  public CampaignGenerator(long seed, long nowMillis) {
+    this.random = new Random(seed);
+    this.nowMillis = nowMillis;
+  }
+
+  /** Sets how many distinct analytics events campaigns are triggered by. */
+  public CampaignGenerator setEventPoolSize(int eventPoolSize) {
+    this.eventPoolSize = eventPoolSize;
+    return this;
+  }
+
+  /** Sets the fraction of campaigns that are experiments rather than vanilla campaigns. */
+  public CampaignGenerator setExperimentRatio(double experimentRatio) {
+    this.experimentRatio = experimentRatio;
+    return this;
+  }
+
+  /** Sets the fraction of campaigns that are test campaigns. */
+  public CampaignGenerator setTestCampaignRatio(double testCampaignRatio) {
+    this.testCampaignRatio = testCampaignRatio;
+    return this;
+  }
+
+  /** Sets the fraction of campaigns that are also triggered by the app coming to foreground. */
+  public CampaignGenerator setForegroundTriggerRatio(double foregroundTriggerRatio) {
+    this.foregroundTriggerRatio = foregroundTriggerRatio;
+    return this;
+  }
+
+  /** Sets the fractions of campaigns that have already ended and that have not started yet. */
+  public CampaignGenerator setInactiveRatios(double expiredRatio, double upcomingRatio) {
+    this.expiredRatio = expiredRatio;
+    this.upcomingRatio = upcomingRatio;
+    return this;
+  }
+
+  public static String eventName(int index) {
+    return "event_" + index;
+  }
+
+  public static String campaignId(int index) {
+    return "campaign_" + index;
+  }
+
+  /** Returns a response with {@code campaignCount} campaigns that expires in a day. */
+  public FetchEligibleCampaignsResponse generateResponse(int campaignCount) {
+    FetchEligibleCampaignsResponse.Builder response =
+        FetchEligibleCampaignsResponse.newBuilder()
+            .setExpirationEpochTimestampMillis(nowMillis + DAY);
+    for (int i = 0; i < campaignCount; i++) {
+      response.addMessages(generateCampaign());
+    }
+    return response.build();
+  }
+
+  /** Returns a response with enough campaigns for it to serialize to at least {@code bytes}. */
+  public FetchEligibleCampaignsResponse generateResponseOfSize(int bytes) {
+    FetchEligibleCampaignsResponse.Builder response =
+        FetchEligibleCampaignsResponse.newBuilder()
+            .setExpirationEpochTimestampMillis(nowMillis + DAY);
+    int size = response.build().getSerializedSize();
+    while (size < bytes) {
+      ThickContent campaign = generateCampaign();
+      response.addMessages(campaign);
+      // Tag and length prefix of the repeated field
+      size += 1 + computeVarintSize(campaign.getSerializedSize()) + campaign.getSerializedSize();
+    }
+    return response.build();
+  }
+
+  /** Returns the next campaign. Campaign ids are sequential, starting at {@code campaign_0}. */
+  public ThickContent generateCampaign() {
+    int index = campaignIndex++;
+    long start;
+    long end;
+    double window = random.nextDouble();
+    if (window < expiredRatio) {
+      start = nowMillis - (2 + random.nextInt(60)) * DAY;
+      end = nowMillis - 1 - random.nextInt(24) * HOUR;
+    } else if (window < expiredRatio + upcomingRatio) {
+      start = nowMillis + 1 + random.nextInt(24 * 14) * HOUR;
+      end = start + (1 + random.nextInt(30)) * DAY;
+    } else {
+      start = nowMillis - 1 - random.nextInt(24 * 30) * HOUR;
+      end = nowMillis + 1 + random.nextInt(24 * 30) * HOUR;
+    }
+
+    ThickContent.Builder campaign =
+        ThickContent.newBuilder()
+            .setContent(generateContent())
+            .setPriority(Priority.newBuilder().setValue(1 + random.nextInt(10)))
+            .setIsTestCampaign(random.nextDouble() < testCampaignRatio);
+
+    int triggers = 1 + random.nextInt(3);
+    for (int i = 0; i < triggers; i++) {
+      campaign.addTriggeringConditions(
+          TriggeringCondition.newBuilder().setEvent(generateTriggerEvent()));
+    }
+    if (random.nextDouble() < foregroundTriggerRatio) {
+      campaign.addTriggeringConditions(
+          TriggeringCondition.newBuilder().setFiamTrigger(Trigger.ON_FOREGROUND));
+    }
+
+    int dataBundleEntries = random.nextInt(6);
+    for (int i = 0; i < dataBundleEntries; i++) {
+      campaign.putDataBundle("key_" + i, randomText(4, 32));
+    }
+
+    if (random.nextDouble() < experimentRatio) {
+      campaign.setExperimentalPayload(
+          ExperimentalCampaignPayload.newBuilder()
+              .setCampaignId(campaignId(index))
+              .setCampaignName("Experiment " + index)
+              .setCampaignStartTimeMillis(start)
+              .setCampaignEndTimeMillis(end)
+              .setExperimentPayload(generateExperimentPayload(index, start)));
+    } else {
+      campaign.setVanillaPayload(
+          VanillaCampaignPayload.newBuilder()
+              .setCampaignId(campaignId(index))
+              .setCampaignName("Campaign " + index)
+              .setCampaignStartTimeMillis(start)
+              .setCampaignEndTimeMillis(end));
+    }
+    return campaign.build();
+  }
+
+  /**
+   * Returns an impression history of {@code count} entries, of which about {@code hitRatio} refer
+   * to campaigns in {@code response}. The others refer to campaigns that are no longer served.
+   */
+  public CampaignImpressionList generateImpressions(
+      FetchEligibleCampaignsResponse response, int count, double hitRatio) {
+    CampaignImpressionList.Builder impressions = CampaignImpressionList.newBuilder();
+    int served = response.getMessagesCount();
+    for (int i = 0; i < count; i++) {
+      String campaignId;
+      if (served > 0 && random.nextDouble() < hitRatio) {
+        ThickContent content = response.getMessages(random.nextInt(served));
+        campaignId =
+            content.getPayloadCase() == ThickContent.PayloadCase.VANILLA_PAYLOAD
+                ? content.getVanillaPayload().getCampaignId()
+                : content.getExperimentalPayload().getCampaignId();
+      } else {
+        campaignId = "retired_" + random.nextInt(Math.max(1, count));
+      }
+      impressions.addAlreadySeenCampaigns(
+          CampaignImpression.newBuilder()
+              .setCampaignId(campaignId)
+              .setImpressionTimestampMillis(nowMillis - (long) (random.nextDouble() * 90 * DAY)));
+    }
+    return impressions.build();
+  }
+
+  /** Picks an event index in {@code [0, eventPoolSize)}, lower indices being more likely. */
+  private int nextEventIndex() {
+    double skewed = random.nextDouble() * random.nextDouble();
+    return (int) (skewed * eventPoolSize);
+  }
+
+  private Event generateTriggerEvent() {
+    Event.Builder event = Event.newBuilder().setName(eventName(nextEventIndex()));
+    int params = random.nextInt(3);
+    for (int i = 0; i < params; i++) {
+      TriggerParam.Builder param = TriggerParam.newBuilder().setName("param_" + i);
+      switch (random.nextInt(3)) {
+        case 0:
+          param.setStringValue(randomText(3, 16));
+          break;
+        case 1:
+          param.setIntValue(random.nextInt(1000));
+          break;
+        default:
+          param.setDoubleValue(random.nextDouble() * 100);
+      }
+      event.addTriggerParams(param);
+    }
+    return event.build();
+  }
+
+  private ExperimentPayload generateExperimentPayload(int index, long start) {
+    ExperimentPayload.Builder payload =
+        ExperimentPayload.newBuilder()
+            .setExperimentId("exp_" + index)
+            .setVariantId(String.valueOf(random.nextInt(3)))
+            .setExperimentStartTimeMillis(start)
+            .setTriggerTimeoutMillis(15 * DAY)
+            .setTimeToLiveMillis(90 * DAY)
+            .setSetEventToLog("_exp_set")
+            .setActivateEventToLog("_exp_activate")
+            .setClearEventToLog("_exp_clear")
+            .setTimeoutEventToLog("_exp_timeout")
+            .setTtlExpiryEventToLog("_exp_expire")
+            .setOverflowPolicy(ExperimentPayload.ExperimentOverflowPolicy.DISCARD_OLDEST);
+    if (random.nextBoolean()) {
+      payload.setTriggerEvent(eventName(nextEventIndex()));
+    }
+    int ongoing = random.nextInt(3);
+    for (int i = 0; i < ongoing; i++) {
+      payload.addOngoingExperiments(
+          ExperimentLite.newBuilder().setExperimentId("exp_" + random.nextInt(index + 1)));
+    }
+    return payload.build();
+  }
+
+  private MessagesProto.Content generateContent() {
+    MessagesProto.Content.Builder content = MessagesProto.Content.newBuilder();
+    switch (random.nextInt(4)) {
+      case 0:
+        content.setBanner(
+            MessagesProto.BannerMessage.newBuilder()
+                .setTitle(randomTextProto(10, 40))
+                .setBody(randomTextProto(40, 120))
+                .setImageUrl(randomImageUrl())
+                .setAction(randomAction())
+                .setBackgroundHexColor(randomHexColor()));
+        break;
+      case 1:
+        content.setModal(
+            MessagesProto.ModalMessage.newBuilder()
+                .setTitle(randomTextProto(10, 40))
+                .setBody(randomTextProto(40, 250))
+                .setImageUrl(randomImageUrl())
+                .setActionButton(randomButton())
+                .setAction(randomAction())
+                .setBackgroundHexColor(randomHexColor()));
+        break;
+      case 2:
+        content.setImageOnly(
+            MessagesProto.ImageOnlyMessage.newBuilder()
+                .setImageUrl(randomImageUrl())
+                .setAction(randomAction()));
+        break;
+      default:
+        MessagesProto.CardMessage.Builder card =
+            MessagesProto.CardMessage.newBuilder()
+                .setTitle(randomTextProto(10, 40))
+                .setBody(randomTextProto(40, 250))
+                .setPortraitImageUrl(randomImageUrl())
+                .setLandscapeImageUrl(randomImageUrl())
+                .setBackgroundHexColor(randomHexColor())
+                .setPrimaryActionButton(randomButton())
+                .setPrimaryAction(randomAction());
+        if (random.nextBoolean()) {
+          card.setSecondaryActionButton(randomButton()).setSecondaryAction(randomAction());
+        }
+        content.setCard(card);
+    }
+    return content.build();
+  }
+
+  private MessagesProto.Text randomTextProto(int minLength, int maxLength) {
+    return MessagesProto.Text.newBuilder()
+        .setText(randomText(minLength, maxLength))
+        .setHexColor(randomHexColor())
+        .build();
+  }
+
+  private MessagesProto.Button randomButton() {
+    return MessagesProto.Button.newBuilder()
+        .setText(randomTextProto(2, 16))
+        .setButtonHexColor(randomHexColor())
+        .build();
+  }
+
+  private MessagesProto.Action randomAction() {
+    return MessagesProto.Action.newBuilder()
+        .setActionUrl("https://example.com/" + randomText(4, 24).replace(' ', '_'))
+        .build();
+  }
+
+  private String randomImageUrl() {
+    return "https://images.example.com/" + Integer.toHexString(random.nextInt()) + ".png";
+  }
+
+  private String randomHexColor() {
+    return String.format("#%06X", random.nextInt(0x1000000));
+  }
+
+  private String randomText(int minLength, int maxLength) {
+    int length = minLength + random.nextInt(maxLength - minLength + 1);
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    return text.toString();
+  }
+
+  private static int computeVarintSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+}
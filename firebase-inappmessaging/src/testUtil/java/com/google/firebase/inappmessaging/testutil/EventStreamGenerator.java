@@ -0,0 +1,131 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.testutil;
+
+import com.google.firebase.inappmessaging.internal.ForegroundNotifier;
+import com.google.firebase.inappmessaging.internal.InAppMessageStreamManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a deterministic stream of trigger events, shaped like real app usage, to replay
+ * against the SDK.
+ *
+ * <p>The stream is a series of sessions. Each session starts with {@code ON_FOREGROUND}, followed
+ * by analytics events at exponentially distributed intervals, with occasional bursts of events a
+ * few milliseconds apart. Sessions are separated by background periods. Short background periods do
+ * not produce an {@code ON_FOREGROUND}, since {@link ForegroundNotifier} ignores them too.
+ *
+ * <p>Analytics event names match {@link CampaignGenerator#eventName(int)}, lower indices being
+ * more frequent, so generated campaigns are triggered by the generated streams.
+ */
+public class EventStreamGenerator {
+
+  /** An event and when it happens, relative to the start of the stream. */
+  public static class TimedEvent {
+    public final long offsetMillis;
+    public final String name;
+
+    TimedEvent(long offsetMillis, String name) {
+      this.offsetMillis = offsetMillis;
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%dms: %s", offsetMillis, name);
+    }
+  }
+
+  private final Random random;
+  private int eventPoolSize = CampaignGenerator.DEFAULT_EVENT_POOL_SIZE;
+  private long meanEventGapMillis = TimeUnit.SECONDS.toMillis(3);
+  private long meanSessionMillis = TimeUnit.MINUTES.toMillis(5);
+  private long meanBackgroundMillis = TimeUnit.MINUTES.toMillis(10);
+  private double burstProbability = 0.05;
+  private int maxBurstSize = 25;
+
+  public EventStreamGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /** Sets how many distinct analytics events are logged. */
+  public EventStreamGenerator setEventPoolSize(int eventPoolSize) {
+    this.eventPoolSize = eventPoolSize;
+    return this;
+  }
+
+  /** Sets the mean time between two analytics events within a session. */
+  public EventStreamGenerator setMeanEventGapMillis(long meanEventGapMillis) {
+    this.meanEventGapMillis = meanEventGapMillis;
+    return this;
+  }
+
+  /** Sets the mean length of a session and of the background period that follows it. */
+  public EventStreamGenerator setMeanSessionMillis(long sessionMillis, long backgroundMillis) {
+    this.meanSessionMillis = sessionMillis;
+    this.meanBackgroundMillis = backgroundMillis;
+    return this;
+  }
+
+  /** Sets how often an event starts a burst, and the largest burst. */
+  public EventStreamGenerator setBursts(double burstProbability, int maxBurstSize) {
+    this.burstProbability = burstProbability;
+    this.maxBurstSize = maxBurstSize;
+    return this;
+  }
+
+  /** Returns the events of {@code sessions} consecutive sessions, ordered by offset. */
+  public List<TimedEvent> generate(int sessions) {
+    List<TimedEvent> events = new ArrayList<>();
+    long now = 0;
+    for (int session = 0; session < sessions; session++) {
+      events.add(new TimedEvent(now, InAppMessageStreamManager.ON_FOREGROUND));
+      long sessionEnd = now + exponential(meanSessionMillis);
+      // Quick trips to the background do not end the session
+      while (random.nextInt(4) == 0) {
+        sessionEnd += random.nextInt((int) ForegroundNotifier.DELAY_MILLIS);
+        sessionEnd += exponential(meanSessionMillis);
+      }
+
+      now += exponential(meanEventGapMillis);
+      while (now < sessionEnd) {
+        events.add(new TimedEvent(now, nextEventName()));
+        if (random.nextDouble() < burstProbability) {
+          int burst = 2 + random.nextInt(Math.max(1, maxBurstSize - 1));
+          for (int i = 0; i < burst; i++) {
+            now += random.nextInt(20);
+            events.add(new TimedEvent(now, nextEventName()));
+          }
+        }
+        now += exponential(meanEventGapMillis);
+      }
+      now = sessionEnd + ForegroundNotifier.DELAY_MILLIS + exponential(meanBackgroundMillis);
+    }
+    return events;
+  }
+
+  private String nextEventName() {
+    double skewed = random.nextDouble() * random.nextDouble();
+    return CampaignGenerator.eventName((int) (skewed * eventPoolSize));
+  }
+
+  private long exponential(long mean) {
+    return (long) (-Math.log(1 - random.nextDouble()) * mean);
+  }
+}
@@ -0,0 +1,261 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.testutil;
+
+import com.google.firebase.inappmessaging.internal.time.Clock;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsRequest;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.FetchEligibleCampaignsResponse;
+import com.google.internal.firebase.inappmessaging.v1.sdkserving.InAppMessagingSdkServingGrpc.InAppMessagingSdkServingImplBase;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process {@code InAppMessagingSdkServing} backend for offline, reproducible tests of
+ * fetching, caching and backoff.
+ *
+ * <p>Every {@code FetchEligibleCampaigns} call is answered by a {@link Reply}. Replies queued with
+ * {@link #enqueue(Reply...)} are used first, in order. Once the queue is empty the {@link
+ * Behavior} set with {@link #setBehavior(Behavior)} decides. Replies are delivered off the calling
+ * thread after their latency, so concurrent fetches overlap as they would against the real
+ * backend.
+ *
+ * <pre>{@code
+ * FakeSdkServingServer server = new FakeSdkServingServer(seed).start();
+ * server.setBehavior(FakeSdkServingServer.respondingWith(response));
+ * server.setLatency(FakeSdkServingServer.LatencyModel.uniform(20, 200));
+ * server.enqueue(Reply.error(Status.UNAVAILABLE), Reply.hang());
+ * }</pre>
+ *
+ * <p>Use {@link InProcessGrpcChannelModule} to point the SDK at the server.
+ */
+public class FakeSdkServingServer implements Closeable {
+
+  /** Decides the reply to a fetch when no scripted reply is queued. */
+  public interface Behavior {
+    /**
+     * @param request the request received
+     * @param callIndex the zero based index of this call since the server started
+     */
+    Reply reply(FetchEligibleCampaignsRequest request, int callIndex);
+  }
+
+  /** Latency added to replies that do not set their own. */
+  public interface LatencyModel {
+    long nextLatencyMillis(Random random);
+
+    static LatencyModel fixed(long millis) {
+      return random -> millis;
+    }
+
+    static LatencyModel uniform(long minMillis, long maxMillis) {
+      return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+    }
+
+    /** A long tailed distribution, typical of mobile networks. */
+    static LatencyModel logNormal(long medianMillis, double sigma) {
+      return random -> (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+    }
+  }
+
+  /** How the server answers a single fetch. */
+  public static final class Reply {
+    private final FetchEligibleCampaignsResponse response;
+    private final Status status;
+    private final Long latencyMillis;
+
+    private Reply(FetchEligibleCampaignsResponse response, Status status, Long latencyMillis) {
+      this.response = response;
+      this.status = status;
+      this.latencyMillis = latencyMillis;
+    }
+
+    public static Reply respond(FetchEligibleCampaignsResponse response) {
+      return new Reply(response, null, null);
+    }
+
+    /** Fails the call, e.g. with {@code UNAVAILABLE} or {@code RESOURCE_EXHAUSTED}. */
+    public static Reply error(Status status) {
+      return new Reply(null, status, null);
+    }
+
+    /** Never answers, so the call ends when the client's deadline expires. */
+    public static Reply hang() {
+      return new Reply(null, null, null);
+    }
+
+    /** Overrides the server's {@link LatencyModel} for this reply. */
+    public Reply after(long latencyMillis) {
+      return new Reply(response, status, latencyMillis);
+    }
+  }
+
+  /** Answers every fetch with {@code response}. */
+  public static Behavior respondingWith(FetchEligibleCampaignsResponse response) {
+    return (request, callIndex) -> Reply.respond(response);
+  }
+
+  /**
+   * Answers every fetch with {@code response}, set to expire {@code ttlMillis} after the time of
+   * the call on {@code clock}.
+   */
+  public static Behavior expiringAfter(
+      FetchEligibleCampaignsResponse response, Clock clock, long ttlMillis) {
+    return (request, callIndex) ->
+        Reply.respond(
+            response.toBuilder()
+                .setExpirationEpochTimestampMillis(clock.now() + ttlMillis)
+                .build());
+  }
+
+  private final String serverName = InProcessServerBuilder.generateName();
+  private final Random random;
+  private final ScheduledExecutorService replyExecutor =
+      Executors.newSingleThreadScheduledExecutor();
+  private final Queue<Reply> script = new ArrayDeque<>();
+  private final List<FetchEligibleCampaignsRequest> requests = new ArrayList<>();
+  private final List<StreamObserver<?>> hangingCalls = new ArrayList<>();
+  private Behavior behavior = respondingWith(FetchEligibleCampaignsResponse.getDefaultInstance());
+  private LatencyModel latency = LatencyModel.fixed(0);
+  private Server server;
+
+  public FakeSdkServingServer() {
+    this(0);
+  }
+
+  /** @param seed seeds the {@link LatencyModel}, so latencies are reproducible */
+  public FakeSdkServingServer(long seed) {
+    this.random = new Random(seed);
+  }
+
+  public FakeSdkServingServer start() throws IOException {
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(new FakeFetchService())
+            .build()
+            .start();
+    return this;
+  }
+
+  /** Returns a new channel to this server. */
+  public ManagedChannel newChannel() {
+    return InProcessChannelBuilder.forName(serverName).directExecutor().build();
+  }
+
+  public synchronized FakeSdkServingServer setBehavior(Behavior behavior) {
+    this.behavior = behavior;
+    return this;
+  }
+
+  public synchronized FakeSdkServingServer setLatency(LatencyModel latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  /** Queues replies for the next calls, ahead of the {@link Behavior}. */
+  public synchronized FakeSdkServingServer enqueue(Reply... replies) {
+    Collections.addAll(script, replies);
+    return this;
+  }
+
+  /** Returns the requests received so far, in order. */
+  public synchronized List<FetchEligibleCampaignsRequest> getRequests() {
+    return new ArrayList<>(requests);
+  }
+
+  public synchronized int getFetchCount() {
+    return requests.size();
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      for (StreamObserver<?> call : hangingCalls) {
+        complete(() -> call.onError(Status.CANCELLED.asRuntimeException()));
+      }
+      hangingCalls.clear();
+    }
+    replyExecutor.shutdownNow();
+    if (server != null) {
+      server.shutdownNow();
+    }
+  }
+
+  private synchronized Reply nextReply(FetchEligibleCampaignsRequest request) {
+    int callIndex = requests.size();
+    requests.add(request);
+    Reply reply = script.poll();
+    return reply != null ? reply : behavior.reply(request, callIndex);
+  }
+
+  private synchronized long latencyOf(Reply reply) {
+    return reply.latencyMillis != null
+        ? reply.latencyMillis
+        : Math.max(0, latency.nextLatencyMillis(random));
+  }
+
+  /** Calls on a cancelled call throw, which only means the client has given up already. */
+  private static void complete(Runnable call) {
+    try {
+      call.run();
+    } catch (StatusRuntimeException | IllegalStateException e) {
+      // The client cancelled the call or its deadline expired
+    }
+  }
+
+  private class FakeFetchService extends InAppMessagingSdkServingImplBase {
+    @Override
+    public void fetchEligibleCampaigns(
+        FetchEligibleCampaignsRequest request,
+        StreamObserver<FetchEligibleCampaignsResponse> responseObserver) {
+      Reply reply = nextReply(request);
+      if (reply.response == null && reply.status == null) {
+        synchronized (FakeSdkServingServer.this) {
+          hangingCalls.add(responseObserver);
+        }
+        return;
+      }
+      replyExecutor.schedule(
+          () ->
+              complete(
+                  () -> {
+                    if (reply.status != null) {
+                      responseObserver.onError(reply.status.asRuntimeException());
+                    } else {
+                      responseObserver.onNext(reply.response);
+                      responseObserver.onCompleted();
+                    }
+                  }),
+          latencyOf(reply),
+          TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.firebase.inappmessaging.testutil;
+
+import com.google.firebase.inappmessaging.internal.injection.modules.GrpcChannelModule;
+import io.grpc.Channel;
+
+/**
+ * A {@link GrpcChannelModule} that connects the SDK to a {@link FakeSdkServingServer} instead of
+ * the real backend. Pass it to {@code DaggerUniversalComponent.Builder#grpcChannelModule}, or to
+ * {@code FirebaseInAppMessagingRegistrar(GrpcChannelModule)}.
+ */
+public class InProcessGrpcChannelModule extends GrpcChannelModule {
+  private final FakeSdkServingServer server;
+
+  public InProcessGrpcChannelModule(FakeSdkServingServer server) {
+    this.server = server;
+  }
+
+  @Override
+  public Channel providesGrpcChannel(String host) {
+    return server.newChannel();
+  }
+}